@@ -0,0 +1,280 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StreamPartitioner;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+
+/**
+ * The edges of a graph grouped by one of their endpoints, kept as one record per edge keyed by
+ * (vertex, neighbor) instead of one record per vertex, so that adding or removing an edge writes
+ * a single entry whatever the degree of the vertex.
+ *
+ * <p>The keys are serialized as the length of the vertex, the vertex and the neighbor, so the edges of
+ * a vertex are adjacent in the store and are read with a range query by {@link #edges}.  The edges are
+ * repartitioned by the vertex alone, with the partitioner of {@link #partitioner}, so all the edges of a
+ * vertex are in the store of one task, which is co-partitioned with a table of the vertices that has the
+ * same number of partitions.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <EV> The type of the values that are associated with the edges.
+ */
+public class Adjacency<K, EV> {
+
+    private final String storeName;
+    private final boolean bySource;
+
+    public Adjacency(String storeName, boolean bySource) {
+        this.storeName = storeName;
+        this.bySource = bySource;
+    }
+
+    /**
+     * The name of the store of the edges, keyed by the vertex they are grouped by and the neighbor.
+     */
+    public String queryableStoreName() {
+        return storeName;
+    }
+
+    /**
+     * The edges of a vertex, read from the store of the table.
+     *
+     * @param store the store named by {@link #queryableStoreName()}
+     * @param vertex the vertex
+     * @return the edges of the vertex, in the order of their serialized neighbors
+     */
+    public List<EdgeWithValue<K, EV>> edges(ReadOnlyKeyValueStore<Key<K>, EV> store, K vertex) {
+        List<EdgeWithValue<K, EV>> edges = new ArrayList<>();
+        try (KeyValueIterator<Key<K>, EV> iterator = store.range(Key.lowerBound(vertex), Key.upperBound(vertex))) {
+            while (iterator.hasNext()) {
+                KeyValue<Key<K>, EV> entry = iterator.next();
+                Key<K> key = entry.key;
+                if (key.neighbor() == null || !Objects.equals(key.vertex(), vertex)) {
+                    continue;
+                }
+                edges.add(bySource
+                    ? new EdgeWithValue<>(key.vertex(), key.neighbor(), entry.value)
+                    : new EdgeWithValue<>(key.neighbor(), key.vertex(), entry.value));
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * A vertex and one of its neighbors, or the bounds of the neighbors of a vertex in a range query.
+     */
+    public static final class Key<K> {
+
+        private final K vertex;
+        private final K neighbor;
+        private final boolean upperBound;
+
+        public Key(K vertex, K neighbor) {
+            this(vertex, neighbor, false);
+        }
+
+        private Key(K vertex, K neighbor, boolean upperBound) {
+            this.vertex = vertex;
+            this.neighbor = neighbor;
+            this.upperBound = upperBound;
+        }
+
+        static <K> Key<K> lowerBound(K vertex) {
+            return new Key<>(vertex, null, false);
+        }
+
+        static <K> Key<K> upperBound(K vertex) {
+            return new Key<>(vertex, null, true);
+        }
+
+        public K vertex() {
+            return vertex;
+        }
+
+        public K neighbor() {
+            return neighbor;
+        }
+
+        @Override
+        public String toString() {
+            return "Key{vertex=" + vertex + ",neighbor=" + neighbor + "}";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key<?> key = (Key<?>) o;
+            return upperBound == key.upperBound &&
+                Objects.equals(vertex, key.vertex) &&
+                Objects.equals(neighbor, key.neighbor);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(vertex, neighbor, upperBound);
+        }
+    }
+
+    /**
+     * A partitioner that places the edges of a vertex on the partition that the default partitioner of the
+     * producer places the vertex on.
+     */
+    public static <K, V> StreamPartitioner<Key<K>, V> partitioner(Serde<K> vertexSerde) {
+        return (topic, key, value, numPartitions) -> Utils.toPositive(
+            Utils.murmur2(vertexSerde.serializer().serialize(topic, key.vertex()))) % numPartitions;
+    }
+
+    /**
+     * Applies the changes of the edges to the store, deleting the edges without a value.
+     */
+    static final class StoreEdges<K, EV> implements Transformer<Key<K>, EV, KeyValue<Key<K>, EV>> {
+
+        private final String storeName;
+        private KeyValueStore<Key<K>, EV> store;
+
+        StoreEdges(String storeName) {
+            this.storeName = storeName;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void init(ProcessorContext context) {
+            store = (KeyValueStore<Key<K>, EV>) context.getStateStore(storeName);
+        }
+
+        @Override
+        public KeyValue<Key<K>, EV> transform(Key<K> key, EV value) {
+            if (value != null) {
+                store.put(key, value);
+            } else {
+                store.delete(key);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static <K> Serde<Key<K>> keySerde(Serde<K> vertexSerde) {
+        return Serdes.serdeFrom(new KeySerializer<>(vertexSerde.serializer()),
+            new KeyDeserializer<>(vertexSerde.deserializer()));
+    }
+
+    private static final class KeySerializer<K> implements Serializer<Key<K>> {
+
+        private final Serializer<K> serializer;
+
+        KeySerializer(Serializer<K> serializer) {
+            this.serializer = serializer;
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+            serializer.configure(configs, isKey);
+        }
+
+        @Override
+        public byte[] serialize(String topic, Key<K> key) {
+            if (key == null) {
+                return null;
+            }
+            byte[] vertex = serializer.serialize(topic, key.vertex);
+            byte[] neighbor = key.neighbor != null ? serializer.serialize(topic, key.neighbor) : new byte[0];
+            byte[] bytes = ByteBuffer.allocate(4 + vertex.length + neighbor.length)
+                .putInt(vertex.length).put(vertex).put(neighbor).array();
+            return key.upperBound ? successor(bytes) : bytes;
+        }
+
+        /**
+         * The smallest byte array that is greater than all arrays starting with the given prefix.  The prefix
+         * starts with a non-negative length, so it never consists of 0xFF bytes only.
+         */
+        private static byte[] successor(byte[] prefix) {
+            int i = prefix.length - 1;
+            while (prefix[i] == (byte) 0xFF) {
+                i--;
+            }
+            byte[] bytes = Arrays.copyOf(prefix, i + 1);
+            bytes[i]++;
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            serializer.close();
+        }
+    }
+
+    private static final class KeyDeserializer<K> implements Deserializer<Key<K>> {
+
+        private final Deserializer<K> deserializer;
+
+        KeyDeserializer(Deserializer<K> deserializer) {
+            this.deserializer = deserializer;
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+            deserializer.configure(configs, isKey);
+        }
+
+        @Override
+        public Key<K> deserialize(String topic, byte[] bytes) {
+            if (bytes == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() < 4 || buffer.getInt() > buffer.remaining()) {
+                // Only the upper bound of a range, which is never stored
+                return new Key<>(null, null, true);
+            }
+            int length = buffer.getInt(0);
+            K vertex = deserializer.deserialize(topic, Arrays.copyOfRange(bytes, 4, 4 + length));
+            K neighbor = bytes.length > 4 + length
+                ? deserializer.deserialize(topic, Arrays.copyOfRange(bytes, 4 + length, bytes.length))
+                : null;
+            return new Key<>(vertex, neighbor);
+        }
+
+        @Override
+        public void close() {
+            deserializer.close();
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
 import org.apache.kafka.streams.kstream.Grouped;
 import org.apache.kafka.streams.kstream.Joined;
 import org.apache.kafka.streams.kstream.KStream;
@@ -40,11 +41,13 @@ import org.apache.kafka.streams.kstream.KTable;
 import org.apache.kafka.streams.kstream.KeyValueMapper;
 import org.apache.kafka.streams.kstream.Materialized;
 import org.apache.kafka.streams.kstream.Predicate;
+import org.apache.kafka.streams.kstream.Produced;
 import org.apache.kafka.streams.kstream.Reducer;
 import org.apache.kafka.streams.kstream.ValueJoiner;
 import org.apache.kafka.streams.kstream.ValueMapper;
 import org.apache.kafka.streams.kstream.ValueMapperWithKey;
 import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
 
 import io.kgraph.utils.KryoSerde;
 import io.vavr.Tuple2;
@@ -102,10 +105,18 @@ public class KGraph<K, VV, EV> {
             .map((edge, ev) -> new KeyValue<>(fun.apply(edge), new EdgeWithValue<>(edge, ev)));
     }
 
+    /**
+     * The edges grouped by source as one record per vertex, which is rewritten whenever one of the edges
+     * changes.  For vertices with many changing edges, see {@link #adjacencyBySource}.
+     */
     public KTable<K, Iterable<EdgeWithValue<K, EV>>> edgesGroupedBySource() {
         return edgesGroupedBy(Edge::source);
     }
 
+    /**
+     * The edges grouped by target as one record per vertex, which is rewritten whenever one of the edges
+     * changes.  For vertices with many changing edges, see {@link #adjacencyByTarget}.
+     */
     public KTable<K, Iterable<EdgeWithValue<K, EV>>> edgesGroupedByTarget() {
         return edgesGroupedBy(Edge::target);
     }
@@ -126,6 +137,123 @@ public class KGraph<K, VV, EV> {
                 Materialized.with(keySerde(), new KryoSerde<>()));
     }
 
+    /**
+     * The edges grouped by both their source and their target, with a single repartition that sends each change
+     * of an edge to both endpoints, instead of the two repartitions and aggregations of grouping by source and
+     * by target.  A self-loop is only included once.
+     */
+    public KTable<K, Iterable<EdgeWithValue<K, EV>>> edgesGroupedBySourceAndTarget() {
+        return edges()
+            .toStream()
+            .flatMap(new EmitToEndpoints<>())
+            .groupByKey(Grouped.with(keySerde(), new KryoSerde<>()))
+            .aggregate(
+                HashSet::new,
+                (aggKey, value, aggregate) -> {
+                    Set<EdgeWithValue<K, EV>> edges = (Set<EdgeWithValue<K, EV>>) aggregate;
+                    // Replace the previous value of the edge, or remove the edge if its value is null
+                    edges.removeIf(edge -> edge.source().equals(value.source()) && edge.target().equals(value.target()));
+                    if (value.value() != null) {
+                        edges.add(value);
+                    }
+                    return aggregate;
+                },
+                Materialized.with(keySerde(), new KryoSerde<>()));
+    }
+
+    /**
+     * Emit an edge to both of its endpoints, including its removal as an edge without a value.
+     */
+    private static final class EmitToEndpoints<K, EV>
+        implements KeyValueMapper<Edge<K>, EV, Iterable<KeyValue<K, EdgeWithValue<K, EV>>>> {
+
+        @Override
+        public Iterable<KeyValue<K, EdgeWithValue<K, EV>>> apply(Edge<K> edge, EV value) {
+            EdgeWithValue<K, EV> edgeWithValue = new EdgeWithValue<>(edge, value);
+            if (edge.source().equals(edge.target())) {
+                return Collections.singletonList(new KeyValue<>(edge.source(), edgeWithValue));
+            }
+            List<KeyValue<K, EdgeWithValue<K, EV>>> result = new ArrayList<>(2);
+            result.add(new KeyValue<>(edge.source(), edgeWithValue));
+            result.add(new KeyValue<>(edge.target(), edgeWithValue));
+            return result;
+        }
+    }
+
+    /**
+     * The neighbors of each vertex over its incoming and outgoing edges, with their values.  Each edge is
+     * keyed by both endpoints in one pass, joined once with the vertices to get the value of the neighbor,
+     * and then grouped by the other endpoint.  Removed edges bypass the join, which drops them.
+     */
+    private KTable<K, Map<EdgeWithValue<K, EV>, VV>> neighborsGroupedBySourceAndTarget() {
+        KStream<K, EdgeWithValue<K, EV>> edgesByEndpoint = edges()
+            .toStream()
+            .flatMap(new EmitToEndpoints<>());
+        KStream<K, Tuple2<EdgeWithValue<K, EV>, VV>> removedEdges = edgesByEndpoint
+            .filter((neighbor, edge) -> edge.value() == null)
+            .mapValues(edge -> new Tuple2<>(edge, null));
+        return edgesByEndpoint
+            .filter((neighbor, edge) -> edge.value() != null)
+            .join(vertices, Tuple2::new, Joined.with(keySerde(), new KryoSerde<>(), vertexValueSerde()))
+            .merge(removedEdges)
+            .map((neighbor, value) -> {
+                EdgeWithValue<K, EV> edge = value._1;
+                K vertex = neighbor.equals(edge.source()) ? edge.target() : edge.source();
+                return new KeyValue<>(vertex, value);
+            })
+            .groupByKey(Grouped.with(keySerde(), new KryoSerde<>()))
+            .aggregate(
+                HashMap::new,
+                (aggKey, value, aggregate) -> {
+                    EdgeWithValue<K, EV> edge = value._1;
+                    // Replace the previous value of the edge, or remove the edge if its value is null
+                    aggregate.keySet().removeIf(e -> e.source().equals(edge.source()) && e.target().equals(edge.target()));
+                    if (edge.value() != null) {
+                        aggregate.put(edge, value._2);
+                    }
+                    return aggregate;
+                },
+                Materialized.with(keySerde(), new KryoSerde<>()));
+    }
+
+    /**
+     * The edges grouped by source as one record per edge, so that a change of an edge only rewrites that edge.
+     *
+     * @param builder the builder of the topology, to which the store of the edges is added
+     * @param topic the topic through which the edges are repartitioned by source, which must exist and have
+     *              as many partitions as the tables that the edges are to be co-partitioned with
+     */
+    public Adjacency<K, EV> adjacencyBySource(StreamsBuilder builder, String topic) {
+        return adjacencyBy(builder, topic, true);
+    }
+
+    /**
+     * The edges grouped by target as one record per edge, so that a change of an edge only rewrites that edge.
+     *
+     * @param builder the builder of the topology, to which the store of the edges is added
+     * @param topic the topic through which the edges are repartitioned by target, which must exist and have
+     *              as many partitions as the tables that the edges are to be co-partitioned with
+     */
+    public Adjacency<K, EV> adjacencyByTarget(StreamsBuilder builder, String topic) {
+        return adjacencyBy(builder, topic, false);
+    }
+
+    private Adjacency<K, EV> adjacencyBy(StreamsBuilder builder, String topic, boolean bySource) {
+        Serde<Adjacency.Key<K>> adjacencyKeySerde = Adjacency.keySerde(keySerde());
+        String storeName = generateStoreName();
+        builder.addStateStore(Stores.keyValueStoreBuilder(
+            Stores.persistentKeyValueStore(storeName), adjacencyKeySerde, edgeValueSerde()));
+        edges()
+            .toStream()
+            .map((edge, value) -> new KeyValue<>(bySource
+                ? new Adjacency.Key<>(edge.source(), edge.target())
+                : new Adjacency.Key<>(edge.target(), edge.source()), value))
+            // Partitioned by the vertex only, so that a range query finds all of its edges
+            .through(topic, Produced.with(adjacencyKeySerde, edgeValueSerde(), Adjacency.partitioner(keySerde())))
+            .transform(() -> new Adjacency.StoreEdges<>(storeName), storeName);
+        return new Adjacency<>(storeName, bySource);
+    }
+
     private final class GroupEdges implements KeyValueMapper<Edge<K>, EV, KeyValue<K, EdgeWithValue<K, EV>>> {
 
         private final Function<Edge<K>, K> fun;
@@ -422,7 +550,9 @@ public class KGraph<K, VV, EV> {
                     .leftJoin(edgesGroupedBySource(),
                         new ApplyEdgeLeftJoinFunction<>(edgesFunction), Materialized.with(keySerde(), new KryoSerde<>()));
             case BOTH:
-                throw new UnsupportedOperationException();
+                return vertices()
+                    .leftJoin(edgesGroupedBySourceAndTarget(),
+                        new ApplyEdgeLeftJoinFunction<>(edgesFunction), Materialized.with(keySerde(), new KryoSerde<>()));
             default:
                 throw new IllegalArgumentException("Illegal edge direction");
         }
@@ -466,7 +596,9 @@ public class KGraph<K, VV, EV> {
                     .leftJoin(neighborsGroupedBySource,
                         new ApplyNeighborLeftJoinFunction<>(neighborsFunction), Materialized.with(keySerde(), new KryoSerde<>()));
             case BOTH:
-                throw new UnsupportedOperationException();
+                return vertices()
+                    .leftJoin(neighborsGroupedBySourceAndTarget(),
+                        new ApplyNeighborLeftJoinFunction<>(neighborsFunction), Materialized.with(keySerde(), new KryoSerde<>()));
             default:
                 throw new IllegalArgumentException("Illegal edge direction");
         }
@@ -496,7 +628,15 @@ public class KGraph<K, VV, EV> {
                     },
                     Materialized.<K, EV, KeyValueStore<Bytes, byte[]>>as(generateStoreName()).withKeySerde(keySerde()).withValueSerde(edgeValueSerde()));
             case BOTH:
-                throw new UnsupportedOperationException();
+                return edgesGroupedBySourceAndTarget()
+                    .mapValues(v -> {
+                        EV result = null;
+                        for (EdgeWithValue<K, EV> edge : v) {
+                            result = result != null ? reducer.apply(result, edge.value()) : edge.value();
+                        }
+                        return result;
+                    },
+                    Materialized.<K, EV, KeyValueStore<Bytes, byte[]>>as(generateStoreName()).withKeySerde(keySerde()).withValueSerde(edgeValueSerde()));
             default:
                 throw new IllegalArgumentException("Illegal edge direction");
         }
@@ -544,7 +684,10 @@ public class KGraph<K, VV, EV> {
                             .withKeySerde(keySerde()).withValueSerde(vertexValueSerde()));
                 return neighborsReducedBySource;
             case BOTH:
-                throw new UnsupportedOperationException();
+                return neighborsGroupedBySourceAndTarget()
+                    .mapValues(v -> v.values().stream().reduce(reducer::apply).orElse(null),
+                        Materialized.<K, VV, KeyValueStore<Bytes, byte[]>>as(generateStoreName())
+                            .withKeySerde(keySerde()).withValueSerde(vertexValueSerde()));
             default:
                 throw new IllegalArgumentException("Illegal edge direction");
         }
@@ -25,12 +25,12 @@ import org.slf4j.LoggerFactory;
 
 import io.kgraph.EdgeWithValue;
 import io.kgraph.VertexWithValue;
-import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.IncrementalComputeFunction;
 
 /**
  * Adapted from the Graphalytics implementation.
  */
-public final class BreadthFirstSearch<K, EV> implements ComputeFunction<K, Long, EV, Long> {
+public final class BreadthFirstSearch<K, EV> implements IncrementalComputeFunction<K, Long, EV, Long> {
     private static final Logger log = LoggerFactory.getLogger(BreadthFirstSearch.class);
 
     public static final String SRC_VERTEX_ID = "srcVertexId";
@@ -41,6 +41,9 @@ public final class BreadthFirstSearch<K, EV> implements ComputeFunction<K, Long,
     @Override
     public void init(Map<String, ?> configs, InitCallback cb) {
         srcVertexId = (Long) configs.get(SRC_VERTEX_ID);
+
+        // The messages hold the depth of their sender, and only the smallest one can lower the depth of a vertex
+        cb.<Long>registerMessageCombiner(Math::min);
     }
 
     @Override
@@ -60,14 +63,47 @@ public final class BreadthFirstSearch<K, EV> implements ComputeFunction<K, Long,
                 }
             }
         } else {
-            if (vertex.value().equals(UNVISITED)) {
-                cb.setNewVertexValue((long) superstep);
+            // The messages hold the depth of the sender, which is one less than the superstep,
+            // unless the computation was resumed
+            long depth = UNVISITED;
+            if (vertex.id().equals(srcVertexId)) {
+                depth = 0L;
+            } else {
+                for (Long message : messages) {
+                    depth = Math.min(depth, message + 1);
+                }
+            }
+            if (depth < vertex.value()) {
+                cb.setNewVertexValue(depth);
                 for (EdgeWithValue<K, EV> edge : edges) {
-                    cb.sendMessageTo(edge.target(), (long) superstep);
+                    cb.sendMessageTo(edge.target(), depth);
                 }
             }
         }
 
         cb.voteToHalt();
     }
+
+    @Override
+    public boolean update(
+        VertexWithValue<K, Long> vertex,
+        Map<K, EV> previousEdges,
+        Map<K, EV> edges,
+        Callback<K, Long, EV, Long> cb
+    ) {
+        if (!edges.keySet().containsAll(previousEdges.keySet())) {
+            // Removing an edge may make vertices deeper or unreachable
+            return false;
+        }
+        if (vertex.id().equals(srcVertexId) && vertex.value().equals(UNVISITED)) {
+            cb.sendMessageTo(vertex.id(), 0L);
+        } else if (!vertex.value().equals(UNVISITED)) {
+            for (K target : edges.keySet()) {
+                if (!previousEdges.containsKey(target)) {
+                    cb.sendMessageTo(target, vertex.value());
+                }
+            }
+        }
+        return true;
+    }
 }
@@ -18,16 +18,23 @@
 
 package io.kgraph.library;
 
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.kgraph.EdgeWithValue;
 import io.kgraph.VertexWithValue;
-import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.IncrementalComputeFunction;
 
-public class ConnectedComponents<EV> implements ComputeFunction<Long, Long, EV, Long> {
+public class ConnectedComponents<EV> implements IncrementalComputeFunction<Long, Long, EV, Long> {
     private static final Logger log = LoggerFactory.getLogger(ConnectedComponents.class);
 
+    @Override
+    public void init(Map<String, ?> configs, InitCallback cb) {
+        cb.<Long>registerMessageCombiner(Math::min);
+    }
+
     @Override
     public void compute(
         int superstep,
@@ -59,4 +66,29 @@ public class ConnectedComponents<EV> implements ComputeFunction<Long, Long, EV,
 
         cb.voteToHalt();
     }
+
+    @Override
+    public boolean update(
+        VertexWithValue<Long, Long> vertex,
+        Map<Long, EV> previousEdges,
+        Map<Long, EV> edges,
+        Callback<Long, Long, EV, Long> cb) {
+
+        if (!edges.keySet().containsAll(previousEdges.keySet())) {
+            // Removing an edge may split a component
+            return false;
+        }
+        long currentValue = vertex.value();
+        for (Long target : edges.keySet()) {
+            if (previousEdges.containsKey(target)) {
+                continue;
+            }
+            if (currentValue < target) {
+                cb.sendMessageTo(target, currentValue);
+            } else if (currentValue > target) {
+                cb.sendMessageTo(currentValue, target);
+            }
+        }
+        return true;
+    }
 }
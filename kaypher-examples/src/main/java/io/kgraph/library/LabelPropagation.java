@@ -19,6 +19,7 @@
 package io.kgraph.library;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -28,6 +29,17 @@ import io.kgraph.pregel.ComputeFunction;
 
 public class LabelPropagation<EV> implements ComputeFunction<Long, Long, EV, Map<Long, Long>> {
 
+    @Override
+    public void init(Map<String, ?> configs, InitCallback cb) {
+        cb.<Map<Long, Long>>registerMessageCombiner(LabelPropagation::mergeCounts);
+    }
+
+    private static Map<Long, Long> mergeCounts(Map<Long, Long> counts1, Map<Long, Long> counts2) {
+        Map<Long, Long> counts = new HashMap<>(counts1);
+        counts2.forEach((k, v) -> counts.merge(k, v, (v1, v2) -> v1 + v2));
+        return counts;
+    }
+
     @Override
     public void compute(
         int superstep,
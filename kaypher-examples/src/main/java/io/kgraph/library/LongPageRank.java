@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.library;
+
+import java.util.Map;
+
+import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.LongDoubleComputeFunction;
+
+/**
+ * {@link PageRank} for a {@link io.kgraph.pregel.LongCsrGraph}, where the vertex value is the rank.
+ * Messages are always summed as they are sent and received, as with {@link PageRank#COMBINE_MESSAGES}.
+ */
+public class LongPageRank implements LongDoubleComputeFunction {
+
+    public static final String TOLERANCE = PageRank.TOLERANCE;
+    public static final String RESET_PROBABILITY = PageRank.RESET_PROBABILITY;
+
+    private double tolerance;
+    private double resetProbability;
+
+    @Override
+    public void init(Map<String, ?> configs, ComputeFunction.InitCallback cb) {
+        tolerance = (Double) configs.get(TOLERANCE);
+        resetProbability = (Double) configs.get(RESET_PROBABILITY);
+    }
+
+    @Override
+    public double combine(double message1, double message2) {
+        return message1 + message2;
+    }
+
+    @Override
+    public void compute(int superstep, Vertex vertex, Callback cb) {
+        int degree = vertex.degree();
+        if (superstep == 0) {
+            for (int i = 0; i < degree; i++) {
+                cb.setNewEdgeValue(i, 1.0 / degree);
+            }
+            if (vertex.hasMessage()) {
+                // Resend initial message to self
+                cb.sendMessageTo(vertex.id(), vertex.message());
+            }
+        } else {
+            double oldPageRank = vertex.value();
+            double messageSum = vertex.hasMessage() ? vertex.message() : 0.0;
+            double newPageRank = oldPageRank + (1.0 - resetProbability) * messageSum;
+            double newDelta = newPageRank - oldPageRank;
+
+            cb.setNewVertexValue(newPageRank);
+
+            if (newDelta > tolerance) {
+                for (int i = 0; i < degree; i++) {
+                    cb.sendMessageAlongEdge(i, newDelta * vertex.edgeValue(i));
+                }
+            }
+
+            cb.voteToHalt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.library;
+
+import java.util.Map;
+
+import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.LongDoubleComputeFunction;
+
+/**
+ * {@link SingleSourceShortestPaths} for a {@link io.kgraph.pregel.LongCsrGraph}, whose vertices
+ * should initially have the value {@link Double#POSITIVE_INFINITY}.
+ */
+public class LongSingleSourceShortestPaths implements LongDoubleComputeFunction {
+
+    public static final String SRC_VERTEX_ID = SingleSourceShortestPaths.SRC_VERTEX_ID;
+
+    private long srcVertexId;
+
+    @Override
+    public void init(Map<String, ?> configs, ComputeFunction.InitCallback cb) {
+        srcVertexId = (Long) configs.get(SRC_VERTEX_ID);
+    }
+
+    @Override
+    public double combine(double message1, double message2) {
+        return Math.min(message1, message2);
+    }
+
+    @Override
+    public void compute(int superstep, Vertex vertex, Callback cb) {
+        double minDistance = vertex.id() == srcVertexId ? 0d : Double.POSITIVE_INFINITY;
+        if (vertex.hasMessage()) {
+            minDistance = Math.min(minDistance, vertex.message());
+        }
+
+        if (minDistance < vertex.value()) {
+            cb.setNewVertexValue(minDistance);
+            for (int i = 0; i < vertex.degree(); i++) {
+                cb.sendMessageAlongEdge(i, minDistance + vertex.edgeValue(i));
+            }
+        }
+
+        cb.voteToHalt();
+    }
+}
@@ -25,17 +25,25 @@ import org.slf4j.LoggerFactory;
 
 import io.kgraph.EdgeWithValue;
 import io.kgraph.VertexWithValue;
-import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.IncrementalComputeFunction;
+import io.kgraph.pregel.ScatterComputeFunction;
 import io.kgraph.pregel.aggregators.DoubleSumAggregator;
 import io.vavr.Tuple2;
 
-public class PageRank<K> implements ComputeFunction<K, Tuple2<Double, Double>, Double, Double> {
+public class PageRank<K> implements IncrementalComputeFunction<K, Tuple2<Double, Double>, Double, Double>,
+    ScatterComputeFunction<K, Tuple2<Double, Double>, Double, Double> {
     private static final Logger log = LoggerFactory.getLogger(PageRank.class);
 
     public static final String TOLERANCE = "tolerance";
     public static final String RESET_PROBABILITY = "resetProbability";
     public static final String SRC_VERTEX_ID = "srcVertexId";
     public static final String RUNNING_SUM = "running.sum";
+    /**
+     * Whether to sum the messages sent to a vertex as they are sent and received.
+     * This reduces the number of messages, but the ranks may then differ in the last
+     * bits, as floating point addition is not associative.
+     */
+    public static final String COMBINE_MESSAGES = "combineMessages";
 
     private double tolerance;
     private double resetProbability;
@@ -49,6 +57,9 @@ public class PageRank<K> implements ComputeFunction<K, Tuple2<Double, Double>, D
         srcVertexId = (K) configs.get(SRC_VERTEX_ID);
 
         cb.registerAggregator(RUNNING_SUM, DoubleSumAggregator.class, true);
+        if (Boolean.TRUE.equals(configs.get(COMBINE_MESSAGES))) {
+            cb.<Double>registerMessageCombiner(Double::sum);
+        }
     }
 
     @Override
@@ -101,7 +112,8 @@ public class PageRank<K> implements ComputeFunction<K, Tuple2<Double, Double>, D
             cb.aggregate(RUNNING_SUM, newPageRank);
 
             for (EdgeWithValue<K, Double> edge : edges) {
-                if (newDelta > tolerance) {
+                // The delta is only negative when correcting for a change of the graph
+                if (Math.abs(newDelta) > tolerance) {
                     log.debug("sending to target {} edge {} msg {}", edge.target(), edge.value(), newDelta * edge.value());
                     cb.sendMessageTo(edge.target(), newDelta * edge.value());
                 }
@@ -110,4 +122,56 @@ public class PageRank<K> implements ComputeFunction<K, Tuple2<Double, Double>, D
             cb.voteToHalt();
         }
     }
+
+    /**
+     * Move the rank that the vertex passed along its previous edges to its current edges, which are
+     * weighted again by the inverse of the out-degree.  A vertex that was added starts from the
+     * initial message, as in superstep 0.
+     */
+    @Override
+    public boolean update(
+        VertexWithValue<K, Tuple2<Double, Double>> vertex,
+        Map<K, Double> previousEdges,
+        Map<K, Double> edges,
+        Callback<K, Tuple2<Double, Double>, Double, Double> cb) {
+
+        if (srcVertexId != null) {
+            // The personalized rank is seeded by the source vertex in superstep 1 only
+            return false;
+        }
+        double pageRank = vertex.value()._1;
+        double weight = edges.isEmpty() ? 0.0 : 1.0 / edges.size();
+        for (Map.Entry<K, Double> previousEdge : previousEdges.entrySet()) {
+            double newWeight = edges.containsKey(previousEdge.getKey()) ? weight : 0.0;
+            double change = pageRank * (newWeight - previousEdge.getValue());
+            if (change != 0.0) {
+                cb.sendMessageTo(previousEdge.getKey(), change);
+            }
+        }
+        for (K target : edges.keySet()) {
+            cb.setNewEdgeValue(target, weight);
+            if (!previousEdges.containsKey(target) && pageRank != 0.0) {
+                cb.sendMessageTo(target, pageRank * weight);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void scatter(
+        int superstep,
+        VertexWithValue<K, Tuple2<Double, Double>> vertex,
+        int degree,
+        EdgeWithValue<K, Double> edge,
+        ScatterCallback<K, Double, Double> cb) {
+
+        if (superstep == 0) {
+            cb.setNewEdgeValue(1.0 / degree);
+        } else {
+            double newDelta = vertex.value()._2;
+            if (Math.abs(newDelta) > tolerance) {
+                cb.sendMessageTo(edge.target(), newDelta * edge.value());
+            }
+        }
+    }
 }
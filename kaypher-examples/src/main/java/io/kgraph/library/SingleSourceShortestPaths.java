@@ -25,9 +25,9 @@ import org.slf4j.LoggerFactory;
 
 import io.kgraph.EdgeWithValue;
 import io.kgraph.VertexWithValue;
-import io.kgraph.pregel.ComputeFunction;
+import io.kgraph.pregel.IncrementalComputeFunction;
 
-public class SingleSourceShortestPaths implements ComputeFunction<Long, Double, Double, Double> {
+public class SingleSourceShortestPaths implements IncrementalComputeFunction<Long, Double, Double, Double> {
     private static final Logger log = LoggerFactory.getLogger(SingleSourceShortestPaths.class);
 
     public static final String SRC_VERTEX_ID = "srcVertexId";
@@ -37,6 +37,8 @@ public class SingleSourceShortestPaths implements ComputeFunction<Long, Double,
     @Override
     public void init(Map<String, ?> configs, InitCallback cb) {
         srcVertexId = (Long) configs.get(SRC_VERTEX_ID);
+
+        cb.<Double>registerMessageCombiner(Math::min);
     }
 
     @Override
@@ -66,4 +68,31 @@ public class SingleSourceShortestPaths implements ComputeFunction<Long, Double,
 
         cb.voteToHalt();
     }
+
+    @Override
+    public boolean update(
+        VertexWithValue<Long, Double> vertex,
+        Map<Long, Double> previousEdges,
+        Map<Long, Double> edges,
+        Callback<Long, Double, Double, Double> cb) {
+
+        for (Map.Entry<Long, Double> previousEdge : previousEdges.entrySet()) {
+            Double value = edges.get(previousEdge.getKey());
+            if (value == null || value > previousEdge.getValue()) {
+                // Removing or lengthening an edge may lengthen shortest paths
+                return false;
+            }
+        }
+        if (vertex.id().equals(srcVertexId) && vertex.value() > 0d) {
+            cb.sendMessageTo(vertex.id(), 0d);
+        } else if (vertex.value() < Double.POSITIVE_INFINITY) {
+            for (Map.Entry<Long, Double> edge : edges.entrySet()) {
+                Double previousValue = previousEdges.get(edge.getKey());
+                if (previousValue == null || edge.getValue() < previousValue) {
+                    cb.sendMessageTo(edge.getKey(), vertex.value() + edge.getValue());
+                }
+            }
+        }
+        return true;
+    }
 }
@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exchanges the aggregates of a Pregel computation over a compacted topic keyed by superstep and partition.
+ * Each partition sends its partial aggregates once it is done with a superstep, and the leader sends the
+ * reduced aggregates under {@link #ALL_PARTITIONS}, which the workers read in the next superstep.
+ *
+ * <p>Records are consumed as they arrive, and each partial aggregate is merged right away into a running
+ * aggregate of its superstep, so the partials are never held all at once.  A partial aggregate that is
+ * received again is reduced once, and a deleted record discards what was reduced for its superstep, as the
+ * records of a superstep are only deleted together.  Sends are acknowledged before they return, so a reader
+ * that has caught up with the end of the topic sees every record sent before it started reading.
+ *
+ * @param <T> The type of the running aggregate of a superstep.
+ */
+final class AggregatorChannel<T> implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(AggregatorChannel.class);
+
+    static final int ALL_PARTITIONS = -1;
+
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(100);
+
+    /**
+     * Merges partial aggregates into the running aggregate of a superstep.
+     */
+    interface Reducer<T> {
+
+        /**
+         * @param reduced the running aggregate, or null for the first partial aggregate of a superstep
+         * @param partial the serialized partial aggregate of a partition
+         * @return the running aggregate
+         */
+        T reduce(T reduced, byte[] partial);
+    }
+
+    private final String topic;
+    private final Producer<byte[], byte[]> producer;
+    private final Consumer<byte[], byte[]> consumer;
+    private final Reducer<T> reducer;
+    private final List<TopicPartition> partitions;
+    private final Map<Integer, byte[]> aggregates = new HashMap<>();
+    private final Map<Integer, T> partials = new HashMap<>();
+    // The partitions whose partial aggregates were merged, by superstep
+    private final Map<Integer, Set<Integer>> reducedPartitions = new HashMap<>();
+    // Records before this superstep are no longer kept
+    private int keptFrom = 0;
+
+    AggregatorChannel(String topic, Producer<byte[], byte[]> producer, Consumer<byte[], byte[]> consumer,
+                      Reducer<T> reducer) {
+        this.topic = topic;
+        this.producer = producer;
+        this.consumer = consumer;
+        this.reducer = reducer;
+        this.partitions = consumer.partitionsFor(topic).stream()
+            .map(info -> new TopicPartition(topic, info.partition()))
+            .collect(Collectors.toList());
+        consumer.assign(partitions);
+        consumer.seekToBeginning(partitions);
+    }
+
+    synchronized void send(int superstep, int partition, byte[] data) throws ExecutionException, InterruptedException {
+        producer.send(new ProducerRecord<>(topic, key(superstep, partition), data)).get();
+        accept(superstep, partition, data);
+    }
+
+    /**
+     * Consume the records that have arrived so far, without waiting for more.
+     */
+    synchronized void poll() {
+        consume(consumer.poll(Duration.ZERO));
+    }
+
+    /**
+     * The reduced aggregates of the given superstep, after catching up with the end of the topic.
+     */
+    synchronized byte[] aggregates(int superstep) {
+        catchUp();
+        return aggregates.get(superstep);
+    }
+
+    /**
+     * The running aggregate of the partial aggregates of the given superstep, after catching up with the end
+     * of the topic, or null if no partition sent any.
+     */
+    synchronized T partials(int superstep) {
+        catchUp();
+        return partials.get(superstep);
+    }
+
+    /**
+     * Stop keeping the records before the given superstep.
+     */
+    synchronized void remove(int superstep) {
+        aggregates.keySet().removeIf(step -> step < superstep);
+        partials.keySet().removeIf(step -> step < superstep);
+        reducedPartitions.keySet().removeIf(step -> step < superstep);
+        keptFrom = Math.max(keptFrom, superstep);
+    }
+
+    /**
+     * Delete the records of the given superstep and all later ones.
+     */
+    synchronized void truncate(int superstep) throws ExecutionException, InterruptedException {
+        catchUp();
+        Set<Integer> steps = new TreeSet<>(aggregates.keySet());
+        steps.addAll(reducedPartitions.keySet());
+        for (int step : steps) {
+            if (step >= superstep) {
+                Set<Integer> stepPartitions = new HashSet<>(reducedPartitions.getOrDefault(step, Collections.emptySet()));
+                if (aggregates.containsKey(step)) {
+                    stepPartitions.add(ALL_PARTITIONS);
+                }
+                discard(step, ALL_PARTITIONS);
+                for (int partition : stepPartitions) {
+                    log.debug("Deleting aggregates of step {} for partition {}", step, partition);
+                    producer.send(new ProducerRecord<>(topic, key(step, partition), null)).get();
+                }
+            }
+        }
+    }
+
+    private void catchUp() {
+        Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
+        while (partitions.stream().anyMatch(tp -> consumer.position(tp) < endOffsets.get(tp))) {
+            consume(consumer.poll(POLL_TIMEOUT));
+        }
+    }
+
+    private void consume(ConsumerRecords<byte[], byte[]> consumerRecords) {
+        for (ConsumerRecord<byte[], byte[]> record : consumerRecords) {
+            ByteBuffer key = ByteBuffer.wrap(record.key());
+            int superstep = key.getInt();
+            int partition = key.getInt();
+            if (record.value() == null) {
+                discard(superstep, partition);
+            } else if (superstep >= keptFrom) {
+                accept(superstep, partition, record.value());
+            }
+        }
+    }
+
+    private void accept(int superstep, int partition, byte[] data) {
+        if (partition == ALL_PARTITIONS) {
+            aggregates.put(superstep, data);
+            return;
+        }
+        if (!reducedPartitions.computeIfAbsent(superstep, k -> new HashSet<>()).add(partition)) {
+            log.debug("Step {}, partial aggregates of partition {} were already reduced", superstep, partition);
+            return;
+        }
+        partials.put(superstep, reducer.reduce(partials.get(superstep), data));
+    }
+
+    private void discard(int superstep, int partition) {
+        // The partial aggregates that were merged cannot be taken out one by one
+        partials.remove(superstep);
+        reducedPartitions.remove(superstep);
+        if (partition == ALL_PARTITIONS) {
+            aggregates.remove(superstep);
+        }
+    }
+
+    static byte[] key(int superstep, int partition) {
+        return ByteBuffer.allocate(2 * Integer.BYTES).putInt(superstep).putInt(partition).array();
+    }
+
+    @Override
+    public synchronized void close() {
+        producer.close();
+        consumer.close();
+    }
+}
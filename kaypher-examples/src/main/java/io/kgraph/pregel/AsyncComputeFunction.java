@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+/**
+ * A compute function that may run without superstep barriers.  A {@link PregelComputation} runs superstep 0
+ * as usual, and then computes each vertex as soon as a message for it arrives, until no messages are in flight.
+ *
+ * <p>This is only correct for monotone vertex programs, such as shortest paths or minimum label propagation,
+ * whose result does not depend on which messages are seen together or in what order.  The superstep passed to
+ * {@link #compute} is one more than that of the sender, and the vertex value is always the latest one.
+ * Aggregators are only reduced and {@link #masterCompute} is only called for superstep 0, and checkpoints
+ * are disabled.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <VV> The type of the vertex value (the state of the vertex).
+ * @param <EV> The type of the values that are associated with the edges.
+ * @param <Message> The type of the message sent between vertices along the edges.
+ */
+@FunctionalInterface
+public interface AsyncComputeFunction<K, VV, EV, Message> extends ComputeFunction<K, VV, EV, Message> {
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import io.vavr.Tuple2;
+import io.vavr.Tuple3;
+
+/**
+ * Detects the end of the asynchronous phase of a computation by counting messages.  In each wave every
+ * partition reports how many messages it has sent and received so far, and the computation is complete once
+ * two consecutive waves report the same totals with every sent message received.  As a partition only reads
+ * its counts after it has seen the wave start, no message can be sent or received between two such waves
+ * without being counted.
+ */
+final class AsyncTermination {
+
+    enum Status {
+        // Not all partitions have reported the current wave
+        WAITING,
+        // All partitions have reported, and another wave is needed
+        NEXT_WAVE,
+        CONVERGED
+    }
+
+    private final int numPartitions;
+    private int lastWave = -1;
+    private Tuple2<Long, Long> lastTotals;
+
+    AsyncTermination(int numPartitions) {
+        this.numPartitions = numPartitions;
+    }
+
+    /**
+     * Check the reports of the partitions.
+     *
+     * @param wave the current wave
+     * @param reports the latest report of each partition, as (wave, sent, received)
+     * @return the status of the computation
+     */
+    Status check(int wave, Iterable<Tuple3<Integer, Long, Long>> reports) {
+        int reported = 0;
+        long sent = 0L;
+        long received = 0L;
+        for (Tuple3<Integer, Long, Long> report : reports) {
+            if (report._1 == wave) {
+                reported++;
+                sent += report._2;
+                received += report._3;
+            }
+        }
+        if (reported < numPartitions) {
+            return Status.WAITING;
+        }
+        if (wave != lastWave) {
+            Tuple2<Long, Long> totals = new Tuple2<>(sent, received);
+            if (sent == received && wave == lastWave + 1 && totals.equals(lastTotals)) {
+                return Status.CONVERGED;
+            }
+            lastWave = wave;
+            lastTotals = totals;
+        }
+        return Status.NEXT_WAVE;
+    }
+
+    long received() {
+        return lastTotals != null ? lastTotals._2 : 0L;
+    }
+}
@@ -45,10 +45,11 @@ import io.kgraph.pregel.aggregators.Aggregator;
 public interface ComputeFunction<K, VV, EV, Message> {
 
     /**
-     * Initialize the ComputeFunction, this is the place to register aggregators.
+     * Initialize the ComputeFunction, this is the place to register aggregators
+     * and a message combiner.
      *
      * @param configs configuration parameters
-     * @param cb a callback for registering aggregators
+     * @param cb a callback for registering aggregators and a message combiner
      */
     default void init(Map<String, ?> configs, InitCallback cb) {
     }
@@ -102,6 +103,8 @@ public interface ComputeFunction<K, VV, EV, Message> {
 
         protected final Map<String, AggregatorWrapper<?>> aggregators;
 
+        protected MessageCombiner<?> messageCombiner = null;
+
         public InitCallback(Map<String, AggregatorWrapper<?>> aggregators) {
             this.aggregators = aggregators;
         }
@@ -116,6 +119,16 @@ public interface ComputeFunction<K, VV, EV, Message> {
                                            boolean persistent) {
             aggregators.put(name, new AggregatorWrapper<>(aggregatorClass, persistent));
         }
+
+        /**
+         * Register a combiner for the messages sent to the same vertex.  Messages are then combined
+         * before they are sent, and again when they are received.
+         *
+         * @param messageCombiner the message combiner
+         */
+        public <Message> void registerMessageCombiner(MessageCombiner<Message> messageCombiner) {
+            this.messageCombiner = messageCombiner;
+        }
     }
 
     interface ReadAggregators {
@@ -188,6 +201,10 @@ public interface ComputeFunction<K, VV, EV, Message> {
 
         protected final TimestampedKeyValueStore<K, Map<K, EV>> edgesStore;
 
+        protected final Map<K, EV> edges;
+
+        protected boolean edgesChanged = false;
+
         protected VV newVertexValue = null;
 
         protected final Map<K, List<Message>> outgoingMessages = new HashMap<>();
@@ -198,21 +215,62 @@ public interface ComputeFunction<K, VV, EV, Message> {
 
         protected final Map<String, Map<K, ?>> aggregators;
 
+        protected final MessageCombiner<Message> messageCombiner;
+
         public Callback(ProcessorContext context,
                         K key,
                         TimestampedKeyValueStore<K, Map<K, EV>> edgesStore,
                         Map<String, ?> previousAggregates,
                         Map<String, Map<K, ?>> aggregators) {
+            this(context, key, edgesStore, previousAggregates, aggregators, null);
+        }
+
+        /**
+         * Create a callback whose edge mutations are each written through to the edges store, which reads
+         * and rewrites the whole adjacency of the vertex per mutation.  Prefer the constructor taking the
+         * adjacency map, which lets the caller write it back once after compute.
+         */
+        public Callback(ProcessorContext context,
+                        K key,
+                        TimestampedKeyValueStore<K, Map<K, EV>> edgesStore,
+                        Map<String, ?> previousAggregates,
+                        Map<String, Map<K, ?>> aggregators,
+                        MessageCombiner<Message> messageCombiner) {
             this.context = context;
             this.previousAggregates = previousAggregates;
             this.aggregators = aggregators;
             this.key = key;
             this.edgesStore = edgesStore;
+            this.edges = null;
+            this.messageCombiner = messageCombiner;
+        }
+
+        /**
+         * Create a callback whose edge mutations are applied to the given adjacency map of the vertex,
+         * so that mutating all edges of a vertex is O(degree).  The caller is responsible for storing
+         * the map afterwards if {@code edgesChanged} is set.
+         */
+        public Callback(K key,
+                        Map<K, EV> edges,
+                        Map<String, ?> previousAggregates,
+                        Map<String, Map<K, ?>> aggregators,
+                        MessageCombiner<Message> messageCombiner) {
+            this.context = null;
+            this.previousAggregates = previousAggregates;
+            this.aggregators = aggregators;
+            this.key = key;
+            this.edgesStore = null;
+            this.edges = edges;
+            this.messageCombiner = messageCombiner;
         }
 
         public final void sendMessageTo(K target, Message m) {
             List<Message> messages = outgoingMessages.computeIfAbsent(target, k -> new ArrayList<>());
-            messages.add(m);
+            if (messageCombiner != null && !messages.isEmpty()) {
+                messages.set(0, messageCombiner.combine(messages.get(0), m));
+            } else {
+                messages.add(m);
+            }
         }
 
         public final void setNewVertexValue(VV vertexValue) {
@@ -220,6 +278,11 @@ public interface ComputeFunction<K, VV, EV, Message> {
         }
 
         public final void addEdge(K target, EV value) {
+            if (edgesStore == null) {
+                this.edges.put(target, value);
+                edgesChanged = true;
+                return;
+            }
             Map<K, EV> edges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
             if (edges == null) {
                 edges = new HashMap<>();
@@ -229,6 +292,13 @@ public interface ComputeFunction<K, VV, EV, Message> {
         }
 
         public final void removeEdge(K target) {
+            if (edgesStore == null) {
+                if (this.edges.containsKey(target)) {
+                    this.edges.remove(target);
+                    edgesChanged = true;
+                }
+                return;
+            }
             Map<K, EV> edges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
             if (edges == null) {
                 return;
@@ -238,6 +308,13 @@ public interface ComputeFunction<K, VV, EV, Message> {
         }
 
         public final void setNewEdgeValue(K target, EV value) {
+            if (edgesStore == null) {
+                if (this.edges.containsKey(target)) {
+                    this.edges.put(target, value);
+                    edgesChanged = true;
+                }
+                return;
+            }
             Map<K, EV> edges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
             if (edges == null) {
                 return;
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * A partitioner that agrees with the DefaultStreamPartitioner, by hashing the serialized vertex id
+ * with murmur2.  Long and integer ids serialized with the standard serializers are hashed in place,
+ * without serializing them; the partitions of other ids are kept in a bounded cache.
+ *
+ * @param <K> The type of the vertex id.
+ */
+public class DefaultVertexPartitioner<K> implements VertexPartitioner<K> {
+
+    public static final String CACHE_SIZE = "pregel.partitioner.cache.size";
+
+    private static final int DEFAULT_CACHE_SIZE = 100000;
+
+    private Serializer<K> keySerializer;
+    private boolean longKeys;
+    private boolean integerKeys;
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+    private final Map<K, Integer> cache = new ConcurrentHashMap<>();
+    private volatile int cachedNumPartitions = -1;
+
+    @Override
+    public void configure(Map<String, ?> configs, Serializer<K> keySerializer) {
+        this.keySerializer = keySerializer;
+        this.longKeys = keySerializer instanceof LongSerializer;
+        this.integerKeys = keySerializer instanceof IntegerSerializer;
+        Object size = configs.get(CACHE_SIZE);
+        if (size != null) {
+            this.cacheSize = Integer.parseInt(size.toString());
+        }
+    }
+
+    @Override
+    public int partition(K vertex, int numPartitions) {
+        if (longKeys && vertex instanceof Long) {
+            return Utils.toPositive(murmur2((Long) vertex)) % numPartitions;
+        } else if (integerKeys && vertex instanceof Integer) {
+            return Utils.toPositive(murmur2((Integer) vertex)) % numPartitions;
+        }
+        if (cacheSize <= 0) {
+            return partition(keySerializer.serialize(null, vertex), numPartitions);
+        }
+        if (numPartitions != cachedNumPartitions) {
+            cache.clear();
+            cachedNumPartitions = numPartitions;
+        }
+        Integer partition = cache.get(vertex);
+        if (partition == null) {
+            partition = partition(keySerializer.serialize(null, vertex), numPartitions);
+            if (cache.size() >= cacheSize) {
+                // Simple bound; the cache is repopulated by the vertices that are still active
+                cache.clear();
+            }
+            cache.put(vertex, partition);
+        }
+        return partition;
+    }
+
+    private static int partition(byte[] keyBytes, int numPartitions) {
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+    }
+
+    private static final int SEED = 0x9747b28c;
+    private static final int M = 0x5bd1e995;
+
+    /**
+     * {@link Utils#murmur2} of the 8 big-endian bytes of a long, as written by LongSerializer.  Murmur2 reads
+     * each 4 bytes in little-endian order.
+     */
+    static int murmur2(long data) {
+        int h = SEED ^ 8;
+        h = mix(h, Integer.reverseBytes((int) (data >>> 32)));
+        h = mix(h, Integer.reverseBytes((int) data));
+        return finish(h);
+    }
+
+    /**
+     * {@link Utils#murmur2} of the 4 big-endian bytes of an int, as written by IntegerSerializer.
+     */
+    static int murmur2(int data) {
+        return finish(mix(SEED ^ 4, Integer.reverseBytes(data)));
+    }
+
+    private static int mix(int h, int k) {
+        k *= M;
+        k ^= k >>> 24;
+        k *= M;
+        h *= M;
+        return h ^ k;
+    }
+
+    private static int finish(int h) {
+        h ^= h >>> 13;
+        h *= M;
+        h ^= h >>> 15;
+        return h;
+    }
+}
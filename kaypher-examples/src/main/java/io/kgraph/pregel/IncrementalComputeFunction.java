@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Map;
+
+import io.kgraph.VertexWithValue;
+
+/**
+ * A compute function that can resume from the result of a previous run after vertices or edges of the graph
+ * changed, instead of recomputing the whole graph.  A {@link LocalPregelComputation}, or the tasks of a
+ * {@link PregelComputation} resumed with {@link PregelComputation#runIncremental}, call {@link #update} for each
+ * vertex that was added or removed, or whose outgoing edges changed, and then continue the supersteps from the
+ * previous fixed point with only the vertices that were sent a message.
+ *
+ * <p>This suits monotone vertex programs, such as connected components or shortest paths, for changes that can
+ * only improve the result, and programs such as delta PageRank that can send corrections for the change.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <VV> The type of the vertex value (the state of the vertex).
+ * @param <EV> The type of the values that are associated with the edges.
+ * @param <Message> The type of the message sent between vertices along the edges.
+ */
+public interface IncrementalComputeFunction<K, VV, EV, Message> extends ComputeFunction<K, VV, EV, Message> {
+
+    /**
+     * Seed the resumed computation for a changed vertex.  The messages sent with the callback are received in the
+     * first resumed superstep, and the vertex value and edge values may be set.  A vertex that was added receives
+     * the initial message, if any, in addition.  Aggregators may not be used.
+     *
+     * @param vertex the vertex, with its value from the previous run, or its initial value if it was added
+     * @param previousEdges the outgoing edges of the vertex in the previous run, empty if it was added
+     * @param edges the current outgoing edges of the vertex, empty if it was removed
+     * @param cb a callback for setting a new vertex value or edge values, or sending messages
+     * @return whether the change could be applied; if not, the whole graph is recomputed
+     */
+    boolean update(VertexWithValue<K, VV> vertex,
+                   Map<K, EV> previousEdges,
+                   Map<K, EV> edges,
+                   Callback<K, VV, EV, Message> cb);
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * A streaming, locality-aware partitioner that places each vertex as it is loaded, using linear
+ * deterministic greedy (LDG) placement: a vertex goes to the partition that holds the most of its
+ * already placed neighbors, weighted by how much room the partition has left, so that fewer edges
+ * cross partitions while the partitions stay balanced.
+ *
+ * <p>The placement depends on the order in which the vertices are loaded, so the graph must be loaded
+ * by a single process.  The computation learns the placement from the vertices topic; vertices that
+ * were never placed, such as the targets of edges without a vertex, are hashed as by
+ * {@link DefaultVertexPartitioner}.
+ *
+ * @param <K> The type of the vertex id.
+ */
+public class LdgVertexPartitioner<K> implements VertexPartitioner<K> {
+
+    public static final String SLACK = "pregel.partitioner.ldg.slack";
+
+    private static final double DEFAULT_SLACK = 0.1;
+
+    private double slack = DEFAULT_SLACK;
+    private final DefaultVertexPartitioner<K> hashPartitioner = new DefaultVertexPartitioner<>();
+    private final Map<K, Integer> assignment = new ConcurrentHashMap<>();
+    private int[] sizes = new int[0];
+    private long numPlaced;
+
+    @Override
+    public void configure(Map<String, ?> configs, Serializer<K> keySerializer) {
+        hashPartitioner.configure(configs, keySerializer);
+        Object value = configs.get(SLACK);
+        if (value != null) {
+            this.slack = Double.parseDouble(value.toString());
+        }
+    }
+
+    @Override
+    public int partition(K vertex, int numPartitions) {
+        Integer partition = assignment.get(vertex);
+        return partition != null && partition < numPartitions
+            ? partition : hashPartitioner.partition(vertex, numPartitions);
+    }
+
+    @Override
+    public synchronized int place(K vertex, Collection<K> neighbors, int numPartitions) {
+        Integer placed = assignment.get(vertex);
+        if (placed != null) {
+            return placed;
+        }
+        if (sizes.length < numPartitions) {
+            sizes = Arrays.copyOf(sizes, numPartitions);
+        }
+        int[] neighborCounts = new int[numPartitions];
+        for (K neighbor : neighbors) {
+            Integer p = assignment.get(neighbor);
+            if (p != null && p < numPartitions) {
+                neighborCounts[p]++;
+            }
+        }
+        double capacity = (1.0 + slack) * (numPlaced + 1) / numPartitions;
+        int best = -1;
+        double bestScore = 0.0;
+        for (int p = 0; p < numPartitions; p++) {
+            double score = neighborCounts[p] * Math.max(0.0, 1.0 - sizes[p] / capacity);
+            if (best < 0 || score > bestScore || (score == bestScore && sizes[p] < sizes[best])) {
+                best = p;
+                bestScore = score;
+            }
+        }
+        record(vertex, best);
+        return best;
+    }
+
+    @Override
+    public boolean isPlacementBased() {
+        return true;
+    }
+
+    @Override
+    public synchronized void placed(K vertex, int partition) {
+        if (!assignment.containsKey(vertex)) {
+            if (sizes.length <= partition) {
+                sizes = Arrays.copyOf(sizes, partition + 1);
+            }
+            record(vertex, partition);
+        }
+    }
+
+    private void record(K vertex, int partition) {
+        assignment.put(vertex, partition);
+        sizes[partition]++;
+        numPlaced++;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.utils.Utils;
+
+/**
+ * A graph held in memory, partitioned by vertex, that several {@link LocalPregelComputation}s can compute
+ * over, side by side or one after another, without loading it again.  Each computation keeps its own vertex
+ * values, messages and changed edges, so the graph itself is only read while computing.
+ *
+ * <p>The graph may be changed between runs, after which each computation can resume with
+ * {@link LocalPregelComputation#runIncremental}.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <VV> The type of the initial vertex value.
+ * @param <EV> The type of the values that are associated with the edges.
+ */
+public class LocalGraph<K, VV, EV> {
+
+    private final int numPartitions;
+    private final List<Map<K, VV>> vertices;
+    private final List<Map<K, Map<K, EV>>> edges;
+    private final List<Listener<K>> listeners = new CopyOnWriteArrayList<>();
+    // The offsets up to which the graph topics were read, if the graph was read from topics
+    private final Map<TopicPartition, Long> positions = new ConcurrentHashMap<>();
+
+    public LocalGraph(int numPartitions) {
+        this.numPartitions = numPartitions;
+        this.vertices = new ArrayList<>(numPartitions);
+        this.edges = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            vertices.add(new HashMap<>());
+            edges.add(new HashMap<>());
+        }
+    }
+
+    public int numPartitions() {
+        return numPartitions;
+    }
+
+    public long numVertices() {
+        return vertices.stream().mapToLong(Map::size).sum();
+    }
+
+    public void addVertex(K vertex, VV value) {
+        int partition = vertexToPartition(vertex);
+        VV previous = vertices.get(partition).put(vertex, value);
+        for (Listener<K> listener : listeners) {
+            listener.vertexChanged(partition, vertex, previous, value);
+        }
+    }
+
+    /**
+     * Remove a vertex and its outgoing edges.
+     */
+    public void removeVertex(K vertex) {
+        int partition = vertexToPartition(vertex);
+        if (!vertices.get(partition).containsKey(vertex)) {
+            return;
+        }
+        removeEdges(vertex);
+        VV previous = vertices.get(partition).remove(vertex);
+        for (Listener<K> listener : listeners) {
+            listener.vertexChanged(partition, vertex, previous, null);
+        }
+    }
+
+    /**
+     * Replace the outgoing edges of a vertex.
+     */
+    public void addEdges(K source, Map<K, EV> sourceEdges) {
+        int partition = vertexToPartition(source);
+        for (Listener<K> listener : listeners) {
+            listener.edgesChanging(partition, source);
+        }
+        edges.get(partition).put(source, new HashMap<>(sourceEdges));
+    }
+
+    public void removeEdges(K source) {
+        int partition = vertexToPartition(source);
+        for (Listener<K> listener : listeners) {
+            listener.edgesChanging(partition, source);
+        }
+        edges.get(partition).remove(source);
+    }
+
+    int vertexToPartition(K vertex) {
+        return Utils.toPositive(vertex.hashCode()) % numPartitions;
+    }
+
+    Map<K, VV> vertices(int partition) {
+        return Collections.unmodifiableMap(vertices.get(partition));
+    }
+
+    /**
+     * The outgoing edges of the vertices of a partition.  Computations that own the graph may change the
+     * maps of edges in place, others must copy them first.
+     */
+    Map<K, Map<K, EV>> edges(int partition) {
+        return edges.get(partition);
+    }
+
+    Map<TopicPartition, Long> positions() {
+        return positions;
+    }
+
+    void addListener(Listener<K> listener) {
+        listeners.add(listener);
+    }
+
+    void removeListener(Listener<K> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notified of the changes to the graph, so that computations can resume incrementally.
+     */
+    interface Listener<K> {
+
+        /**
+         * Called after a vertex was added, removed or given a new value.
+         *
+         * @param previousValue the previous value, or null if the vertex was added
+         * @param value the new value, or null if the vertex was removed
+         */
+        void vertexChanged(int partition, K vertex, Object previousValue, Object value);
+
+        /**
+         * Called before the outgoing edges of a vertex are replaced or removed.
+         */
+        void edgesChanging(int partition, K source);
+    }
+}
@@ -0,0 +1,842 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.io.Closeable;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.streams.kstream.ValueMapperWithKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.EdgeWithValue;
+import io.kgraph.GraphAlgorithmState.State;
+import io.kgraph.VertexWithValue;
+import io.kgraph.pregel.PregelState.Stage;
+import io.kgraph.pregel.aggregators.Aggregator;
+
+/**
+ * Runs a {@link ComputeFunction} over a graph that is held in memory, using a fork-join pool
+ * to compute the partitions of each superstep in parallel.  Supersteps, aggregators, the master
+ * compute and message combiners behave as in {@link PregelComputation}, but messages are
+ * exchanged in memory instead of through Kafka, ZooKeeper and state stores.
+ *
+ * <p>The graph may be a {@link LocalGraph} that is shared with other computations, which then each
+ * keep their own vertex values and edge changes.
+ *
+ * <p>After a run, vertices and edges may be added, replaced or removed, and {@link #runIncremental}
+ * resumes from the previous result if the compute function is an {@link IncrementalComputeFunction}.
+ *
+ * <p>If the compute function is a {@link ScatterComputeFunction}, the edges of the vertices whose out-degree
+ * is above {@link #MIRROR_DEGREE} are split over all partitions, which scatter them in parallel, so that a
+ * few high-degree vertices do not leave one partition with most of the work of a superstep.  The skew of
+ * each superstep, the work of the busiest partition over that of the median one, is kept in
+ * {@link #superstepSkews()}.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <VV> The type of the vertex value (the state of the vertex).
+ * @param <EV> The type of the values that are associated with the edges.
+ * @param <Message> The type of the message sent between vertices along the edges.
+ */
+public class LocalPregelComputation<K, VV, EV, Message> implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LocalPregelComputation.class);
+
+    public static final String PARALLELISM = "pregel.local.parallelism";
+    public static final String MIRROR_DEGREE = "pregel.local.mirror.degree";
+
+    private final int numPartitions;
+    private final LocalGraph<K, ?, EV> graph;
+    private final boolean ownsGraph;
+    private final ValueMapperWithKey<K, Object, VV> initialValue;
+    private final LocalGraph.Listener<K> graphListener;
+    private final Map<String, ?> configs;
+    private final Optional<Message> initialMessage;
+    private final ComputeFunction<K, VV, EV, Message> computeFunction;
+    private final ScatterComputeFunction<K, VV, EV, Message> scatterFunction;
+    private final int mirrorDegree;
+    private final RegisteredAggregators registeredAggregators;
+    private final MessageCombiner<Message> messageCombiner;
+    private final ForkJoinPool pool;
+    private final List<Partition> partitions;
+
+    private final Map<Integer, Long> superstepTimes = new ConcurrentHashMap<>();
+    private final Map<Integer, Double> superstepSkews = new ConcurrentHashMap<>();
+
+    private volatile PregelState pregelState = new PregelState(State.CREATED, -1, Stage.SEND);
+    private volatile Map<String, ?> previousAggregates = new HashMap<>();
+    // Whether a vertex value changed since the previous run, which cannot be applied incrementally
+    private boolean recompute;
+
+    @SuppressWarnings("unchecked")
+    public LocalPregelComputation(
+        int numPartitions,
+        Map<String, ?> configs,
+        Optional<Message> initialMessage,
+        ComputeFunction<K, VV, EV, Message> cf
+    ) {
+        this(new LocalGraph<K, VV, EV>(numPartitions), true, (vertex, value) -> (VV) value,
+            configs, initialMessage, cf);
+    }
+
+    /**
+     * Create a computation over a graph that may be shared with other computations.  The graph is
+     * only read, and must not be changed while the computation runs.
+     *
+     * @param graph the graph
+     * @param initialValue the initial value of this computation for each vertex of the graph
+     */
+    @SuppressWarnings("unchecked")
+    public <GV> LocalPregelComputation(
+        LocalGraph<K, GV, EV> graph,
+        ValueMapperWithKey<? super K, ? super GV, ? extends VV> initialValue,
+        Map<String, ?> configs,
+        Optional<Message> initialMessage,
+        ComputeFunction<K, VV, EV, Message> cf
+    ) {
+        this(graph, false, (vertex, value) -> initialValue.apply(vertex, (GV) value), configs, initialMessage, cf);
+    }
+
+    @SuppressWarnings("unchecked")
+    private LocalPregelComputation(
+        LocalGraph<K, ?, EV> graph,
+        boolean ownsGraph,
+        ValueMapperWithKey<K, Object, VV> initialValue,
+        Map<String, ?> configs,
+        Optional<Message> initialMessage,
+        ComputeFunction<K, VV, EV, Message> cf
+    ) {
+        this.numPartitions = graph.numPartitions();
+        this.graph = graph;
+        this.ownsGraph = ownsGraph;
+        this.initialValue = initialValue;
+        this.configs = configs;
+        this.initialMessage = initialMessage;
+        this.computeFunction = cf;
+        this.scatterFunction = cf instanceof ScatterComputeFunction
+            ? (ScatterComputeFunction<K, VV, EV, Message>) cf : null;
+        Object mirrorDegree = configs.get(MIRROR_DEGREE);
+        this.mirrorDegree = mirrorDegree != null ? Integer.parseInt(mirrorDegree.toString()) : Integer.MAX_VALUE;
+        this.registeredAggregators = new RegisteredAggregators(configs);
+
+        Object parallelism = configs.get(PARALLELISM);
+        this.pool = new ForkJoinPool(parallelism != null
+            ? Integer.parseInt(parallelism.toString()) : Runtime.getRuntime().availableProcessors());
+        this.partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            partitions.add(new Partition(i));
+        }
+
+        log.info("Pregel configs: {}", configs);
+        ComputeFunction.InitCallback cb = new ComputeFunction.InitCallback(registeredAggregators.registered());
+        cf.init(configs, cb);
+        this.messageCombiner = messageCombiner(cb);
+
+        this.graphListener = new LocalGraph.Listener<K>() {
+            @Override
+            public void vertexChanged(int partition, K vertex, Object previousValue, Object value) {
+                partitions.get(partition).vertexChanged(vertex, previousValue, value);
+            }
+
+            @Override
+            public void edgesChanging(int partition, K source) {
+                partitions.get(partition).edgesChanging(source);
+            }
+        };
+        graph.addListener(graphListener);
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageCombiner<Message> messageCombiner(ComputeFunction.InitCallback cb) {
+        return (MessageCombiner<Message>) cb.messageCombiner;
+    }
+
+    public Map<String, ?> configs() {
+        return configs;
+    }
+
+    LocalGraph<K, ?, EV> graph() {
+        return graph;
+    }
+
+    /**
+     * Add a vertex to the graph, which must not be shared.
+     */
+    @SuppressWarnings("unchecked")
+    public void addVertex(K vertex, VV value) {
+        if (!ownsGraph) {
+            throw new IllegalStateException("Vertices of a shared graph must be added to the graph");
+        }
+        ((LocalGraph<K, VV, EV>) graph).addVertex(vertex, value);
+    }
+
+    public void removeVertex(K vertex) {
+        graph.removeVertex(vertex);
+    }
+
+    public void addEdges(K source, Map<K, EV> edges) {
+        graph.addEdges(source, edges);
+    }
+
+    public void removeEdges(K source) {
+        graph.removeEdges(source);
+    }
+
+    private boolean hasRun() {
+        return pregelState.state() != State.CREATED;
+    }
+
+    public PregelState state() {
+        return pregelState;
+    }
+
+    public Map<String, ?> previousAggregates() {
+        return previousAggregates;
+    }
+
+    /**
+     * The running time of each completed superstep, in milliseconds.
+     */
+    public Map<Integer, Long> superstepTimes() {
+        return Collections.unmodifiableMap(new TreeMap<>(superstepTimes));
+    }
+
+    /**
+     * The skew of each completed superstep, the work of the busiest partition over that of the median one,
+     * counting a computed vertex and each edge it handles as one unit of work.
+     */
+    public Map<Integer, Double> superstepSkews() {
+        return Collections.unmodifiableMap(new TreeMap<>(superstepSkews));
+    }
+
+    public Map<K, VV> result() {
+        Map<K, VV> result = new HashMap<>();
+        for (Partition partition : partitions) {
+            result.putAll(partition.values);
+        }
+        return result;
+    }
+
+    /**
+     * Run the computation to completion, starting from the initial vertex values and, if the graph is
+     * shared, from its edges.
+     *
+     * @param maxIterations the last superstep to compute
+     * @return the final state
+     */
+    public PregelState run(int maxIterations) {
+        for (Partition partition : partitions) {
+            partition.reset();
+        }
+        recompute = false;
+        pregelState = new PregelState(State.RUNNING, 0, Stage.SEND);
+        if (masterCompute(0)) {
+            pregelState = pregelState.state(State.HALTED);
+            return pregelState;
+        }
+        for (Partition partition : partitions) {
+            partition.initInbox();
+        }
+        return runSupersteps(maxIterations);
+    }
+
+    /**
+     * Apply the changes to the graph since the previous run, and resume the computation from its result with
+     * the vertices that {@link IncrementalComputeFunction#update} sent messages to.  The whole graph is
+     * recomputed if there was no previous run, if the compute function is not incremental, if the value of an
+     * existing vertex was replaced, or if the compute function cannot apply a change.
+     *
+     * @param maxIterations the maximum number of supersteps to compute
+     * @return the final state
+     */
+    @SuppressWarnings("unchecked")
+    public PregelState runIncremental(int maxIterations) {
+        if (!hasRun() || recompute || !(computeFunction instanceof IncrementalComputeFunction)) {
+            return run(maxIterations);
+        }
+        IncrementalComputeFunction<K, VV, EV, Message> cf =
+            (IncrementalComputeFunction<K, VV, EV, Message>) computeFunction;
+        int superstep = pregelState.superstep() + 1;
+        long startTime = System.currentTimeMillis();
+        int changedVertices = partitions.stream().mapToInt(p -> p.previousEdges.size()).sum();
+
+        List<Boolean> updated = invokeAll(partitions.stream()
+            .map(p -> (Callable<Boolean>) () -> p.update(cf))
+            .collect(Collectors.toList()));
+        if (updated.contains(false)) {
+            log.info("Recomputing the graph, as the changes to {} vertices cannot be applied incrementally",
+                changedVertices);
+            return run(maxIterations);
+        }
+        invokeAll(partitions.stream()
+            .map(p -> (Callable<Void>) () -> {
+                p.receive();
+                return null;
+            })
+            .collect(Collectors.toList()));
+        for (Partition partition : partitions) {
+            partition.outboxes = null;
+            partition.applyRemovals();
+        }
+        int activeVertices = partitions.stream().mapToInt(p -> p.inbox.size()).sum();
+        log.info("Resuming at step {} with {} active vertices for {} changed vertices, seeded in {} ms",
+            superstep, activeVertices, changedVertices, System.currentTimeMillis() - startTime);
+        if (activeVertices == 0) {
+            pregelState = pregelState.state(State.COMPLETED);
+            return pregelState;
+        }
+
+        pregelState = new PregelState(State.RUNNING, superstep, Stage.SEND);
+        int lastSuperstep = maxIterations > Integer.MAX_VALUE - superstep
+            ? Integer.MAX_VALUE : superstep + maxIterations - 1;
+        return runSupersteps(lastSuperstep);
+    }
+
+    private PregelState runSupersteps(int lastSuperstep) {
+        while (true) {
+            int superstep = pregelState.superstep();
+            long startTime = System.currentTimeMillis();
+            int activeVertices = partitions.stream().mapToInt(p -> p.inbox.size()).sum();
+
+            invokeAll(partitions.stream()
+                .map(p -> (Callable<Void>) () -> {
+                    p.compute(superstep);
+                    return null;
+                })
+                .collect(Collectors.toList()));
+            int mirroredVertices = partitions.stream().mapToInt(p -> p.mirrored.size()).sum();
+            if (mirroredVertices > 0) {
+                invokeAll(partitions.stream()
+                    .map(p -> (Callable<Void>) () -> {
+                        p.scatter(superstep);
+                        return null;
+                    })
+                    .collect(Collectors.toList()));
+            }
+            long computeTime = System.currentTimeMillis() - startTime;
+            double skew = PregelMetrics.skew(partitions.stream().mapToLong(p -> p.work).toArray());
+            superstepSkews.put(superstep, skew);
+
+            invokeAll(partitions.stream()
+                .map(p -> (Callable<Void>) () -> {
+                    p.receive();
+                    return null;
+                })
+                .collect(Collectors.toList()));
+            for (Partition partition : partitions) {
+                partition.outboxes = null;
+                partition.edgeUpdates = null;
+                partition.mirrored.clear();
+            }
+            long messages = partitions.stream().mapToLong(p -> p.messagesSent).sum();
+            int nextActiveVertices = partitions.stream().mapToInt(p -> p.inbox.size()).sum();
+
+            boolean halted = masterCompute(superstep + 1);
+            long time = System.currentTimeMillis() - startTime;
+            superstepTimes.put(superstep, time);
+            log.info("Step {}, computed {} vertices ({} mirrored) in {} ms with skew {}, sent {} messages, total {} ms",
+                superstep, activeVertices, mirroredVertices, computeTime, String.format("%.2f", skew), messages, time);
+
+            if (halted) {
+                pregelState = pregelState.state(State.HALTED);
+                log.info("Pregel computation halted after {} iterations", superstep + 1);
+                break;
+            } else if (superstep + 1 > lastSuperstep || nextActiveVertices == 0) {
+                pregelState = pregelState.state(State.COMPLETED);
+                log.info("Pregel computation converged after {} iterations", superstep + 1);
+                break;
+            }
+            pregelState = pregelState.next().next();
+        }
+        return pregelState;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw toRuntimeException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    /**
+     * Reduce the aggregators of the previous superstep and run the master compute.
+     *
+     * @return whether the computation should be halted
+     */
+    private boolean masterCompute(int superstep) {
+        Map<String, Aggregator<?>> newAggregators = registeredAggregators.newAggregators(previousAggregates);
+        for (Partition partition : partitions) {
+            if (partition.aggregators != null) {
+                RegisteredAggregators.merge(newAggregators, partition.aggregators);
+                partition.aggregators = null;
+            }
+        }
+        ComputeFunction.MasterCallback cb = new ComputeFunction.MasterCallback(newAggregators);
+        computeFunction.masterCompute(superstep, cb);
+        previousAggregates = RegisteredAggregators.aggregates(newAggregators);
+        return cb.haltComputation;
+    }
+
+    private void send(Map<K, List<Message>> inbox, K vertex, List<Message> messages) {
+        List<Message> current = inbox.get(vertex);
+        if (current == null) {
+            inbox.put(vertex, messages);
+            return;
+        }
+        for (Message message : messages) {
+            if (messageCombiner != null && !current.isEmpty()) {
+                current.set(0, messageCombiner.combine(current.get(0), message));
+            } else {
+                current.add(message);
+            }
+        }
+    }
+
+    private void send(Map<K, List<Message>> inbox, K vertex, Message message) {
+        List<Message> current = inbox.get(vertex);
+        if (current == null) {
+            current = new ArrayList<>(1);
+            inbox.put(vertex, current);
+            current.add(message);
+        } else if (messageCombiner != null && !current.isEmpty()) {
+            current.set(0, messageCombiner.combine(current.get(0), message));
+        } else {
+            current.add(message);
+        }
+    }
+
+    private int vertexToPartition(K vertex) {
+        return graph.vertexToPartition(vertex);
+    }
+
+    private final class Partition {
+
+        private final int partition;
+        private final Map<K, VV> values = new HashMap<>();
+        private final Map<K, Map<K, EV>> graphEdges;
+        // The edges changed by this computation, which are those of the graph if it is not shared
+        private final Map<K, Map<K, EV>> edges;
+
+        // The changes since the previous run, with the outgoing edges of each changed vertex in that run
+        private final Map<K, Map<K, EV>> previousEdges = new HashMap<>();
+        private final Set<K> added = new HashSet<>();
+        private final Set<K> removed = new HashSet<>();
+
+        // The targets of the high-degree vertices, in the order in which the partitions split them
+        private final Map<K, List<K>> mirrorTargets = new HashMap<>();
+        // The high-degree vertices computed in this superstep, read by all partitions when they scatter
+        private final List<MirroredVertex> mirrored = new ArrayList<>();
+
+        // Accessed by other partitions only between the compute and receive phases
+        private Map<K, List<Message>> inbox = new HashMap<>();
+        private List<Map<K, List<Message>>> outboxes;
+        private Map<String, Aggregator<?>> aggregators;
+        private long messagesSent;
+        // The edge values set while scattering, by the partition of their source
+        private List<List<EdgeUpdate>> edgeUpdates;
+        private long work;
+
+        private Partition(int partition) {
+            this.partition = partition;
+            this.graphEdges = graph.edges(partition);
+            this.edges = ownsGraph ? graphEdges : new HashMap<>();
+        }
+
+        /**
+         * The outgoing edges of a vertex, which the compute function may change.
+         */
+        private Map<K, EV> vertexEdges(K vertex) {
+            Map<K, EV> vertexEdges = edges.get(vertex);
+            if (vertexEdges == null && !ownsGraph) {
+                Map<K, EV> sharedEdges = graphEdges.get(vertex);
+                if (sharedEdges != null) {
+                    return new CopyOnWriteEdges<>(sharedEdges);
+                }
+            }
+            return vertexEdges != null ? vertexEdges : new HashMap<>();
+        }
+
+        private void edgesChanged(K vertex, Map<K, EV> vertexEdges) {
+            edges.put(vertex, vertexEdges instanceof CopyOnWriteEdges
+                ? ((CopyOnWriteEdges<K, EV>) vertexEdges).edges : vertexEdges);
+        }
+
+        private Map<K, EV> currentEdges(K vertex) {
+            Map<K, EV> vertexEdges = edges.get(vertex);
+            if (vertexEdges == null) {
+                vertexEdges = graphEdges.get(vertex);
+            }
+            return vertexEdges != null ? vertexEdges : Collections.emptyMap();
+        }
+
+        private void vertexChanged(K vertex, Object previousValue, Object value) {
+            if (!hasRun()) {
+                return;
+            }
+            if (value == null) {
+                previousEdges.putIfAbsent(vertex, currentEdges(vertex));
+                added.remove(vertex);
+                removed.add(vertex);
+            } else if (previousValue == null) {
+                previousEdges.putIfAbsent(vertex, currentEdges(vertex));
+                values.put(vertex, initialValue.apply(vertex, value));
+                removed.remove(vertex);
+                added.add(vertex);
+            } else if (!previousValue.equals(value)) {
+                recompute = true;
+            }
+        }
+
+        private void edgesChanging(K source) {
+            mirrorTargets.remove(source);
+            if (hasRun()) {
+                previousEdges.putIfAbsent(source, currentEdges(source));
+            }
+            if (!ownsGraph) {
+                edges.remove(source);
+            }
+        }
+
+        private void reset() {
+            values.clear();
+            for (Map.Entry<K, ?> entry : graph.vertices(partition).entrySet()) {
+                values.put(entry.getKey(), initialValue.apply(entry.getKey(), entry.getValue()));
+            }
+            if (!ownsGraph) {
+                edges.clear();
+            }
+            previousEdges.clear();
+            added.clear();
+            removed.clear();
+            mirrorTargets.clear();
+        }
+
+        /**
+         * Let the compute function seed the changed vertices of this partition.
+         *
+         * @return whether all changes could be applied
+         */
+        private boolean update(IncrementalComputeFunction<K, VV, EV, Message> cf) {
+            outboxes = new ArrayList<>(numPartitions);
+            for (int i = 0; i < numPartitions; i++) {
+                outboxes.add(new HashMap<>());
+            }
+            Map<String, ?> previousAggregates = LocalPregelComputation.this.previousAggregates;
+            for (Map.Entry<K, Map<K, EV>> entry : previousEdges.entrySet()) {
+                K key = entry.getKey();
+                VV value = values.get(key);
+                if (value == null) {
+                    // Edges of a vertex that has no value
+                    continue;
+                }
+                Map<K, EV> vertexEdges = vertexEdges(key);
+                ComputeFunction.Callback<K, VV, EV, Message> cb = new ComputeFunction.Callback<>(
+                    key, vertexEdges, previousAggregates, Collections.emptyMap(), messageCombiner);
+                if (!cf.update(new VertexWithValue<>(key, value), entry.getValue(), vertexEdges, cb)) {
+                    return false;
+                }
+                if (added.contains(key)) {
+                    initialMessage.ifPresent(message -> cb.sendMessageTo(key, message));
+                }
+
+                if (cb.newVertexValue != null) {
+                    values.put(key, cb.newVertexValue);
+                }
+                if (cb.edgesChanged && !removed.contains(key)) {
+                    edgesChanged(key, vertexEdges);
+                }
+                for (Map.Entry<K, List<Message>> message : cb.outgoingMessages.entrySet()) {
+                    send(outboxes.get(vertexToPartition(message.getKey())), message.getKey(), message.getValue());
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Remove the vertices that were removed since the previous run, after they were seeded.
+         */
+        private void applyRemovals() {
+            for (K vertex : removed) {
+                values.remove(vertex);
+                inbox.remove(vertex);
+            }
+            previousEdges.clear();
+            added.clear();
+            removed.clear();
+        }
+
+        private void initInbox() {
+            inbox = new HashMap<>();
+            for (K vertex : values.keySet()) {
+                inbox.put(vertex, initialMessage.map(Collections::singletonList).orElse(Collections.emptyList()));
+            }
+        }
+
+        private void compute(int superstep) {
+            outboxes = new ArrayList<>(numPartitions);
+            for (int i = 0; i < numPartitions; i++) {
+                outboxes.add(new HashMap<>());
+            }
+            messagesSent = 0L;
+            work = 0L;
+            mirrored.clear();
+            if (inbox.isEmpty()) {
+                return;
+            }
+
+            Map<String, ?> previousAggregates = LocalPregelComputation.this.previousAggregates;
+            aggregators = registeredAggregators.newAggregators();
+            Map<String, Map<K, ?>> vertexAggregates = registeredAggregators.names().stream()
+                .collect(Collectors.toMap(name -> name, name -> new HashMap<>()));
+            computeFunction.preSuperstep(superstep, new ComputeFunction.Aggregators(previousAggregates, aggregators));
+
+            for (Map.Entry<K, List<Message>> entry : inbox.entrySet()) {
+                K key = entry.getKey();
+                VV value = values.get(key);
+                if (value == null) {
+                    log.warn("No vertex value for {}", key);
+                }
+                Map<K, EV> vertexEdges = vertexEdges(key);
+                // The edges of a high-degree vertex are left to the partitions that scatter them
+                boolean mirror = scatterFunction != null && vertexEdges.size() > mirrorDegree;
+                Iterable<EdgeWithValue<K, EV>> edgesIterable = mirror
+                    ? Collections.emptyList()
+                    : () -> vertexEdges.entrySet().stream()
+                        .map(e -> new EdgeWithValue<>(key, e.getKey(), e.getValue()))
+                        .iterator();
+                work += mirror ? 1 : 1 + vertexEdges.size();
+
+                ComputeFunction.Callback<K, VV, EV, Message> cb = new ComputeFunction.Callback<>(
+                    key, vertexEdges, previousAggregates, vertexAggregates, messageCombiner);
+                computeFunction.compute(superstep, new VertexWithValue<>(key, value), entry.getValue(), edgesIterable, cb);
+
+                if (cb.newVertexValue != null) {
+                    values.put(key, cb.newVertexValue);
+                }
+                if (cb.edgesChanged) {
+                    edgesChanged(key, vertexEdges);
+                    mirrorTargets.remove(key);
+                }
+                if (mirror) {
+                    List<K> targets = mirrorTargets.computeIfAbsent(key, k -> new ArrayList<>(vertexEdges.keySet()));
+                    mirrored.add(new MirroredVertex(new VertexWithValue<>(key, values.get(key)), vertexEdges, targets));
+                }
+                Map<K, List<Message>> outgoingMessages = cb.outgoingMessages;
+                if (!cb.voteToHalt) {
+                    // Send to self to keep active
+                    outgoingMessages.computeIfAbsent(key, k -> new ArrayList<>());
+                }
+                for (Map.Entry<K, List<Message>> message : outgoingMessages.entrySet()) {
+                    messagesSent += message.getValue().size();
+                    send(outboxes.get(vertexToPartition(message.getKey())), message.getKey(), message.getValue());
+                }
+            }
+
+            aggregateVertices(vertexAggregates);
+            computeFunction.postSuperstep(superstep, new ComputeFunction.Aggregators(previousAggregates, aggregators));
+        }
+
+        @SuppressWarnings("unchecked")
+        private void aggregateVertices(Map<String, Map<K, ?>> vertexAggregates) {
+            for (Map.Entry<String, Aggregator<?>> entry : aggregators.entrySet()) {
+                Aggregator<Object> aggregator = (Aggregator<Object>) entry.getValue();
+                for (Object value : vertexAggregates.get(entry.getKey()).values()) {
+                    aggregator.aggregate(value);
+                }
+            }
+        }
+
+        /**
+         * Scatter this partition's share of the edges of the high-degree vertices computed by all partitions.
+         */
+        private void scatter(int superstep) {
+            ScatterCallback cb = new ScatterCallback();
+            for (Partition owner : partitions) {
+                for (MirroredVertex vertex : owner.mirrored) {
+                    int degree = vertex.targets.size();
+                    int from = (int) ((long) degree * partition / numPartitions);
+                    int to = (int) ((long) degree * (partition + 1) / numPartitions);
+                    cb.owner = owner.partition;
+                    cb.vertex = vertex;
+                    for (int i = from; i < to; i++) {
+                        cb.edgeTarget = vertex.targets.get(i);
+                        EdgeWithValue<K, EV> edge =
+                            new EdgeWithValue<>(vertex.vertex.id(), cb.edgeTarget, vertex.edges.get(cb.edgeTarget));
+                        scatterFunction.scatter(superstep, vertex.vertex, degree, edge, cb);
+                    }
+                    work += to - from;
+                }
+            }
+        }
+
+        private void receive() {
+            Map<K, List<Message>> newInbox = new HashMap<>();
+            for (Partition sender : partitions) {
+                for (Map.Entry<K, List<Message>> entry : sender.outboxes.get(partition).entrySet()) {
+                    send(newInbox, entry.getKey(), entry.getValue());
+                }
+                if (sender.edgeUpdates != null) {
+                    for (EdgeUpdate update : sender.edgeUpdates.get(partition)) {
+                        update.vertex.edges.put(update.target, update.value);
+                        edgesChanged(update.vertex.vertex.id(), update.vertex.edges);
+                    }
+                }
+            }
+            inbox = newInbox;
+        }
+
+        private final class ScatterCallback implements ScatterComputeFunction.ScatterCallback<K, EV, Message> {
+
+            private int owner;
+            private MirroredVertex vertex;
+            private K edgeTarget;
+
+            @Override
+            public void sendMessageTo(K target, Message message) {
+                messagesSent++;
+                send(outboxes.get(vertexToPartition(target)), target, message);
+            }
+
+            @Override
+            public void setNewEdgeValue(EV value) {
+                if (edgeUpdates == null) {
+                    edgeUpdates = new ArrayList<>(numPartitions);
+                    for (int i = 0; i < numPartitions; i++) {
+                        edgeUpdates.add(new ArrayList<>());
+                    }
+                }
+                edgeUpdates.get(owner).add(new EdgeUpdate(vertex, edgeTarget, value));
+            }
+        }
+    }
+
+    private final class MirroredVertex {
+
+        private final VertexWithValue<K, VV> vertex;
+        private final Map<K, EV> edges;
+        private final List<K> targets;
+
+        private MirroredVertex(VertexWithValue<K, VV> vertex, Map<K, EV> edges, List<K> targets) {
+            this.vertex = vertex;
+            this.edges = edges;
+            this.targets = targets;
+        }
+    }
+
+    private final class EdgeUpdate {
+
+        private final MirroredVertex vertex;
+        private final K target;
+        private final EV value;
+
+        private EdgeUpdate(MirroredVertex vertex, K target, EV value) {
+            this.vertex = vertex;
+            this.target = target;
+            this.value = value;
+        }
+    }
+
+    /**
+     * The edges of a shared graph, which are copied before they are changed.
+     */
+    private static final class CopyOnWriteEdges<K, EV> extends AbstractMap<K, EV> {
+
+        private Map<K, EV> edges;
+        private boolean copied;
+
+        CopyOnWriteEdges(Map<K, EV> edges) {
+            this.edges = edges;
+        }
+
+        private Map<K, EV> copy() {
+            if (!copied) {
+                edges = new HashMap<>(edges);
+                copied = true;
+            }
+            return edges;
+        }
+
+        @Override
+        public int size() {
+            return edges.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return edges.containsKey(key);
+        }
+
+        @Override
+        public EV get(Object key) {
+            return edges.get(key);
+        }
+
+        @Override
+        public EV put(K key, EV value) {
+            return copy().put(key, value);
+        }
+
+        @Override
+        public EV remove(Object key) {
+            return copy().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            copy().clear();
+        }
+
+        @Override
+        public Set<Entry<K, EV>> entrySet() {
+            return copied ? edges.entrySet() : Collections.unmodifiableMap(edges).entrySet();
+        }
+    }
+
+    @Override
+    public void close() {
+        graph.removeListener(graphListener);
+        pool.shutdownNow();
+    }
+
+    private static RuntimeException toRuntimeException(Exception e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.ValueMapperWithKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.GraphAlgorithm;
+import io.kgraph.GraphAlgorithmState;
+import io.kgraph.GraphSerialized;
+import io.kgraph.utils.ClientUtils;
+
+/**
+ * A graph algorithm that runs a {@link ComputeFunction} in this JVM with a {@link LocalPregelComputation}.
+ * The graph is read from the vertices and edgesGroupedBySource topics, as written by
+ * {@link io.kgraph.utils.GraphUtils#groupEdgesBySourceAndRepartition} for a {@link io.kgraph.KGraph},
+ * and the resulting vertex values are written to the result topic when the computation completes.
+ *
+ * <p>If the graph in these topics is updated afterwards, for example by loading the changes of the input tables
+ * with the same application id, {@link #runIncremental} reads only the new records and resumes the computation
+ * from its previous result.
+ *
+ * <p>Several algorithms can instead run over one {@link LocalGraph}, read once with {@link #readGraph}, each
+ * with its own vertex values.  They may run side by side or one after another.
+ */
+public class LocalPregelGraphAlgorithm<K, VV, EV, Message>
+    implements GraphAlgorithm<K, VV, EV, Map<K, VV>> {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalPregelGraphAlgorithm.class);
+
+    protected final String applicationId;
+    protected final String bootstrapServers;
+    protected final String verticesTopic;
+    protected final String edgesGroupedBySourceTopic;
+    protected final Map<TopicPartition, Long> graphOffsets;
+    protected final GraphSerialized<K, VV, EV> serialized;
+    protected final String resultTopic;
+    protected final int numPartitions;
+    protected final short replicationFactor;
+    protected final LocalPregelComputation<K, VV, EV, Message> computation;
+
+    protected final ExecutorService executor = Executors.newSingleThreadExecutor();
+    protected Properties streamsConfig;
+    protected volatile CompletableFuture<Map<K, VV>> futureResult;
+
+    public LocalPregelGraphAlgorithm(String applicationId,
+                                     String bootstrapServers,
+                                     String verticesTopic,
+                                     String edgesGroupedBySourceTopic,
+                                     Map<TopicPartition, Long> graphOffsets,
+                                     GraphSerialized<K, VV, EV> serialized,
+                                     String resultTopic,
+                                     int numPartitions,
+                                     short replicationFactor,
+                                     Map<String, ?> configs,
+                                     Optional<Message> initialMessage,
+                                     ComputeFunction<K, VV, EV, Message> cf) {
+        this.applicationId = applicationId;
+        this.bootstrapServers = bootstrapServers;
+        this.verticesTopic = verticesTopic;
+        this.edgesGroupedBySourceTopic = edgesGroupedBySourceTopic;
+        this.graphOffsets = graphOffsets;
+        this.serialized = serialized;
+        this.resultTopic = resultTopic;
+        this.numPartitions = numPartitions;
+        this.replicationFactor = replicationFactor;
+
+        this.computation = new LocalPregelComputation<>(numPartitions, configs, initialMessage, cf);
+    }
+
+    /**
+     * Create an algorithm over a graph that is already read, and may be shared with other algorithms.
+     *
+     * @param graph the graph
+     * @param initialValue the initial value of this algorithm for each vertex of the graph
+     */
+    public <GV> LocalPregelGraphAlgorithm(String applicationId,
+                                          String bootstrapServers,
+                                          LocalGraph<K, GV, EV> graph,
+                                          ValueMapperWithKey<? super K, ? super GV, ? extends VV> initialValue,
+                                          GraphSerialized<K, VV, EV> serialized,
+                                          String resultTopic,
+                                          short replicationFactor,
+                                          Map<String, ?> configs,
+                                          Optional<Message> initialMessage,
+                                          ComputeFunction<K, VV, EV, Message> cf) {
+        this.applicationId = applicationId;
+        this.bootstrapServers = bootstrapServers;
+        this.verticesTopic = null;
+        this.edgesGroupedBySourceTopic = null;
+        this.graphOffsets = null;
+        this.serialized = serialized;
+        this.resultTopic = resultTopic;
+        this.numPartitions = graph.numPartitions();
+        this.replicationFactor = replicationFactor;
+
+        this.computation = new LocalPregelComputation<>(graph, initialValue, configs, initialMessage, cf);
+    }
+
+    public GraphSerialized<K, VV, EV> serialized() {
+        return serialized;
+    }
+
+    public Map<Integer, Long> superstepTimes() {
+        return computation.superstepTimes();
+    }
+
+    @Override
+    public GraphAlgorithmState<Void> configure(StreamsBuilder builder, Properties streamsConfig) {
+        this.streamsConfig = streamsConfig != null ? streamsConfig : new Properties();
+        if (resultTopic != null) {
+            ClientUtils.createTopic(resultTopic, numPartitions, replicationFactor, this.streamsConfig);
+        }
+
+        if (verticesTopic != null) {
+            long startTime = System.currentTimeMillis();
+            readGraph(graphOffsets);
+            log.info("Loaded graph in {} ms", System.currentTimeMillis() - startTime);
+        }
+
+        return new GraphAlgorithmState<>(null, GraphAlgorithmState.State.CREATED, 0,
+            0L, Collections.emptyMap(), null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readGraph(Map<TopicPartition, Long> graphOffsets) {
+        readGraph((LocalGraph<K, VV, EV>) computation.graph(), applicationId, bootstrapServers,
+            verticesTopic, edgesGroupedBySourceTopic, graphOffsets, serialized, streamsConfig);
+    }
+
+    /**
+     * Read the vertices and edgesGroupedBySource topics into a graph, starting after the records that were
+     * read into it before, if any.  A null value removes the vertex or its edges.
+     *
+     * @param graphOffsets the last written offsets of the graph, if known
+     */
+    public static <K, VV, EV> void readGraph(LocalGraph<K, VV, EV> graph,
+                                             String applicationId,
+                                             String bootstrapServers,
+                                             String verticesTopic,
+                                             String edgesGroupedBySourceTopic,
+                                             Map<TopicPartition, Long> graphOffsets,
+                                             GraphSerialized<K, VV, EV> serialized,
+                                             Properties streamsConfig) {
+        Properties config = streamsConfig != null ? streamsConfig : new Properties();
+        Deserializer<K> keyDeserializer = serialized.keySerde().deserializer();
+        readTopic(graph, applicationId, bootstrapServers, verticesTopic, keyDeserializer,
+            serialized.vertexValueSerde().deserializer(), graphOffsets, config, (key, value) -> {
+                if (value != null) {
+                    graph.addVertex(key, value);
+                } else {
+                    graph.removeVertex(key);
+                }
+            });
+        readTopic(graph, applicationId, bootstrapServers, edgesGroupedBySourceTopic, keyDeserializer,
+            PregelSerdes.edgesGroupedBySource(serialized).deserializer(), graphOffsets, config, (key, value) -> {
+                if (value != null) {
+                    graph.addEdges(key, value);
+                } else {
+                    graph.removeEdges(key);
+                }
+            });
+        log.info("Read graph with {} vertices", graph.numVertices());
+    }
+
+    private static <K, V> void readTopic(LocalGraph<K, ?, ?> graph,
+                                         String applicationId,
+                                         String bootstrapServers,
+                                         String topic,
+                                         Deserializer<K> keyDeserializer,
+                                         Deserializer<V> valueDeserializer,
+                                         Map<TopicPartition, Long> graphOffsets,
+                                         Properties streamsConfig,
+                                         BiConsumer<K, V> action) {
+        Map<TopicPartition, Long> positions = graph.positions();
+        Properties consumerConfig = ClientUtils.consumerConfig(bootstrapServers, applicationId + "-loader",
+            keyDeserializer.getClass(), valueDeserializer.getClass(), streamsConfig);
+        try (Consumer<K, V> consumer = new KafkaConsumer<>(consumerConfig, keyDeserializer, valueDeserializer)) {
+            List<TopicPartition> tps = consumer.partitionsFor(topic).stream()
+                .map(info -> new TopicPartition(topic, info.partition()))
+                .collect(Collectors.toList());
+            consumer.assign(tps);
+            consumer.seekToBeginning(tps);
+            for (TopicPartition tp : tps) {
+                Long position = positions.get(tp);
+                if (position != null) {
+                    consumer.seek(tp, position);
+                }
+            }
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(tps);
+            // Consumer end offsets may be stale; use last written offset if available
+            for (Map.Entry<TopicPartition, Long> endOffset : endOffsets.entrySet()) {
+                Long lastWrittenOffset = graphOffsets != null ? graphOffsets.get(endOffset.getKey()) : null;
+                if (lastWrittenOffset != null && lastWrittenOffset >= endOffset.getValue()) {
+                    endOffset.setValue(lastWrittenOffset + 1);
+                }
+            }
+            while (endOffsets.entrySet().stream().anyMatch(e -> consumer.position(e.getKey()) < e.getValue())) {
+                for (ConsumerRecord<K, V> record : consumer.poll(Duration.ofMillis(100))) {
+                    action.accept(record.key(), record.value());
+                }
+            }
+            for (TopicPartition tp : tps) {
+                positions.put(tp, consumer.position(tp));
+            }
+        }
+    }
+
+    @Override
+    public GraphAlgorithmState<Map<K, VV>> run(int maxIterations) {
+        return run(() -> computation.run(maxIterations));
+    }
+
+    /**
+     * Read the records written to the graph topics since the graph was read, and resume the computation
+     * from its previous result, as in {@link LocalPregelComputation#runIncremental}.  A shared graph is
+     * not read, but must be updated with {@link #readGraph} first.
+     *
+     * @param graphOffsets the last written offsets of the updated graph, if known
+     * @param maxIterations the maximum number of supersteps to compute
+     * @return the state of the computation
+     */
+    public GraphAlgorithmState<Map<K, VV>> runIncremental(Map<TopicPartition, Long> graphOffsets, int maxIterations) {
+        return run(() -> {
+            long startTime = System.currentTimeMillis();
+            if (verticesTopic != null) {
+                readGraph(graphOffsets);
+                log.info("Loaded graph changes in {} ms", System.currentTimeMillis() - startTime);
+            }
+            computation.runIncremental(maxIterations);
+        });
+    }
+
+    private GraphAlgorithmState<Map<K, VV>> run(Runnable computationRun) {
+        CompletableFuture<Map<K, VV>> futureResult = new CompletableFuture<>();
+        this.futureResult = futureResult;
+        executor.submit(() -> {
+            try {
+                computationRun.run();
+                Map<K, VV> result = computation.result();
+                writeResult(result);
+                futureResult.complete(result);
+            } catch (Throwable e) {
+                log.error("Pregel computation failed", e);
+                futureResult.completeExceptionally(e);
+            }
+        });
+
+        PregelState state = computation.state();
+        return new GraphAlgorithmState<>(null, state.state(), state.superstep(),
+            state.runningTime(), computation.previousAggregates(), futureResult);
+    }
+
+    private void writeResult(Map<K, VV> result) {
+        if (resultTopic == null) {
+            return;
+        }
+        Properties producerConfig = ClientUtils.producerConfig(bootstrapServers,
+            serialized.keySerde().serializer().getClass(), serialized.vertexValueSerde().serializer().getClass(),
+            streamsConfig);
+        producerConfig.setProperty(ProducerConfig.CLIENT_ID_CONFIG, applicationId + "-producer");
+        try (Producer<K, VV> producer = new KafkaProducer<>(producerConfig,
+            serialized.keySerde().serializer(), serialized.vertexValueSerde().serializer())) {
+            for (Map.Entry<K, VV> entry : result.entrySet()) {
+                producer.send(new ProducerRecord<>(resultTopic, entry.getKey(), entry.getValue()));
+            }
+            producer.flush();
+        }
+    }
+
+    @Override
+    public GraphAlgorithmState<Map<K, VV>> state() {
+        PregelState state = computation.state();
+        return new GraphAlgorithmState<>(null, state.state(), state.superstep(),
+            state.runningTime(), computation.previousAggregates(), futureResult);
+    }
+
+    @Override
+    public Map<String, ?> configs() {
+        return computation.configs();
+    }
+
+    @Override
+    public Iterable<KeyValue<K, VV>> result() {
+        return () -> computation.result().entrySet().stream()
+            .map(entry -> new KeyValue<>(entry.getKey(), entry.getValue()))
+            .iterator();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        computation.close();
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The outgoing edges of a vertex with {@code Long} ids, kept in their encoded form.  The targets are sorted and
+ * written as varint deltas, followed by the column of edge values, so the edges are iterated by decoding them
+ * one at a time.  The edges are copied into a {@code HashMap} only when they are first mutated; until then
+ * they are written back as they were read.
+ *
+ * @param <EV> The type of the edge values.
+ */
+final class LongAdjacency<EV> extends AbstractMap<Long, EV> {
+
+    private final PregelSerdes.Codec<EV> codec;
+    private final byte[] data;
+    private final int start;
+    private final int end;
+    private final int size;
+    private final int targetsStart;
+    private final int valuesStart;
+    private Map<Long, EV> edges;
+
+    private LongAdjacency(PregelSerdes.Codec<EV> codec, byte[] data, int start, int end) {
+        this.codec = codec;
+        this.data = data;
+        this.start = start;
+        this.end = end;
+        PregelSerdes.Reader reader = new PregelSerdes.Reader(data, start);
+        this.size = (int) reader.readUnsignedVarLong();
+        int targetsLength = (int) reader.readUnsignedVarLong();
+        this.targetsStart = reader.position();
+        this.valuesStart = targetsStart + targetsLength;
+    }
+
+    /**
+     * Read the edges encoded by {@link #write} from the given position to the end of the data.
+     */
+    static <EV> LongAdjacency<EV> read(PregelSerdes.Reader reader, PregelSerdes.Codec<EV> codec) {
+        return new LongAdjacency<>(codec, reader.buffer(), reader.position(), reader.buffer().length);
+    }
+
+    /**
+     * Write the edges, none of whose values may be null.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, EV> void write(PregelSerdes.Writer writer, Map<K, EV> edges, PregelSerdes.Codec<EV> codec) {
+        if (edges instanceof LongAdjacency && ((LongAdjacency<EV>) edges).edges == null) {
+            LongAdjacency<EV> adjacency = (LongAdjacency<EV>) edges;
+            writer.writeBytes(adjacency.data, adjacency.start, adjacency.end - adjacency.start);
+            return;
+        }
+        long[] targets = new long[edges.size()];
+        int n = 0;
+        for (K target : edges.keySet()) {
+            targets[n++] = (Long) target;
+        }
+        Arrays.sort(targets);
+        PregelSerdes.Writer targetWriter = new PregelSerdes.Writer();
+        long previous = 0L;
+        for (long target : targets) {
+            // The first target is written as a delta from zero; wrapping around is undone when reading
+            targetWriter.writeUnsignedVarLong(target - previous);
+            previous = target;
+        }
+        byte[] targetBytes = targetWriter.toByteArray();
+        writer.writeUnsignedVarLong(targets.length);
+        writer.writeUnsignedVarLong(targetBytes.length);
+        writer.writeBytes(targetBytes, 0, targetBytes.length);
+        for (long target : targets) {
+            codec.write(writer, edges.get((K) (Long) target));
+        }
+    }
+
+    @Override
+    public int size() {
+        return edges != null ? edges.size() : size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (edges != null) {
+            return edges.containsKey(key);
+        }
+        return key instanceof Long && indexOf((Long) key) >= 0;
+    }
+
+    @Override
+    public EV get(Object key) {
+        if (edges != null) {
+            return edges.get(key);
+        }
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        int index = indexOf((Long) key);
+        if (index < 0) {
+            return null;
+        }
+        PregelSerdes.Reader values = new PregelSerdes.Reader(data, valuesStart);
+        for (int i = 0; i < index; i++) {
+            codec.read(values);
+        }
+        return codec.read(values);
+    }
+
+    @Override
+    public EV put(Long key, EV value) {
+        return materialize().put(key, value);
+    }
+
+    @Override
+    public EV remove(Object key) {
+        return materialize().remove(key);
+    }
+
+    @Override
+    public void clear() {
+        materialize().clear();
+    }
+
+    @Override
+    public Set<Entry<Long, EV>> entrySet() {
+        if (edges != null) {
+            return edges.entrySet();
+        }
+        return new AbstractSet<Entry<Long, EV>>() {
+            @Override
+            public Iterator<Entry<Long, EV>> iterator() {
+                return new EdgeIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(long key) {
+        PregelSerdes.Reader targets = new PregelSerdes.Reader(data, targetsStart);
+        long target = 0L;
+        for (int i = 0; i < size; i++) {
+            target += targets.readUnsignedVarLong();
+            if (target == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Map<Long, EV> materialize() {
+        if (edges == null) {
+            Map<Long, EV> map = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+            Iterator<Entry<Long, EV>> iter = new EdgeIterator();
+            while (iter.hasNext()) {
+                Entry<Long, EV> entry = iter.next();
+                map.put(entry.getKey(), entry.getValue());
+            }
+            edges = map;
+        }
+        return edges;
+    }
+
+    /**
+     * Decodes the edges from the encoded data, so it is unaffected by later mutations.
+     */
+    private final class EdgeIterator implements Iterator<Entry<Long, EV>> {
+        private final PregelSerdes.Reader targets = new PregelSerdes.Reader(data, targetsStart);
+        private final PregelSerdes.Reader values = new PregelSerdes.Reader(data, valuesStart);
+        private long target = 0L;
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() {
+            return index < size;
+        }
+
+        @Override
+        public Entry<Long, EV> next() {
+            if (index >= size) {
+                throw new NoSuchElementException();
+            }
+            index++;
+            target += targets.readUnsignedVarLong();
+            return new SimpleImmutableEntry<>(target, codec.read(values));
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * A compressed bitmap of {@code long} values in the style of Roaring bitmaps.  Values are grouped by their
+ * upper 48 bits into containers of up to 65536 values, each holding either a sorted array of the lower 16 bits,
+ * while sparse, or a bitmap of 8 KB, once it holds more than 4096 values.  A dense range of ids thus costs about
+ * one bit per value, and a sparse one two bytes per value, instead of a boxed entry in a hash set.
+ *
+ * <p>Not thread-safe.
+ */
+final class LongBitmap implements Iterable<Long> {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final Map<Long, Container> containers = new HashMap<>();
+    private long cardinality;
+
+    public boolean add(long value) {
+        Container container = containers.computeIfAbsent(value >>> 16, k -> new Container());
+        if (container.add((int) (value & 0xFFFF))) {
+            cardinality++;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean remove(long value) {
+        Long high = value >>> 16;
+        Container container = containers.get(high);
+        if (container == null || !container.remove((int) (value & 0xFFFF))) {
+            return false;
+        }
+        if (container.cardinality == 0) {
+            containers.remove(high);
+        }
+        cardinality--;
+        return true;
+    }
+
+    public boolean contains(long value) {
+        Container container = containers.get(value >>> 16);
+        return container != null && container.contains((int) (value & 0xFFFF));
+    }
+
+    public long cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    @Override
+    public PrimitiveIterator.OfLong iterator() {
+        Iterator<Map.Entry<Long, Container>> entries = containers.entrySet().iterator();
+        return new PrimitiveIterator.OfLong() {
+            private long high;
+            private Container container;
+            private int next = -1;
+
+            @Override
+            public boolean hasNext() {
+                while (true) {
+                    if (container != null) {
+                        next = container.next(next + 1);
+                        if (next >= 0) {
+                            // Leave the position at the found value, so the next call does not advance
+                            next--;
+                            return true;
+                        }
+                    }
+                    if (!entries.hasNext()) {
+                        container = null;
+                        return false;
+                    }
+                    Map.Entry<Long, Container> entry = entries.next();
+                    high = entry.getKey();
+                    container = entry.getValue();
+                    next = -1;
+                }
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                next = container.next(next + 1);
+                return (high << 16) | next;
+            }
+        };
+    }
+
+    /**
+     * The values of one 16-bit chunk.
+     */
+    private static final class Container {
+        private char[] array = new char[4];
+        private long[] bitmap;
+        private int cardinality;
+
+        boolean add(int low) {
+            if (bitmap != null) {
+                long mask = 1L << low;
+                if ((bitmap[low >>> 6] & mask) != 0) {
+                    return false;
+                }
+                bitmap[low >>> 6] |= mask;
+                cardinality++;
+                return true;
+            }
+            int pos = Arrays.binarySearch(array, 0, cardinality, (char) low);
+            if (pos >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(low);
+            }
+            int insert = -pos - 1;
+            if (cardinality == array.length) {
+                array = Arrays.copyOf(array, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(array, insert, array, insert + 1, cardinality - insert);
+            array[insert] = (char) low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(int low) {
+            if (bitmap != null) {
+                long mask = 1L << low;
+                if ((bitmap[low >>> 6] & mask) == 0) {
+                    return false;
+                }
+                bitmap[low >>> 6] &= ~mask;
+                cardinality--;
+                if (cardinality <= ARRAY_MAX) {
+                    toArray();
+                }
+                return true;
+            }
+            int pos = Arrays.binarySearch(array, 0, cardinality, (char) low);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(array, pos + 1, array, pos, cardinality - pos - 1);
+            cardinality--;
+            return true;
+        }
+
+        boolean contains(int low) {
+            if (bitmap != null) {
+                return (bitmap[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(array, 0, cardinality, (char) low) >= 0;
+        }
+
+        /**
+         * The smallest value that is at least {@code from}, or -1 if there is none.
+         */
+        int next(int from) {
+            if (from > 0xFFFF) {
+                return -1;
+            }
+            if (bitmap != null) {
+                int word = from >>> 6;
+                long bits = bitmap[word] & (-1L << from);
+                while (true) {
+                    if (bits != 0) {
+                        return (word << 6) + Long.numberOfTrailingZeros(bits);
+                    }
+                    if (++word == BITMAP_WORDS) {
+                        return -1;
+                    }
+                    bits = bitmap[word];
+                }
+            }
+            int pos = Arrays.binarySearch(array, 0, cardinality, (char) from);
+            if (pos < 0) {
+                pos = -pos - 1;
+            }
+            return pos < cardinality ? array[pos] : -1;
+        }
+
+        private void toBitmap() {
+            bitmap = new long[BITMAP_WORDS];
+            for (int i = 0; i < cardinality; i++) {
+                bitmap[array[i] >>> 6] |= 1L << array[i];
+            }
+            array = null;
+        }
+
+        private void toArray() {
+            array = new char[cardinality];
+            int n = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                long bits = bitmap[word];
+                while (bits != 0) {
+                    array[n++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                    bits &= bits - 1;
+                }
+            }
+            bitmap = null;
+        }
+    }
+}
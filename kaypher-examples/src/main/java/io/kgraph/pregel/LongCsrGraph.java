@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Arrays;
+
+/**
+ * A graph with {@code long} vertex ids and {@code double} vertex and edge values, stored in
+ * compressed sparse row form.  Vertices are numbered by the position of their id in the sorted
+ * array of ids, and the outgoing edges of vertex {@code v} are the edges
+ * {@code offsets[v]} to {@code offsets[v + 1] - 1}, whose targets are stored as vertex numbers.
+ */
+public final class LongCsrGraph {
+
+    private final long[] ids;
+    private final double[] values;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] edgeValues;
+
+    private LongCsrGraph(long[] ids, double[] values, int[] offsets, int[] targets, double[] edgeValues) {
+        this.ids = ids;
+        this.values = values;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.edgeValues = edgeValues;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int numVertices() {
+        return ids.length;
+    }
+
+    public int numEdges() {
+        return targets.length;
+    }
+
+    public long id(int vertex) {
+        return ids[vertex];
+    }
+
+    /**
+     * The number of the vertex with the given id, or -1 if there is no such vertex.
+     */
+    public int vertex(long id) {
+        int vertex = Arrays.binarySearch(ids, id);
+        return vertex >= 0 ? vertex : -1;
+    }
+
+    public double value(int vertex) {
+        return values[vertex];
+    }
+
+    public void setValue(int vertex, double value) {
+        values[vertex] = value;
+    }
+
+    public int firstEdge(int vertex) {
+        return offsets[vertex];
+    }
+
+    public int degree(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    public int target(int edge) {
+        return targets[edge];
+    }
+
+    public double edgeValue(int edge) {
+        return edgeValues[edge];
+    }
+
+    public void setEdgeValue(int edge, double value) {
+        edgeValues[edge] = value;
+    }
+
+    public static final class Builder {
+
+        private long[] vertexIds = new long[16];
+        private double[] vertexValues = new double[16];
+        private int numVertices;
+
+        private long[] sources = new long[16];
+        private long[] targets = new long[16];
+        private double[] values = new double[16];
+        private int numEdges;
+
+        private double defaultValue = 0d;
+
+        private Builder() {
+        }
+
+        /**
+         * The value of the vertices that are only added as the endpoint of an edge.
+         */
+        public Builder defaultValue(double defaultValue) {
+            this.defaultValue = defaultValue;
+            return this;
+        }
+
+        public Builder addVertex(long id, double value) {
+            if (numVertices == vertexIds.length) {
+                vertexIds = Arrays.copyOf(vertexIds, numVertices * 2);
+                vertexValues = Arrays.copyOf(vertexValues, numVertices * 2);
+            }
+            vertexIds[numVertices] = id;
+            vertexValues[numVertices] = value;
+            numVertices++;
+            return this;
+        }
+
+        public Builder addEdge(long source, long target, double value) {
+            if (numEdges == sources.length) {
+                sources = Arrays.copyOf(sources, numEdges * 2);
+                targets = Arrays.copyOf(targets, numEdges * 2);
+                values = Arrays.copyOf(values, numEdges * 2);
+            }
+            sources[numEdges] = source;
+            targets[numEdges] = target;
+            values[numEdges] = value;
+            numEdges++;
+            return this;
+        }
+
+        public LongCsrGraph build() {
+            // Collect the ids of all vertices, including those only known as the endpoint of an edge
+            long[] allIds = new long[numVertices + 2 * numEdges];
+            System.arraycopy(vertexIds, 0, allIds, 0, numVertices);
+            System.arraycopy(sources, 0, allIds, numVertices, numEdges);
+            System.arraycopy(targets, 0, allIds, numVertices + numEdges, numEdges);
+            Arrays.sort(allIds);
+            int n = 0;
+            for (int i = 0; i < allIds.length; i++) {
+                if (i == 0 || allIds[i] != allIds[i - 1]) {
+                    allIds[n++] = allIds[i];
+                }
+            }
+            long[] ids = Arrays.copyOf(allIds, n);
+
+            double[] graphValues = new double[n];
+            Arrays.fill(graphValues, defaultValue);
+            for (int i = 0; i < numVertices; i++) {
+                graphValues[Arrays.binarySearch(ids, vertexIds[i])] = vertexValues[i];
+            }
+
+            // Counting sort of the edges by source
+            int[] sourceVertices = new int[numEdges];
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < numEdges; i++) {
+                sourceVertices[i] = Arrays.binarySearch(ids, sources[i]);
+                offsets[sourceVertices[i] + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, n);
+            int[] graphTargets = new int[numEdges];
+            double[] graphEdgeValues = new double[numEdges];
+            for (int i = 0; i < numEdges; i++) {
+                int edge = next[sourceVertices[i]]++;
+                graphTargets[edge] = Arrays.binarySearch(ids, targets[i]);
+                graphEdgeValues[edge] = values[i];
+            }
+            return new LongCsrGraph(ids, graphValues, offsets, graphTargets, graphEdgeValues);
+        }
+    }
+}
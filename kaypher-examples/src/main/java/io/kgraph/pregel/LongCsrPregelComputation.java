@@ -0,0 +1,427 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.GraphAlgorithmState.State;
+import io.kgraph.pregel.PregelState.Stage;
+import io.kgraph.pregel.aggregators.Aggregator;
+
+/**
+ * Runs a {@link LongDoubleComputeFunction} over a {@link LongCsrGraph} in this JVM.  This is the
+ * primitive counterpart of {@link LocalPregelComputation}: vertex values, messages and the active
+ * vertices are kept in arrays indexed by vertex number, and each partition is a contiguous range
+ * of vertex numbers.  Messages to vertices of the same partition are combined in place; messages
+ * to other partitions are buffered and combined by the receiving partition.
+ */
+public class LongCsrPregelComputation implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(LongCsrPregelComputation.class);
+
+    private final LongCsrGraph graph;
+    private final int numPartitions;
+    private final int partitionSize;
+    private final Map<String, ?> configs;
+    private final OptionalDouble initialMessage;
+    private final LongDoubleComputeFunction computeFunction;
+    private final RegisteredAggregators registeredAggregators;
+    private final ForkJoinPool pool;
+    private final List<Partition> partitions;
+
+    private double[] messages;
+    private boolean[] hasMessage;
+    private boolean[] active;
+    private double[] nextMessages;
+    private boolean[] nextHasMessage;
+    private boolean[] nextActive;
+
+    private final Map<Integer, Long> superstepTimes = new ConcurrentHashMap<>();
+
+    private volatile PregelState pregelState = new PregelState(State.CREATED, -1, Stage.SEND);
+    private volatile Map<String, ?> previousAggregates = new HashMap<>();
+
+    public LongCsrPregelComputation(
+        LongCsrGraph graph,
+        int numPartitions,
+        Map<String, ?> configs,
+        OptionalDouble initialMessage,
+        LongDoubleComputeFunction cf
+    ) {
+        this.graph = graph;
+        this.numPartitions = numPartitions;
+        this.partitionSize = Math.max(1, (graph.numVertices() + numPartitions - 1) / numPartitions);
+        this.configs = configs;
+        this.initialMessage = initialMessage;
+        this.computeFunction = cf;
+        this.registeredAggregators = new RegisteredAggregators(configs);
+
+        Object parallelism = configs.get(LocalPregelComputation.PARALLELISM);
+        this.pool = new ForkJoinPool(parallelism != null
+            ? Integer.parseInt(parallelism.toString()) : Runtime.getRuntime().availableProcessors());
+        this.partitions = new ArrayList<>(numPartitions);
+        for (int i = 0; i < numPartitions; i++) {
+            int start = Math.min(i * partitionSize, graph.numVertices());
+            int end = Math.min(start + partitionSize, graph.numVertices());
+            partitions.add(new Partition(i, start, end));
+        }
+
+        int n = graph.numVertices();
+        this.messages = new double[n];
+        this.hasMessage = new boolean[n];
+        this.active = new boolean[n];
+        this.nextMessages = new double[n];
+        this.nextHasMessage = new boolean[n];
+        this.nextActive = new boolean[n];
+
+        log.info("Pregel configs: {}", configs);
+        cf.init(configs, new ComputeFunction.InitCallback(registeredAggregators.registered()));
+    }
+
+    public Map<String, ?> configs() {
+        return configs;
+    }
+
+    public LongCsrGraph graph() {
+        return graph;
+    }
+
+    public PregelState state() {
+        return pregelState;
+    }
+
+    public Map<String, ?> previousAggregates() {
+        return previousAggregates;
+    }
+
+    /**
+     * The running time of each completed superstep, in milliseconds.
+     */
+    public Map<Integer, Long> superstepTimes() {
+        return Collections.unmodifiableMap(new TreeMap<>(superstepTimes));
+    }
+
+    /**
+     * Run the computation to completion.  The vertex values of the graph are updated in place.
+     *
+     * @param maxIterations the last superstep to compute
+     * @return the final state
+     */
+    public PregelState run(int maxIterations) {
+        pregelState = new PregelState(State.RUNNING, 0, Stage.SEND);
+        if (masterCompute(0)) {
+            pregelState = pregelState.state(State.HALTED);
+            return pregelState;
+        }
+        Arrays.fill(active, true);
+        if (initialMessage.isPresent()) {
+            Arrays.fill(messages, initialMessage.getAsDouble());
+            Arrays.fill(hasMessage, true);
+        }
+
+        while (true) {
+            int superstep = pregelState.superstep();
+            long startTime = System.currentTimeMillis();
+
+            invokeAll(partitions.stream()
+                .map(p -> (Callable<Void>) () -> {
+                    p.compute(superstep);
+                    return null;
+                })
+                .collect(Collectors.toList()));
+            long computeTime = System.currentTimeMillis() - startTime;
+
+            invokeAll(partitions.stream()
+                .map(p -> (Callable<Void>) () -> {
+                    p.receive();
+                    return null;
+                })
+                .collect(Collectors.toList()));
+            int activeVertices = partitions.stream().mapToInt(p -> p.activeVertices).sum();
+            long messagesSent = partitions.stream().mapToLong(p -> p.messagesSent).sum();
+            int nextActiveVertices = partitions.stream().mapToInt(p -> p.nextActiveVertices).sum();
+            swap();
+
+            boolean halted = masterCompute(superstep + 1);
+            long time = System.currentTimeMillis() - startTime;
+            superstepTimes.put(superstep, time);
+            log.info("Step {}, computed {} vertices in {} ms, sent {} messages, total {} ms",
+                superstep, activeVertices, computeTime, messagesSent, time);
+
+            if (halted) {
+                pregelState = pregelState.state(State.HALTED);
+                log.info("Pregel computation halted after {} iterations", superstep + 1);
+                break;
+            } else if (superstep + 1 > maxIterations || nextActiveVertices == 0) {
+                pregelState = pregelState.state(State.COMPLETED);
+                log.info("Pregel computation converged after {} iterations", superstep + 1);
+                break;
+            }
+            pregelState = pregelState.next().next();
+        }
+        return pregelState;
+    }
+
+    private void swap() {
+        double[] m = messages;
+        messages = nextMessages;
+        nextMessages = m;
+        boolean[] h = hasMessage;
+        hasMessage = nextHasMessage;
+        nextHasMessage = h;
+        boolean[] a = active;
+        active = nextActive;
+        nextActive = a;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw toRuntimeException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+        }
+    }
+
+    private boolean masterCompute(int superstep) {
+        Map<String, Aggregator<?>> newAggregators = registeredAggregators.newAggregators(previousAggregates);
+        for (Partition partition : partitions) {
+            if (partition.aggregators != null) {
+                RegisteredAggregators.merge(newAggregators, partition.aggregators);
+                partition.aggregators = null;
+            }
+        }
+        ComputeFunction.MasterCallback cb = new ComputeFunction.MasterCallback(newAggregators);
+        computeFunction.masterCompute(superstep, cb);
+        previousAggregates = RegisteredAggregators.aggregates(newAggregators);
+        return cb.haltComputation;
+    }
+
+    private static final class MessageBuffer {
+        private int[] targets = new int[16];
+        private double[] messages = new double[16];
+        private int size;
+
+        private void add(int target, double message) {
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                messages = Arrays.copyOf(messages, size * 2);
+            }
+            targets[size] = target;
+            messages[size] = message;
+            size++;
+        }
+    }
+
+    private final class Partition implements LongDoubleComputeFunction.Vertex, LongDoubleComputeFunction.Callback {
+
+        private final int partition;
+        private final int start;
+        private final int end;
+        private final MessageBuffer[] outboxes;
+
+        private Map<String, ?> currentAggregates;
+        private Map<String, Aggregator<?>> aggregators;
+        private int activeVertices;
+        private int nextActiveVertices;
+        private long messagesSent;
+
+        // The vertex being computed
+        private int vertex;
+        private boolean voteToHalt;
+
+        private Partition(int partition, int start, int end) {
+            this.partition = partition;
+            this.start = start;
+            this.end = end;
+            this.outboxes = new MessageBuffer[numPartitions];
+            for (int i = 0; i < numPartitions; i++) {
+                outboxes[i] = new MessageBuffer();
+            }
+        }
+
+        private void compute(int superstep) {
+            // Only this partition writes to its range of the next arrays until the receive phase
+            Arrays.fill(nextHasMessage, start, end, false);
+            Arrays.fill(nextActive, start, end, false);
+            activeVertices = 0;
+            messagesSent = 0L;
+            currentAggregates = previousAggregates;
+            for (int v = start; v < end; v++) {
+                if (!active[v] && !hasMessage[v]) {
+                    continue;
+                }
+                if (aggregators == null) {
+                    aggregators = registeredAggregators.newAggregators();
+                    computeFunction.preSuperstep(superstep, new ComputeFunction.Aggregators(currentAggregates, aggregators));
+                }
+                activeVertices++;
+                vertex = v;
+                voteToHalt = false;
+                computeFunction.compute(superstep, this, this);
+                if (!voteToHalt) {
+                    nextActive[v] = true;
+                }
+            }
+            if (aggregators != null) {
+                computeFunction.postSuperstep(superstep, new ComputeFunction.Aggregators(currentAggregates, aggregators));
+            }
+        }
+
+        private void receive() {
+            for (Partition sender : partitions) {
+                MessageBuffer outbox = sender.outboxes[partition];
+                for (int i = 0; i < outbox.size; i++) {
+                    deliver(outbox.targets[i], outbox.messages[i]);
+                }
+                outbox.size = 0;
+            }
+            nextActiveVertices = 0;
+            for (int v = start; v < end; v++) {
+                if (nextActive[v] || nextHasMessage[v]) {
+                    nextActiveVertices++;
+                }
+            }
+        }
+
+        private void deliver(int target, double message) {
+            if (nextHasMessage[target]) {
+                nextMessages[target] = computeFunction.combine(nextMessages[target], message);
+            } else {
+                nextMessages[target] = message;
+                nextHasMessage[target] = true;
+            }
+        }
+
+        private void send(int target, double message) {
+            messagesSent++;
+            if (target >= start && target < end) {
+                deliver(target, message);
+            } else {
+                outboxes[target / partitionSize].add(target, message);
+            }
+        }
+
+        @Override
+        public long id() {
+            return graph.id(vertex);
+        }
+
+        @Override
+        public double value() {
+            return graph.value(vertex);
+        }
+
+        @Override
+        public boolean hasMessage() {
+            return hasMessage[vertex];
+        }
+
+        @Override
+        public double message() {
+            return messages[vertex];
+        }
+
+        @Override
+        public int degree() {
+            return graph.degree(vertex);
+        }
+
+        @Override
+        public long target(int i) {
+            return graph.id(graph.target(graph.firstEdge(vertex) + i));
+        }
+
+        @Override
+        public double edgeValue(int i) {
+            return graph.edgeValue(graph.firstEdge(vertex) + i);
+        }
+
+        @Override
+        public void setNewVertexValue(double value) {
+            graph.setValue(vertex, value);
+        }
+
+        @Override
+        public void sendMessageTo(long target, double message) {
+            int targetVertex = graph.vertex(target);
+            if (targetVertex < 0) {
+                log.warn("No vertex for {}", target);
+                return;
+            }
+            send(targetVertex, message);
+        }
+
+        @Override
+        public void sendMessageAlongEdge(int i, double message) {
+            send(graph.target(graph.firstEdge(vertex) + i), message);
+        }
+
+        @Override
+        public void setNewEdgeValue(int i, double value) {
+            graph.setEdgeValue(graph.firstEdge(vertex) + i, value);
+        }
+
+        @Override
+        public void voteToHalt() {
+            voteToHalt = true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T getAggregatedValue(String name) {
+            return (T) currentAggregates.get(name);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> void aggregate(String name, T value) {
+            ((Aggregator<T>) aggregators.get(name)).aggregate(value);
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static RuntimeException toRuntimeException(Exception e) {
+        return e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Map;
+
+/**
+ * A compute function for graphs with {@code long} vertex ids and {@code double} vertex values,
+ * edge values and messages, run by a {@link LongCsrPregelComputation}.  The vertex, its edges
+ * and its messages are accessed without boxing or allocating, and the messages sent to a vertex
+ * are always combined, so a vertex receives at most one message per superstep.
+ */
+public interface LongDoubleComputeFunction {
+
+    /**
+     * Initialize the compute function, this is the place to register aggregators.
+     *
+     * @param configs configuration parameters
+     * @param cb a callback for registering aggregators
+     */
+    default void init(Map<String, ?> configs, ComputeFunction.InitCallback cb) {
+    }
+
+    /**
+     * Combine two messages sent to the same vertex.
+     *
+     * @param message1 the first message
+     * @param message2 the second message
+     * @return the combined message
+     */
+    double combine(double message1, double message2);
+
+    /**
+     * A function for performing sequential computations between supersteps.
+     *
+     * @param superstep the superstep
+     * @param cb a callback for writing to aggregators or halting the computation
+     */
+    default void masterCompute(int superstep, ComputeFunction.MasterCallback cb) {
+    }
+
+    /**
+     * Prepare for computation.  This method is executed exactly once prior to compute() being called
+     * for any of the vertices in the partition.
+     *
+     * @param superstep the superstep
+     * @param aggregators the aggregators
+     */
+    default void preSuperstep(int superstep, ComputeFunction.Aggregators aggregators) {
+    }
+
+    /**
+     * The function for computing a new vertex value or sending messages to the next superstep.
+     * The vertex and callback are only valid for the duration of the call.
+     *
+     * @param superstep the count of the current superstep
+     * @param vertex the current vertex with its value, message and edges
+     * @param cb a callback for setting a new vertex value or sending messages to the next superstep
+     */
+    void compute(int superstep, Vertex vertex, Callback cb);
+
+    /**
+     * Finish computation.  This method is executed exactly once after computation
+     * for all vertices in the partition is complete.
+     *
+     * @param superstep the superstep
+     * @param aggregators the aggregators
+     */
+    default void postSuperstep(int superstep, ComputeFunction.Aggregators aggregators) {
+    }
+
+    interface Vertex {
+
+        long id();
+
+        double value();
+
+        boolean hasMessage();
+
+        /**
+         * The combined message sent to this vertex, only defined if {@link #hasMessage()}.
+         */
+        double message();
+
+        int degree();
+
+        /**
+         * The id of the target of the i-th outgoing edge.
+         */
+        long target(int i);
+
+        double edgeValue(int i);
+    }
+
+    interface Callback extends ComputeFunction.ReadWriteAggregators {
+
+        void setNewVertexValue(double value);
+
+        void sendMessageTo(long target, double message);
+
+        /**
+         * Send a message to the target of the i-th outgoing edge, without looking up the target.
+         */
+        void sendMessageAlongEdge(int i, double message);
+
+        void setNewEdgeValue(int i, double value);
+
+        void voteToHalt();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * A store of the messages received by the vertices of a partition, keyed by
+ * (superstep, target vertex, sender vertex).
+ *
+ * <p>Each incoming message is an independent append, so its cost does not depend on the
+ * number of messages already received in the superstep.  The messages of a single target
+ * are contiguous in the underlying (sorted) store and are read back with a prefix scan.
+ *
+ * @param <K> The type of the vertex key.
+ * @param <Message> The type of the message sent between vertices.
+ */
+public class MessageInbox<K, Message> {
+
+    private static final int SUPERSTEP_SIZE = 4;
+    private static final int LENGTH_SIZE = 4;
+
+    private final KeyValueStore<Bytes, List<Message>> store;
+    private final Serde<K> keySerde;
+
+    public MessageInbox(KeyValueStore<Bytes, List<Message>> store, Serde<K> keySerde) {
+        this.store = store;
+        this.keySerde = keySerde;
+    }
+
+    /**
+     * Stores the messages sent by the given sender to the given target, replacing
+     * any messages previously received from the same sender in the same superstep.
+     */
+    public void put(int superstep, K target, K sender, List<Message> messages) {
+        store.put(key(superstep, serialize(target), serialize(sender)), messages);
+    }
+
+    /**
+     * Ensures the target has an (empty) entry from the given sender in the given superstep.
+     */
+    public void putIfAbsent(int superstep, K target, K sender) {
+        store.putIfAbsent(key(superstep, serialize(target), serialize(sender)), Collections.emptyList());
+    }
+
+    /**
+     * Returns the messages received by the given target in the given superstep, grouped by sender.
+     */
+    public Map<K, List<Message>> messages(int superstep, K target) {
+        byte[] prefix = prefix(superstep, serialize(target));
+        Map<K, List<Message>> result = new HashMap<>();
+        try (KeyValueIterator<Bytes, List<Message>> iter = range(prefix)) {
+            while (iter.hasNext()) {
+                KeyValue<Bytes, List<Message>> entry = iter.next();
+                byte[] key = entry.key.get();
+                if (!hasPrefix(key, prefix)) {
+                    continue;
+                }
+                K sender = keySerde.deserializer().deserialize(null, Arrays.copyOfRange(key, prefix.length, key.length));
+                result.put(sender, entry.value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the messages received by the given target in the given superstep, combined into at
+     * most one message, which is keyed by the target itself.
+     *
+     * <p>The messages are kept per sender until they are read, so that a record that is received
+     * again after a failure replaces the messages of its sender instead of being combined twice.
+     */
+    public Map<K, List<Message>> messages(int superstep, K target, MessageCombiner<Message> combiner) {
+        Message combined = null;
+        for (List<Message> messages : messages(superstep, target).values()) {
+            for (Message message : messages) {
+                combined = combined == null ? message : combiner.combine(combined, message);
+            }
+        }
+        return Collections.singletonMap(target,
+            combined != null ? Collections.singletonList(combined) : Collections.emptyList());
+    }
+
+    /**
+     * Returns the vertices that received messages in the given superstep.
+     */
+    public Set<K> targets(int superstep) {
+        byte[] prefix = prefix(superstep);
+        Set<K> result = new HashSet<>();
+        try (KeyValueIterator<Bytes, List<Message>> iter = range(prefix)) {
+            while (iter.hasNext()) {
+                byte[] key = iter.next().key.get();
+                if (!hasPrefix(key, prefix)) {
+                    continue;
+                }
+                int length = ByteBuffer.wrap(key, SUPERSTEP_SIZE, LENGTH_SIZE).getInt();
+                int start = SUPERSTEP_SIZE + LENGTH_SIZE;
+                result.add(keySerde.deserializer().deserialize(null, Arrays.copyOfRange(key, start, start + length)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the supersteps in which messages were received, in ascending order.
+     */
+    public List<Integer> supersteps() {
+        List<Integer> result = new ArrayList<>();
+        byte[] end = prefixEnd(prefix(Integer.MAX_VALUE));
+        int superstep = 0;
+        while (superstep >= 0) {
+            // Seek to the first key of the next superstep rather than scanning all messages
+            try (KeyValueIterator<Bytes, List<Message>> iter = store.range(Bytes.wrap(prefix(superstep)), Bytes.wrap(end))) {
+                if (!iter.hasNext()) {
+                    break;
+                }
+                int next = ByteBuffer.wrap(iter.next().key.get(), 0, SUPERSTEP_SIZE).getInt();
+                result.add(next);
+                superstep = next + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all messages received in the given superstep or any later one.
+     */
+    public void deleteFrom(int superstep) {
+        List<Bytes> keys = new ArrayList<>();
+        // Supersteps are never negative, so later supersteps sort after the given one
+        try (KeyValueIterator<Bytes, List<Message>> iter =
+                 store.range(Bytes.wrap(prefix(superstep)), Bytes.wrap(prefixEnd(prefix(Integer.MAX_VALUE))))) {
+            while (iter.hasNext()) {
+                keys.add(iter.next().key);
+            }
+        }
+        for (Bytes key : keys) {
+            store.delete(key);
+        }
+    }
+
+    /**
+     * Removes all messages received in the given superstep.
+     */
+    public void delete(int superstep) {
+        byte[] prefix = prefix(superstep);
+        List<Bytes> keys = new ArrayList<>();
+        try (KeyValueIterator<Bytes, List<Message>> iter = range(prefix)) {
+            while (iter.hasNext()) {
+                Bytes key = iter.next().key;
+                if (hasPrefix(key.get(), prefix)) {
+                    keys.add(key);
+                }
+            }
+        }
+        for (Bytes key : keys) {
+            store.delete(key);
+        }
+    }
+
+    private KeyValueIterator<Bytes, List<Message>> range(byte[] prefix) {
+        // The upper bound is inclusive, so keys must also be checked against the prefix
+        return store.range(Bytes.wrap(prefix), Bytes.wrap(prefixEnd(prefix)));
+    }
+
+    private byte[] serialize(K vertex) {
+        return keySerde.serializer().serialize(null, vertex);
+    }
+
+    protected static Bytes key(int superstep, byte[] target, byte[] sender) {
+        ByteBuffer buf = ByteBuffer.allocate(SUPERSTEP_SIZE + LENGTH_SIZE + target.length + sender.length);
+        buf.putInt(superstep);
+        buf.putInt(target.length);
+        buf.put(target);
+        buf.put(sender);
+        return Bytes.wrap(buf.array());
+    }
+
+    protected static byte[] prefix(int superstep) {
+        return ByteBuffer.allocate(SUPERSTEP_SIZE).putInt(superstep).array();
+    }
+
+    protected static byte[] prefix(int superstep, byte[] target) {
+        ByteBuffer buf = ByteBuffer.allocate(SUPERSTEP_SIZE + LENGTH_SIZE + target.length);
+        buf.putInt(superstep);
+        buf.putInt(target.length);
+        buf.put(target);
+        return buf.array();
+    }
+
+    private static byte[] prefixEnd(byte[] prefix) {
+        byte[] end = Arrays.copyOf(prefix, prefix.length);
+        for (int i = end.length - 1; i >= 0; i--) {
+            if (end[i] != (byte) 0xFF) {
+                end[i]++;
+                return Arrays.copyOf(end, i + 1);
+            }
+        }
+        // Not reachable, as supersteps are never negative
+        throw new IllegalArgumentException("Invalid prefix");
+    }
+
+    private static boolean hasPrefix(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -22,6 +22,7 @@ import java.io.Closeable;
 import java.lang.reflect.Field;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,29 +33,46 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
 import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
 import org.apache.curator.framework.recipes.leader.LeaderLatch;
 import org.apache.curator.framework.recipes.nodes.GroupMember;
 import org.apache.curator.framework.recipes.shared.SharedValue;
+import org.apache.curator.framework.recipes.shared.SharedValueListener;
+import org.apache.curator.framework.recipes.shared.SharedValueReader;
+import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serde;
 import org.apache.kafka.common.serialization.Serdes;
 import org.apache.kafka.common.serialization.Serializer;
 import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.common.utils.Utils;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
 import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
 import org.apache.kafka.streams.kstream.KTable;
@@ -65,9 +83,11 @@ import org.apache.kafka.streams.kstream.ValueTransformerWithKey;
 import org.apache.kafka.streams.processor.Processor;
 import org.apache.kafka.streams.processor.ProcessorContext;
 import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.processor.StreamPartitioner;
 import org.apache.kafka.streams.processor.internals.AbstractTask;
 import org.apache.kafka.streams.processor.internals.ProcessorContextImpl;
 import org.apache.kafka.streams.processor.internals.StreamTask;
+import org.apache.kafka.streams.state.KeyValueIterator;
 import org.apache.kafka.streams.state.KeyValueStore;
 import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
 import org.apache.kafka.streams.state.StoreBuilder;
@@ -86,7 +106,6 @@ import io.kgraph.pregel.PregelState.Stage;
 import io.kgraph.pregel.aggregators.Aggregator;
 import io.kgraph.utils.ClientUtils;
 import io.kgraph.utils.KryoSerde;
-import io.kgraph.utils.KryoSerializer;
 import io.kgraph.utils.KryoUtils;
 import io.vavr.Tuple2;
 import io.vavr.Tuple3;
@@ -95,25 +114,49 @@ import io.vavr.Tuple4;
 public class PregelComputation<K, VV, EV, Message> implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(PregelComputation.class);
 
-    public static final String ALL_PARTITIONS = "all";
     public static final String LAST_WRITTEN_OFFSETS = "last.written.offsets";
 
+    public static final String PRODUCER_LINGER_MS = "pregel.producer.linger.ms";
+    public static final String PRODUCER_BATCH_SIZE = "pregel.producer.batch.size";
+    public static final String MAX_IN_FLIGHT_MESSAGES = "pregel.max.in.flight.messages";
+    public static final String BARRIER_CHECK_INTERVAL_MS = "pregel.barrier.check.interval.ms";
+    public static final String BARRIER_POLL_INTERVAL_MS = "pregel.barrier.poll.interval.ms";
+    public static final String PARTITIONER_CLASS = "pregel.partitioner.class";
+    public static final String CHECKPOINT_INTERVAL = "pregel.checkpoint.interval";
+    public static final String ASYNC_TERMINATION_CHECK_INTERVAL_MS = "pregel.async.termination.check.interval.ms";
+    /**
+     * Whether the work set store is backed by a changelog topic.  The work set only holds the messages of the
+     * current superstep, so without a changelog a failed instance loses them and the computation must be rerun.
+     */
+    public static final String WORK_SET_LOGGING_ENABLED = "pregel.workset.logging.enabled";
+
+    private static final int DEFAULT_PRODUCER_LINGER_MS = 10;
+    private static final int DEFAULT_PRODUCER_BATCH_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_IN_FLIGHT_MESSAGES = 100000;
+    private static final long DEFAULT_BARRIER_CHECK_INTERVAL_MS = 10;
+    private static final long DEFAULT_BARRIER_POLL_INTERVAL_MS = 1000;
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 0;
+    private static final long DEFAULT_ASYNC_TERMINATION_CHECK_INTERVAL_MS = 100;
+    // A power of two
+    private static final int PARTITION_TIMING_SAMPLE = 256;
+
     private final String hostAndPort;
     private final String applicationId;
     private final String bootstrapServers;
     private final CuratorFramework curator;
 
     private final String verticesTopic;
-    private KTable<K, VV> vertices;
     private final String edgesGroupedBySourceTopic;
-    private KTable<K, Map<K, EV>> edgesGroupedBySource;
     private final Map<TopicPartition, Long> graphOffsets;
+    private KTable<K, VV> vertices;
+    private KTable<K, Map<K, EV>> edgesGroupedBySource;
 
     private final String solutionSetTopic;
     private final String solutionSetStore;
     private KTable<K, VV> solutionSet;
 
     private final String workSetTopic;
+    private final String aggregatesTopic;
     private KStream<K, Tuple3<Integer, K, List<Message>>> workSet;
 
     private final int numPartitions;
@@ -124,24 +167,51 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
     private final Optional<Message> initialMessage;
     private final ComputeFunction<K, VV, EV, Message> computeFunction;
     private final Map<String, AggregatorWrapper<?>> registeredAggregators;
+    private final MessageCombiner<Message> messageCombiner;
+    private final VertexPartitioner<K> partitioner;
+    private int partitionCalls;
+    private final PregelMetrics metrics;
+    private final Serde<Tuple3<Integer, K, List<Message>>> workSetSerde;
+    private final Serde<Tuple4<Integer, VV, Integer, VV>> solutionSetSerde;
+    private final Serde<Map<K, EV>> edgesSerde;
 
     private Producer<K, Tuple3<Integer, K, List<Message>>> producer;
+    private Producer<K, Tuple4<Integer, VV, Integer, VV>> solutionSetProducer;
+    private Semaphore inFlightMessages;
+    private AggregatorChannel<Map<String, Aggregator<?>>> aggregatorChannel;
 
     private volatile int maxIterations = Integer.MAX_VALUE;
     private volatile CompletableFuture<KTable<K, VV>> futureResult;
+    private volatile PregelState resumeState;
+    // The superstep that an incremental run resumed after, which the run must advance beyond to complete
+    private volatile int resumedSuperstep = -1;
 
     private final String edgesStoreName;
     private final String verticesStoreName;
     private final String localworkSetStoreName;
     private final String localSolutionSetStoreName;
-
-    private final Map<Integer, Map<Integer, Set<K>>> activeVertices = new ConcurrentHashMap<>();
+    private final String localCheckpointStoreName;
+    private final String localGraphChangesStoreName;
+    private final int checkpointInterval;
+    private final boolean async;
+    private final boolean incremental;
+    private final boolean longIds;
+
+    private final Map<Integer, Map<Integer, VertexSet<K>>> activeVertices = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> asyncSent = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> asyncReceived = new ConcurrentHashMap<>();
     private final Map<TopicPartition, Long> positions = new ConcurrentHashMap<>();
     private final Map<Integer, Map<Integer, Long>> lastWrittenOffsets = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> activatedPartitions = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Integer>> publishedPartitions = new ConcurrentHashMap<>();
     private final Map<Integer, Map<Integer, Map<String, Aggregator<?>>>> aggregators = new ConcurrentHashMap<>();
     private final Map<Integer, Map<Integer, Map<String, Map<K, ?>>>> vertexAggregates = new ConcurrentHashMap<>();
     private final Map<Integer, Map<String, ?>> previousAggregates = new ConcurrentHashMap<>();
 
+    // The cache of the barriers in ZK, shared by the tasks of this instance
+    private TreeCache sharedBarrierCache;
+    private int barrierCacheUsers;
+
     public PregelComputation(
         String hostAndPort,
         String applicationId,
@@ -170,6 +240,7 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         this.solutionSetStore = solutionSetStore;
         this.solutionSetTopic = solutionSetTopic;
         this.workSetTopic = workSetTopic;
+        this.aggregatesTopic = "aggregates-" + applicationId;
         this.numPartitions = numPartitions;
         this.serialized = serialized;
         this.configs = configs;
@@ -181,11 +252,55 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         this.verticesStoreName = "verticesStore-" + applicationId;
         this.localworkSetStoreName = "localworkSetStore-" + applicationId;
         this.localSolutionSetStoreName = "localSolutionSetStore-" + applicationId;
+        this.localCheckpointStoreName = "localCheckpointStore-" + applicationId;
+        this.localGraphChangesStoreName = "localGraphChangesStore-" + applicationId;
+        this.async = cf instanceof AsyncComputeFunction;
+        this.incremental = cf instanceof IncrementalComputeFunction && !async;
+        this.longIds = serialized.keySerde().serializer() instanceof LongSerializer;
+        int checkpointInterval = intConfig(CHECKPOINT_INTERVAL, DEFAULT_CHECKPOINT_INTERVAL);
+        if (async && checkpointInterval > 0) {
+            log.warn("Checkpoints are not supported for asynchronous compute functions");
+            checkpointInterval = 0;
+        }
+        this.checkpointInterval = checkpointInterval;
+        this.metrics = new PregelMetrics(applicationId);
+        this.workSetSerde = PregelSerdes.workSet(serialized);
+        this.solutionSetSerde = PregelSerdes.solutionSet(serialized);
+        this.edgesSerde = PregelSerdes.edgesGroupedBySource(serialized);
 
         log.info("Pregel configs: {}", configs);
         ComputeFunction.InitCallback cb = new ComputeFunction.InitCallback(registeredAggregators);
         cf.init(configs, cb);
         registerLastWrittenOffsets(cb);
+        this.messageCombiner = messageCombiner(cb);
+        this.partitioner = vertexPartitioner(configs, serialized.keySerde().serializer());
+    }
+
+    /**
+     * Create the partitioner named by {@link #PARTITIONER_CLASS}, which must also be used to load the graph.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K> VertexPartitioner<K> vertexPartitioner(Map<String, ?> configs, Serializer<K> keySerializer) {
+        Object partitionerClass = configs.get(PARTITIONER_CLASS);
+        VertexPartitioner<K> partitioner;
+        try {
+            if (partitionerClass == null) {
+                partitioner = new DefaultVertexPartitioner<>();
+            } else if (partitionerClass instanceof Class) {
+                partitioner = (VertexPartitioner<K>) Utils.newInstance((Class<?>) partitionerClass);
+            } else {
+                partitioner = Utils.newInstance(partitionerClass.toString(), VertexPartitioner.class);
+            }
+        } catch (ClassNotFoundException e) {
+            throw toRuntimeException(e);
+        }
+        partitioner.configure(configs, keySerializer);
+        return partitioner;
+    }
+
+    @SuppressWarnings("unchecked")
+    private MessageCombiner<Message> messageCombiner(ComputeFunction.InitCallback cb) {
+        return (MessageCombiner<Message>) cb.messageCombiner;
     }
 
     private void registerLastWrittenOffsets(ComputeFunction.InitCallback cb) {
@@ -196,11 +311,36 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         return configs;
     }
 
+    /**
+     * The compacted topic over which the aggregates are exchanged, which must exist before {@link #prepare}.
+     */
+    public String aggregatesTopic() {
+        return aggregatesTopic;
+    }
+
+    public PregelMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * The vertices of the graph.  Not available in incremental mode, where the graph is read into the store
+     * named "verticesStore-" followed by the application id.
+     */
     public KTable<K, VV> vertices() {
+        if (incremental) {
+            throw new IllegalStateException("The vertices are not read into a table in incremental mode");
+        }
         return vertices;
     }
 
+    /**
+     * The outgoing edges of the vertices of the graph.  Not available in incremental mode, where the graph is
+     * read into the store named "edgesStore-" followed by the application id.
+     */
     public KTable<K, Map<K, EV>> edgesGroupedBySource() {
+        if (incremental) {
+            throw new IllegalStateException("The edges are not read into a table in incremental mode");
+        }
         return edgesGroupedBySource;
     }
 
@@ -214,54 +354,113 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
 
     public void prepare(StreamsBuilder builder, Properties streamsConfig) {
         Properties producerConfig = ClientUtils.producerConfig(
-            bootstrapServers, serialized.keySerde().serializer().getClass(), KryoSerializer.class,
+            bootstrapServers, serialized.keySerde().serializer().getClass(), workSetSerde.serializer().getClass(),
             streamsConfig != null ? streamsConfig : new Properties()
         );
         producerConfig.setProperty(ProducerConfig.CLIENT_ID_CONFIG, applicationId + "-producer");
-        this.producer = new KafkaProducer<>(producerConfig);
+        producerConfig.put(ProducerConfig.LINGER_MS_CONFIG,
+            intConfig(PRODUCER_LINGER_MS, DEFAULT_PRODUCER_LINGER_MS));
+        producerConfig.put(ProducerConfig.BATCH_SIZE_CONFIG,
+            intConfig(PRODUCER_BATCH_SIZE, DEFAULT_PRODUCER_BATCH_SIZE));
+        this.producer = new KafkaProducer<>(producerConfig, serialized.keySerde().serializer(), workSetSerde.serializer());
+        this.inFlightMessages = new Semaphore(intConfig(MAX_IN_FLIGHT_MESSAGES, DEFAULT_MAX_IN_FLIGHT_MESSAGES));
+        this.aggregatorChannel = aggregatorChannel(streamsConfig);
+        if (partitioner.isPlacementBased()) {
+            loadPlacement(streamsConfig);
+        }
+        StreamPartitioner<K, Object> streamPartitioner = (topic, key, value, n) -> vertexToPartition(key);
 
-        final StoreBuilder<KeyValueStore<Integer, Map<K, Map<K, List<Message>>>>> workSetStoreBuilder =
+        if (streamsConfig != null) {
+            configureRocksDB(streamsConfig);
+        }
+
+        final StoreBuilder<KeyValueStore<Bytes, List<Message>>> workSetStoreBuilder =
             Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(localworkSetStoreName),
-                Serdes.Integer(), new KryoSerde<>()
+                Serdes.Bytes(), new KryoSerde<>()
             );
+        Object workSetLogging = configs.get(WORK_SET_LOGGING_ENABLED);
+        if (workSetLogging != null && !Boolean.parseBoolean(workSetLogging.toString())) {
+            workSetStoreBuilder.withLoggingDisabled();
+        }
         builder.addStateStore(workSetStoreBuilder);
 
         final StoreBuilder<KeyValueStore<K, Tuple4<Integer, VV, Integer, VV>>> solutionSetStoreBuilder =
             Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(localSolutionSetStoreName),
-                serialized.keySerde(), new KryoSerde<>()
+                serialized.keySerde(), solutionSetSerde
             );
         builder.addStateStore(solutionSetStoreBuilder);
 
-        this.vertices = builder
-            .table(
-                verticesTopic,
-                Materialized.<K, VV, KeyValueStore<Bytes, byte[]>>as(verticesStoreName)
-                    .withKeySerde(serialized.keySerde()).withValueSerde(serialized.vertexValueSerde())
-            );
+        if (incremental) {
+            builder.addStateStore(Stores.timestampedKeyValueStoreBuilder(
+                Stores.persistentTimestampedKeyValueStore(verticesStoreName), serialized.keySerde(), serialized.vertexValueSerde()));
+            builder.addStateStore(Stores.timestampedKeyValueStoreBuilder(
+                Stores.persistentTimestampedKeyValueStore(edgesStoreName), serialized.keySerde(), edgesSerde));
+            final StoreBuilder<KeyValueStore<K, Tuple2<Map<K, EV>, VV>>> graphChangesStoreBuilder =
+                Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(localGraphChangesStoreName),
+                    serialized.keySerde(), new KryoSerde<>()
+                );
+            builder.addStateStore(graphChangesStoreBuilder);
+        }
 
-        this.edgesGroupedBySource = builder
-            .table(
-                edgesGroupedBySourceTopic,
-                Materialized.<K, Map<K, EV>, KeyValueStore<Bytes, byte[]>>as(edgesStoreName)
-                    .withKeySerde(serialized.keySerde()).withValueSerde(new KryoSerde<>())
-            );
+        if (checkpointInterval > 0) {
+            final StoreBuilder<KeyValueStore<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>>> checkpointStoreBuilder =
+                Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(localCheckpointStoreName),
+                    serialized.keySerde(), new KryoSerde<>()
+                );
+            builder.addStateStore(checkpointStoreBuilder);
+        }
+        if (checkpointInterval > 0 || incremental) {
+            producerConfig.setProperty(ProducerConfig.CLIENT_ID_CONFIG, applicationId + "-solution-set-producer");
+            this.solutionSetProducer =
+                new KafkaProducer<>(producerConfig, serialized.keySerde().serializer(), solutionSetSerde.serializer());
+        }
+        if (checkpointInterval > 0) {
+            this.resumeState = prepareResume(streamsConfig);
+        }
+
+        KStream<K, VV> vertexStream;
+        if (incremental) {
+            // The graph is read into stores rather than tables, so that the changes to it can be recorded
+            String[] graphStoreNames = {verticesStoreName, edgesStoreName, localGraphChangesStoreName};
+            vertexStream = builder
+                .stream(verticesTopic, Consumed.with(serialized.keySerde(), serialized.vertexValueSerde()))
+                .transform(() -> new UpdateGraph<>(verticesStoreName), graphStoreNames);
+
+            builder
+                .stream(edgesGroupedBySourceTopic, Consumed.with(serialized.keySerde(), edgesSerde))
+                .transform(() -> new UpdateGraph<>(edgesStoreName), graphStoreNames);
+        } else {
+            this.vertices = builder
+                .table(
+                    verticesTopic,
+                    Materialized.<K, VV, KeyValueStore<Bytes, byte[]>>as(verticesStoreName)
+                        .withKeySerde(serialized.keySerde()).withValueSerde(serialized.vertexValueSerde())
+                );
+
+            this.edgesGroupedBySource = builder
+                .table(
+                    edgesGroupedBySourceTopic,
+                    Materialized.<K, Map<K, EV>, KeyValueStore<Bytes, byte[]>>as(edgesStoreName)
+                        .withKeySerde(serialized.keySerde()).withValueSerde(edgesSerde)
+                );
+            vertexStream = this.vertices.toStream();
+        }
 
         this.solutionSet = builder
-            .table(solutionSetTopic, Consumed.<K, Tuple4<Integer, VV, Integer, VV>>with(serialized.keySerde(), new KryoSerde<>()))
+            .table(solutionSetTopic, Consumed.with(serialized.keySerde(), solutionSetSerde))
             .mapValues(v -> v._4, Materialized.as(solutionSetStore));
 
         // Initalize solution set
-        this.vertices
-            .toStream()
+        vertexStream
             .mapValues(v -> new Tuple4<>(-1, v, 0, v))
-            .to(solutionSetTopic, Produced.with(serialized.keySerde(), new KryoSerde<>()));
+            .to(solutionSetTopic, Produced.with(serialized.keySerde(), solutionSetSerde)
+                .withStreamPartitioner(streamPartitioner));
 
         // Initialize workset
-        this.vertices
-            .toStream()
+        vertexStream
             .peek((k, v) -> {
                 try {
-                    int partition = PregelComputation.vertexToPartition(k, serialized.keySerde().serializer(), numPartitions);
+                    int partition = vertexToPartition(k);
                     ZKUtils.addChild(curator, applicationId, new PregelState(State.CREATED, 0, Stage.SEND), childPath(partition));
                 } catch (Exception e) {
                     throw toRuntimeException(e);
@@ -270,20 +469,36 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             })
             .mapValues((k, v) -> new Tuple3<>(0, k, initialMessage.map(Collections::singletonList).orElse(Collections.emptyList())))
             .peek((k, v) -> log.trace("workset 0 before topic: (" + k + ", " + v + ")"))
-            .<K, Tuple3<Integer, K, List<Message>>>to(workSetTopic, Produced.with(serialized.keySerde(), new KryoSerde<>()));
+            .to(workSetTopic, Produced.with(serialized.keySerde(), workSetSerde)
+                .withStreamPartitioner(streamPartitioner));
 
         this.workSet = builder
-            .stream(workSetTopic, Consumed.with(serialized.keySerde(), new KryoSerde<Tuple3<Integer, K, List<Message>>>()))
+            .stream(workSetTopic, Consumed.with(serialized.keySerde(), workSetSerde))
             .peek((k, v) -> log.trace("workset 1 after topic: (" + k + ", " + v + ")"));
 
+        // With checkpoints, the barrier restores the solution set and edges when resuming, and in incremental
+        // mode it seeds the vertices that changed
+        List<String> barrierStoreNames = new ArrayList<>();
+        barrierStoreNames.add(localworkSetStoreName);
+        if (checkpointInterval > 0 || incremental) {
+            barrierStoreNames.addAll(Arrays.asList(localSolutionSetStoreName, verticesStoreName, edgesStoreName));
+        }
+        if (checkpointInterval > 0) {
+            barrierStoreNames.add(localCheckpointStoreName);
+        }
+        if (incremental) {
+            barrierStoreNames.add(localGraphChangesStoreName);
+        }
         KStream<K, Tuple2<Integer, Map<K, List<Message>>>> syncedWorkSet = workSet
-            .transform(BarrierSync::new, localworkSetStoreName)
+            .transform(BarrierSync::new, barrierStoreNames.toArray(new String[0]))
             .peek((k, v) -> log.trace("workset 2 after join: (" + k + ", " + v + ")"));
 
+        String[] computeStoreNames = checkpointInterval > 0
+            ? new String[] {localSolutionSetStoreName, verticesStoreName, edgesStoreName, localCheckpointStoreName}
+            : new String[] {localSolutionSetStoreName, verticesStoreName, edgesStoreName};
         KStream<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, List<Message>>>> superstepComputation =
             syncedWorkSet
-                .transformValues(VertexComputeUdf::new, localSolutionSetStoreName, vertices.queryableStoreName(),
-                    edgesGroupedBySource.queryableStoreName());
+                .transformValues(VertexComputeUdf::new, computeStoreNames);
 
         // Compute the solution set delta
         KStream<K, Tuple4<Integer, VV, Integer, VV>> solutionSetDelta = superstepComputation
@@ -291,7 +506,8 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             .peek((k, v) -> log.trace("solution set: (" + k + ", " + v + ")"));
 
         solutionSetDelta
-            .to(solutionSetTopic, Produced.with(serialized.keySerde(), new KryoSerde<>()));
+            .to(solutionSetTopic, Produced.with(serialized.keySerde(), solutionSetSerde)
+                .withStreamPartitioner(streamPartitioner));
 
         // Compute the inbox of each vertex for the next step (new workset)
         KStream<K, Tuple2<Integer, Map<K, List<Message>>>> newworkSet = superstepComputation
@@ -301,11 +517,154 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         newworkSet.process(() -> new SendMessages(producer));
     }
 
+    /**
+     * Let the stores be configured by their role, unless the streams config names its own config setter, and
+     * pass the RocksDB settings of the Pregel configs on to it.
+     */
+    private void configureRocksDB(Properties streamsConfig) {
+        streamsConfig.putIfAbsent(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, PregelRocksDBConfigSetter.class);
+        for (Map.Entry<String, ?> entry : configs.entrySet()) {
+            if (entry.getKey().startsWith("pregel.rocksdb.")) {
+                streamsConfig.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Learn where the vertices were placed when the graph was loaded, from the partitions of the vertices topic.
+     */
+    private void loadPlacement(Properties streamsConfig) {
+        Properties consumerConfig = ClientUtils.consumerConfig(bootstrapServers, applicationId + "-placement",
+            ByteArrayDeserializer.class, ByteArrayDeserializer.class,
+            streamsConfig != null ? streamsConfig : new Properties());
+        try (Consumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig)) {
+            List<TopicPartition> tps = consumer.partitionsFor(verticesTopic).stream()
+                .map(info -> new TopicPartition(verticesTopic, info.partition()))
+                .collect(Collectors.toList());
+            consumer.assign(tps);
+            consumer.seekToBeginning(tps);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(tps);
+            long count = 0;
+            while (tps.stream().anyMatch(tp -> consumer.position(tp) < endOffsets.get(tp))) {
+                for (ConsumerRecord<byte[], byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    K vertex = serialized.keySerde().deserializer().deserialize(verticesTopic, record.key());
+                    partitioner.placed(vertex, record.partition());
+                    count++;
+                }
+            }
+            log.info("Loaded the placement of {} vertices from {}", count, verticesTopic);
+        }
+    }
+
+    private AggregatorChannel<Map<String, Aggregator<?>>> aggregatorChannel(Properties streamsConfig) {
+        Properties producerConfig = ClientUtils.producerConfig(
+            bootstrapServers, ByteArraySerializer.class, ByteArraySerializer.class,
+            streamsConfig != null ? streamsConfig : new Properties()
+        );
+        producerConfig.setProperty(ProducerConfig.CLIENT_ID_CONFIG, applicationId + "-aggregates-producer");
+        Properties consumerConfig = ClientUtils.consumerConfig(bootstrapServers, applicationId + "-aggregates",
+            ByteArrayDeserializer.class, ByteArrayDeserializer.class,
+            streamsConfig != null ? streamsConfig : new Properties());
+        consumerConfig.setProperty(ConsumerConfig.CLIENT_ID_CONFIG, applicationId + "-aggregates-consumer");
+        consumerConfig.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        return new AggregatorChannel<>(aggregatesTopic, new KafkaProducer<>(producerConfig),
+            new KafkaConsumer<>(consumerConfig), this::reducePartial);
+    }
+
+    private int intConfig(String name, int defaultValue) {
+        Object value = configs.get(name);
+        return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+    }
+
+    private long longConfig(String name, long defaultValue) {
+        Object value = configs.get(name);
+        return value != null ? Long.parseLong(value.toString()) : defaultValue;
+    }
+
+    private boolean isCheckpoint(int superstep) {
+        return checkpointInterval > 0 && superstep > 0 && superstep % checkpointInterval == 0;
+    }
+
+    private int lastCheckpoint(int superstep) {
+        return checkpointInterval > 0 ? superstep - superstep % checkpointInterval : 0;
+    }
+
+    /**
+     * In asynchronous mode the supersteps after the first one run as a single phase, which is tracked as superstep 1.
+     */
+    private int phase(int superstep) {
+        return async && superstep > 1 ? 1 : superstep;
+    }
+
+    private static LongAdder counter(Map<Integer, LongAdder> counters, int partition) {
+        return counters.computeIfAbsent(partition, k -> new LongAdder());
+    }
+
+    /**
+     * If an unfinished computation has a checkpoint, reset the barriers and aggregates to the
+     * checkpoint and record where the tasks should resume from.  The tasks restore their stores
+     * from the checkpoint when they are initialized, before processing any records.
+     *
+     * @return the state to resume from, or null if there is no checkpoint to resume from
+     */
+    private PregelState prepareResume(Properties streamsConfig) {
+        try {
+            String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+            if (!ZKUtils.hasChild(curator, rootPath, ZKUtils.SUPERSTEP)
+                || !ZKUtils.hasChild(curator, rootPath, ZKUtils.CHECKPOINT)) {
+                return null;
+            }
+            PregelState lastState = PregelState.fromBytes(ZKUtils.getChildData(curator, rootPath, ZKUtils.SUPERSTEP));
+            if (lastState.state() != State.RUNNING) {
+                return null;
+            }
+            Tuple2<Integer, Set<Integer>> checkpoint =
+                KryoUtils.deserialize(ZKUtils.getChildData(curator, rootPath, ZKUtils.CHECKPOINT));
+            int superstep = checkpoint._1;
+            PregelState state = new PregelState(State.RUNNING, superstep, Stage.RECEIVE);
+            if (lastState.superstep() == superstep && lastState.stage() == Stage.RECEIVE
+                && ZKUtils.hasChild(curator, rootPath, ZKUtils.RESUME)) {
+                // Already prepared, and no progress was made since
+                return state;
+            }
+            log.info("Resuming Pregel computation from checkpoint at superstep {}, last state {}", superstep, lastState);
+
+            // Messages already in the work set were sent after the checkpoint
+            Map<Integer, Long> resumeOffsets = workSetEndOffsets(streamsConfig);
+
+            ZKUtils.removePath(curator, ZKPaths.makePath(rootPath, ZKUtils.BARRIERS));
+            aggregatorChannel.truncate(superstep);
+            for (int partition : checkpoint._2) {
+                ZKUtils.addChild(curator, applicationId, state.next(), childPath(partition));
+            }
+            ZKUtils.addChild(curator, applicationId, state, ZKUtils.READY);
+            ZKUtils.removePath(curator, ZKPaths.makePath(rootPath, ZKUtils.RESUME));
+            ZKUtils.addChild(curator, rootPath, ZKUtils.RESUME, CreateMode.PERSISTENT,
+                KryoUtils.serialize(new Tuple2<>(superstep, resumeOffsets)));
+            return state;
+        } catch (Exception e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    private Map<Integer, Long> workSetEndOffsets(Properties streamsConfig) {
+        Properties consumerConfig = ClientUtils.consumerConfig(bootstrapServers, applicationId + "-resume",
+            ByteArrayDeserializer.class, ByteArrayDeserializer.class,
+            streamsConfig != null ? streamsConfig : new Properties());
+        try (Consumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig)) {
+            List<TopicPartition> tps = consumer.partitionsFor(workSetTopic).stream()
+                .map(info -> new TopicPartition(workSetTopic, info.partition()))
+                .collect(Collectors.toList());
+            return consumer.endOffsets(tps).entrySet().stream()
+                .collect(Collectors.toMap(e -> e.getKey().partition(), Map.Entry::getValue));
+        }
+    }
+
     public PregelState run(int maxIterations, CompletableFuture<KTable<K, VV>> futureResult) {
         this.maxIterations = maxIterations;
         this.futureResult = futureResult;
 
-        PregelState pregelState = new PregelState(State.RUNNING, -1, Stage.SEND);
+        PregelState pregelState = resumeState != null ? resumeState : new PregelState(State.RUNNING, -1, Stage.SEND);
         try {
             String rootPath = ZKUtils.PREGEL_PATH + applicationId;
             String childPath = ZKUtils.SUPERSTEP;
@@ -321,6 +680,66 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         }
     }
 
+    /**
+     * Resume the computation from its result after vertices or edges changed in the graph topics, instead of
+     * recomputing the whole graph.  The changes read since the graph the computation started from are recorded by
+     * the tasks, which let the {@link IncrementalComputeFunction} seed each changed vertex in the superstep after
+     * the last one.  The supersteps then continue from the previous fixed point with the vertices that were sent a
+     * message.  A computation that has not run yet is run from the start.
+     *
+     * <p>The result completes exceptionally if the value of an existing vertex was replaced, or if the compute
+     * function cannot apply a change, as the graph must then be recomputed by a new computation.
+     *
+     * @param graphOffsets the last written offsets of the updated graph, if known
+     * @param maxIterations the maximum number of supersteps to compute
+     * @param futureResult the result, completed when the computation completes
+     * @return the state the computation resumes from
+     */
+    public PregelState runIncremental(Map<TopicPartition, Long> graphOffsets, int maxIterations,
+                                      CompletableFuture<KTable<K, VV>> futureResult) {
+        if (!incremental) {
+            throw new IllegalStateException("Only a synchronous IncrementalComputeFunction can resume incrementally");
+        }
+        try {
+            String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+            if (!ZKUtils.hasChild(curator, rootPath, ZKUtils.SUPERSTEP)) {
+                return run(maxIterations, futureResult);
+            }
+            PregelState lastState = state();
+            if (lastState.state() != State.COMPLETED && lastState.state() != State.HALTED) {
+                throw new IllegalStateException("The previous run has not finished: " + lastState);
+            }
+            // The tasks seed the changed vertices in the send stage of the superstep the last run ended with,
+            // which had no active vertices
+            int superstep = lastState.superstep();
+            PregelState state = new PregelState(State.RUNNING, superstep, Stage.SEND);
+            this.maxIterations = maxIterations > Integer.MAX_VALUE - superstep ? Integer.MAX_VALUE : superstep + maxIterations;
+            this.resumedSuperstep = superstep;
+            this.futureResult = futureResult;
+
+            ZKUtils.removePath(curator, ZKPaths.makePath(rootPath, ZKUtils.BARRIERS));
+            // A checkpoint of the previous run predates the changes
+            ZKUtils.removeChild(curator, rootPath, ZKUtils.CHECKPOINT);
+            ZKUtils.removeChild(curator, rootPath, ZKUtils.RECOMPUTE);
+            for (int partition = 0; partition < numPartitions; partition++) {
+                ZKUtils.addChild(curator, applicationId, state, childPath(partition));
+            }
+            ZKUtils.addChild(curator, applicationId, state, ZKUtils.READY);
+            byte[] data = KryoUtils.serialize(
+                new Tuple2<>(superstep, graphOffsets != null ? graphOffsets : Collections.<TopicPartition, Long>emptyMap()));
+            if (ZKUtils.hasChild(curator, rootPath, ZKUtils.INCREMENTAL)) {
+                ZKUtils.updateChild(curator, rootPath, ZKUtils.INCREMENTAL, data);
+            } else {
+                ZKUtils.addChild(curator, rootPath, ZKUtils.INCREMENTAL, CreateMode.PERSISTENT, data);
+            }
+            log.info("Resuming Pregel computation incrementally after superstep {}", superstep);
+            ZKUtils.updateChild(curator, rootPath, ZKUtils.SUPERSTEP, state.toBytes());
+            return state;
+        } catch (Exception e) {
+            throw toRuntimeException(e);
+        }
+    }
+
     public PregelState state() {
         try {
             byte[] data = ZKUtils.getChildData(curator, ZKUtils.PREGEL_PATH + applicationId, ZKUtils.SUPERSTEP);
@@ -366,18 +785,18 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         }
     }
 
+    private Map<String, Aggregator<?>> reducePartial(Map<String, Aggregator<?>> reduced, byte[] partial) {
+        Map<String, Aggregator<?>> result = reduced != null ? reduced : newAggregators();
+        if (partial.length > 0) {
+            mergeAggregators(result, KryoUtils.deserialize(partial));
+        }
+        return result;
+    }
+
     protected Map<String, ?> previousAggregates(int superstep) {
         return previousAggregates.computeIfAbsent(superstep, k -> {
-            try {
-                String path = ZKPaths.makePath(ZKUtils.aggregatePath(applicationId, superstep - 1), ALL_PARTITIONS);
-                if (curator.checkExists().forPath(path) == null) {
-                    return new HashMap<>();
-                }
-                byte[] data = curator.getData().forPath(path);
-                return data.length > 0 ? KryoUtils.deserialize(data) : new HashMap<>();
-            } catch (Exception e) {
-                throw toRuntimeException(e);
-            }
+            byte[] data = aggregatorChannel.aggregates(superstep - 1);
+            return data != null && data.length > 0 ? KryoUtils.deserialize(data) : new HashMap<>();
         });
     }
 
@@ -405,28 +824,114 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             .collect(Collectors.toConcurrentMap(Map.Entry::getKey, entry -> new ConcurrentHashMap<>()));
     }
 
+    /**
+     * Activate the partition of a message for the next step; it is published to ZK when the sending partition is
+     * deactivated.  The work set topic has a partition per Pregel partition, so the record partition is the vertex
+     * partition.
+     */
+    private void messageWritten(int superstep, RecordMetadata metadata) {
+        activatedPartitions.computeIfAbsent(superstep, k -> ConcurrentHashMap.newKeySet()).add(metadata.partition());
+
+        Map<Integer, Long> endOffsets = lastWrittenOffsets.computeIfAbsent(superstep, k -> new ConcurrentHashMap<>());
+        endOffsets.merge(metadata.partition(), metadata.offset(), Math::max);
+    }
+
+    private void publishActivatedPartitions(int superstep) throws Exception {
+        Set<Integer> activated = activatedPartitions.get(superstep);
+        if (activated == null) {
+            return;
+        }
+        Set<Integer> published = publishedPartitions.computeIfAbsent(superstep, k -> ConcurrentHashMap.newKeySet());
+        PregelState nextState = new PregelState(State.RUNNING, superstep + 1, Stage.SEND);
+        for (Integer p : activated) {
+            if (!published.contains(p)) {
+                log.debug("Step {}, publishing partition {}", superstep, p);
+                ZKUtils.addChild(curator, applicationId, nextState, childPath(p));
+                published.add(p);
+            }
+        }
+    }
+
+    private boolean isRecomputeNeeded() throws Exception {
+        return ZKUtils.hasChild(curator, ZKUtils.PREGEL_PATH + applicationId, ZKUtils.RECOMPUTE);
+    }
+
+    private synchronized TreeCache acquireBarrierCache() throws Exception {
+        if (sharedBarrierCache == null) {
+            sharedBarrierCache = new TreeCache(curator, ZKPaths.makePath(ZKUtils.PREGEL_PATH + applicationId, ZKUtils.BARRIERS));
+            sharedBarrierCache.start();
+        }
+        barrierCacheUsers++;
+        return sharedBarrierCache;
+    }
+
+    private synchronized void releaseBarrierCache() {
+        if (--barrierCacheUsers == 0) {
+            sharedBarrierCache.close();
+            sharedBarrierCache = null;
+        }
+    }
+
     private final class BarrierSync
         implements Transformer<K, Tuple3<Integer, K, List<Message>>,
         KeyValue<K, Tuple2<Integer, Map<K, List<Message>>>>> {
 
         private ProcessorContext context;
-        private KeyValueStore<Integer, Map<K, Map<K, List<Message>>>> localworkSetStore;
+        private MessageInbox<K, Message> inbox;
         private Consumer<byte[], byte[]> internalConsumer;
         private LeaderLatch leaderLatch;
         private GroupMember group;
         private SharedValue sharedValue;
         private TreeCache barrierCache;
+        private TreeCacheListener barrierListener;
         private PregelState pregelState = new PregelState(State.CREATED, -1, Stage.SEND);
 
-        private final Map<Integer, Set<K>> forwardedVertices = new HashMap<>();
+        // Only used with checkpoints or in incremental mode
+        private KeyValueStore<K, Tuple4<Integer, VV, Integer, VV>> localSolutionSetStore;
+        private KeyValueStore<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>> checkpointStore;
+        private TimestampedKeyValueStore<K, VV> verticesStore;
+        private TimestampedKeyValueStore<K, Map<K, EV>> edgesStore;
+        private KeyValueStore<K, Tuple2<Map<K, EV>, VV>> graphChangesStore;
+        private Map<Integer, Long> resumeOffsets = Collections.emptyMap();
+        private int lastSeededStep = -1;
+
+        private final Map<Integer, VertexSet<K>> verticesToForward = new HashMap<>();
+        private final AtomicBoolean barrierChanged = new AtomicBoolean(true);
+        // The end offsets of the work set that the last barrier check waited for, if any
+        private Map<TopicPartition, Long> awaitedWorkSetOffsets;
+        private long lastBarrierCheck = -1L;
+        private int lastDeletedStep = -1;
+        private long superstepStartTime = System.currentTimeMillis();
+
+        // Only used in asynchronous mode
+        private int lastReportedWave = -1;
+        private final AsyncTermination termination = new AsyncTermination(numPartitions);
+        private long progressTime = -1L;
 
         @SuppressWarnings("unchecked")
         @Override
         public void init(final ProcessorContext context) {
             try {
                 this.context = context;
-                this.localworkSetStore = (KeyValueStore<Integer, Map<K, Map<K, List<Message>>>>) context.getStateStore(localworkSetStoreName);
+                this.inbox = new MessageInbox<>(
+                    (KeyValueStore<Bytes, List<Message>>) context.getStateStore(localworkSetStoreName), serialized.keySerde());
                 this.internalConsumer = internalConsumer(context);
+                if (checkpointInterval > 0 || incremental) {
+                    this.localSolutionSetStore = (KeyValueStore<K, Tuple4<Integer, VV, Integer, VV>>) context.getStateStore(localSolutionSetStoreName);
+                    this.verticesStore = (TimestampedKeyValueStore<K, VV>) context.getStateStore(verticesStoreName);
+                    this.edgesStore = (TimestampedKeyValueStore<K, Map<K, EV>>) context.getStateStore(edgesStoreName);
+                }
+                if (incremental) {
+                    this.graphChangesStore = (KeyValueStore<K, Tuple2<Map<K, EV>, VV>>) context.getStateStore(localGraphChangesStoreName);
+                }
+                if (checkpointInterval > 0) {
+                    this.checkpointStore = (KeyValueStore<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>>) context.getStateStore(localCheckpointStoreName);
+                    maybeRestore();
+                }
+                // The messages received before a restart are not read from the work set again
+                for (int superstep : inbox.supersteps()) {
+                    forwardInbox(superstep);
+                }
 
                 String threadId = String.valueOf(Thread.currentThread().getId());
                 // Worker name needs to be unique to a StreamThread but common to StreamTasks that share a StreamThread
@@ -439,112 +944,520 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
                 sharedValue = new SharedValue(curator, ZKPaths.makePath(ZKUtils.PREGEL_PATH + applicationId, ZKUtils.SUPERSTEP), pregelState.toBytes());
                 sharedValue.start();
 
-                // TODO make interval configurable
-                this.context.schedule(Duration.ofMillis(1000), PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
-                    try {
-                        pregelState = PregelState.fromBytes(sharedValue.getValue());
-                        State state = pregelState.state();
-
-                        if (state == State.CREATED) {
-                            return;
-                        } else if (state == State.COMPLETED || state == State.HALTED) {
-                            if (futureResult != null && !futureResult.isDone()) {
-                                if (pregelState.superstep() > maxIterations || state == State.HALTED) {
-                                    log.info("Pregel computation halted after {} iterations", pregelState.superstep());
-                                } else {
-                                    log.info("Pregel computation converged after {} iterations", pregelState.superstep());
-                                }
-                                this.context.commit();
-                                futureResult.complete(result());
-                            }
-                            return;
+                barrierCache = acquireBarrierCache();
+                barrierListener = (client, event) -> barrierChanged.set(true);
+                barrierCache.getListenable().addListener(barrierListener);
+                sharedValue.getListenable().addListener(new SharedValueListener() {
+                    @Override
+                    public void valueHasChanged(SharedValueReader reader, byte[] newValue) {
+                        barrierChanged.set(true);
+                    }
+
+                    @Override
+                    public void stateChanged(CuratorFramework client, ConnectionState newState) {
+                        barrierChanged.set(true);
+                    }
+                });
+
+                // Check the barrier as soon as ZK reports a change or the work set catches up with the offsets
+                // the last check waited for, and periodically in case a change is not observed
+                long checkIntervalMs = longConfig(BARRIER_CHECK_INTERVAL_MS, DEFAULT_BARRIER_CHECK_INTERVAL_MS);
+                long pollIntervalMs = longConfig(BARRIER_POLL_INTERVAL_MS, DEFAULT_BARRIER_POLL_INTERVAL_MS);
+                this.context.schedule(Duration.ofMillis(checkIntervalMs), PunctuationType.WALL_CLOCK_TIME, (timestamp) -> {
+                    if (barrierChanged.getAndSet(false) || timestamp - lastBarrierCheck >= pollIntervalMs) {
+                        lastBarrierCheck = timestamp;
+                        try {
+                            checkBarrier(workerName);
+                        } catch (Exception e) {
+                            throw toRuntimeException(e);
                         }
+                    }
+                });
+            } catch (Exception e) {
+                throw toRuntimeException(e);
+            }
+        }
 
-                        if (leaderLatch.hasLeadership()) {
-                            if (barrierCache == null) {
-                                barrierCache = new TreeCache(curator, ZKPaths.makePath(ZKUtils.PREGEL_PATH + applicationId, ZKUtils.BARRIERS));
-                                barrierCache.start();
-                            }
+        private void checkBarrier(String workerName) throws Exception {
+            pregelState = PregelState.fromBytes(sharedValue.getValue());
+            State state = pregelState.state();
 
-                            if (pregelState.stage() == Stage.RECEIVE) {
-                                int groupSize = group.getCurrentMembers().size();
-                                PregelState nextPregelState = ZKUtils.maybeCreateReadyToSendNode(curator, applicationId, pregelState, barrierCache, groupSize);
-                                if (!pregelState.equals(nextPregelState)) {
-                                    pregelState = nextPregelState;
-                                    setPregelState(sharedValue, pregelState);
-                                } else {
-                                    log.debug("Not ready to create snd: state {}", pregelState);
-                                }
-                            } else if (pregelState.stage() == Stage.SEND) {
-                                PregelState nextPregelState = ZKUtils.maybeCreateReadyToReceiveNode(curator, applicationId, pregelState, barrierCache);
-                                if (!pregelState.equals(nextPregelState)) {
-                                    pregelState = masterCompute(nextPregelState);
-                                    setPregelState(sharedValue, pregelState);
-                                } else {
-                                    log.debug("Not ready to create rcv: state {}", pregelState);
-                                }
-                            }
+            if (state == State.CREATED) {
+                return;
+            } else if (state == State.COMPLETED || state == State.HALTED) {
+                // Publish the metrics of the supersteps that were not cleaned up
+                for (int step = lastDeletedStep + 1; step <= pregelState.superstep(); step++) {
+                    metrics.publish(step, context.taskId().partition, workerName);
+                }
+                lastDeletedStep = Math.max(lastDeletedStep, pregelState.superstep());
+                // An incremental run is complete once it has left the superstep it resumed after
+                if (futureResult != null && !futureResult.isDone() && pregelState.superstep() > resumedSuperstep) {
+                    if (pregelState.superstep() > maxIterations || state == State.HALTED) {
+                        log.info("Pregel computation halted after {} iterations", pregelState.superstep());
+                    } else {
+                        log.info("Pregel computation converged after {} iterations", pregelState.superstep());
+                    }
+                    log.info("Spent {} ms mapping {} vertices to partitions",
+                        metrics.partitionTimeNanos() / 1000000, metrics.partitionCount());
+                    this.context.commit();
+                    if (state == State.HALTED && isRecomputeNeeded()) {
+                        futureResult.completeExceptionally(new IllegalStateException(
+                            "The changes to the graph cannot be applied incrementally, the graph must be recomputed"));
+                    } else {
+                        futureResult.complete(result());
+                    }
+                }
+                return;
+            }
+
+            if (leaderLatch.hasLeadership()) {
+                if (async && pregelState.superstep() > 0) {
+                    PregelState nextPregelState = checkTermination(pregelState);
+                    if (!pregelState.equals(nextPregelState)) {
+                        pregelState = nextPregelState;
+                        setPregelState(sharedValue, pregelState);
+                    }
+                } else if (pregelState.stage() == Stage.RECEIVE) {
+                    int groupSize = group.getCurrentMembers().size();
+                    PregelState nextPregelState = ZKUtils.maybeCreateReadyToSendNode(curator, applicationId, pregelState, barrierCache, groupSize);
+                    if (!pregelState.equals(nextPregelState)) {
+                        if (nextPregelState.state() == State.RUNNING && isCheckpoint(nextPregelState.superstep())) {
+                            saveCheckpoint(nextPregelState);
                         }
+                        pregelState = nextPregelState;
+                        setPregelState(sharedValue, pregelState);
+                    } else {
+                        log.debug("Not ready to create snd: state {}", pregelState);
+                    }
+                } else if (pregelState.stage() == Stage.SEND) {
+                    // Read the partial aggregates as they arrive, rather than all of them at the barrier
+                    aggregatorChannel.poll();
+                    PregelState nextPregelState = ZKUtils.maybeCreateReadyToReceiveNode(curator, applicationId, pregelState, barrierCache);
+                    if (!pregelState.equals(nextPregelState)) {
+                        pregelState = masterCompute(nextPregelState);
+                        setPregelState(sharedValue, pregelState);
+                    } else {
+                        log.debug("Not ready to create rcv: state {}", pregelState);
+                    }
+                }
+            }
 
-                        if (pregelState.stage() == Stage.RECEIVE) {
-                            if (pregelState.superstep() == 0) {
-                                if (!ZKUtils.hasChild(curator, applicationId, pregelState, workerName)) {
-                                    Set<TopicPartition> workSetTps = localPartitions(internalConsumer, workSetTopic);
-                                    Set<TopicPartition> solutionSetTps = localPartitions(internalConsumer, solutionSetTopic);
-                                    if (isTopicSynced(internalConsumer, verticesTopic, 0, null, graphOffsets::get)
-                                        && isTopicSynced(internalConsumer, edgesGroupedBySourceTopic, 0, null, graphOffsets::get)) {
-                                        ZKUtils.addChild(curator, applicationId, pregelState, workerName, CreateMode.EPHEMERAL);
-                                        // Ensure vertices and edges are read into tables first
-                                        internalConsumer.seekToBeginning(workSetTps);
-                                        internalConsumer.resume(workSetTps);
-                                        internalConsumer.seekToBeginning(solutionSetTps);
-                                        internalConsumer.resume(solutionSetTps);
-                                    } else {
-                                        internalConsumer.pause(workSetTps);
-                                        internalConsumer.pause(solutionSetTps);
-                                    }
-                                }
-                            }
-                            if (ZKUtils.isReady(curator, applicationId, pregelState)) {
-                                if (!ZKUtils.hasChild(curator, applicationId, pregelState, workerName)) {
-                                    // Try to ensure we have all messages; however the consumer may not yet
-                                    // be in sync so we do another check in the next stage
-                                    Function<TopicPartition, Long> lastWritten = lastWrittenOffsets(pregelState.superstep());
-                                    if (isTopicSynced(internalConsumer, workSetTopic, pregelState.superstep(), positions, lastWritten)) {
-                                        ZKUtils.addChild(curator, applicationId, pregelState, workerName, CreateMode.EPHEMERAL);
-                                    }
-                                }
-                            }
-                        } else if (pregelState.stage() == Stage.SEND) {
-                            if (ZKUtils.isReady(curator, applicationId, pregelState)) {
-                                Map<K, Map<K, List<Message>>> messages = localworkSetStore.get(pregelState.superstep());
-                                if (hasVerticesToForward(messages)) {
-                                    // This check is to ensure we have all messages produced in the last stage;
-                                    // we may get new messages as well but that is fine
-                                    Function<TopicPartition, Long> lastWritten = lastWrittenOffsets(pregelState.superstep());
-                                    if (isTopicSynced(internalConsumer, workSetTopic, pregelState.superstep(), positions, lastWritten)) {
-                                        forwardVertices(messages);
-                                    }
-                                }
-
-                                // clean up previous step
-                                int previousStep = pregelState.superstep() - 1;
-                                activeVertices.remove(previousStep);
-                                forwardedVertices.remove(previousStep);
-                                lastWrittenOffsets.remove(previousStep);
-                                aggregators.remove(previousStep);
-                                vertexAggregates.remove(previousStep);
-                                previousAggregates.remove(previousStep);
-                                localworkSetStore.delete(previousStep);
+            if (async && pregelState.superstep() > 0) {
+                // No barriers after superstep 0, vertices are computed as soon as their messages arrive
+                if (lastDeletedStep < 0) {
+                    inbox.delete(0);
+                    metrics.publish(0, context.taskId().partition, workerName);
+                    lastDeletedStep = 0;
+                    removeStep(0);
+                }
+                reportProgress();
+                return;
+            }
+
+            if (pregelState.stage() == Stage.RECEIVE) {
+                if (pregelState.superstep() == 0) {
+                    if (!ZKUtils.hasChild(curator, applicationId, pregelState, workerName)) {
+                        Set<TopicPartition> workSetTps = localPartitions(internalConsumer, workSetTopic);
+                        Set<TopicPartition> solutionSetTps = localPartitions(internalConsumer, solutionSetTopic);
+                        if (isTopicSynced(internalConsumer, verticesTopic, 0, null, graphOffsets::get)
+                            && isTopicSynced(internalConsumer, edgesGroupedBySourceTopic, 0, null, graphOffsets::get)) {
+                            ZKUtils.addChild(curator, applicationId, pregelState, workerName, CreateMode.EPHEMERAL);
+                            // Ensure vertices and edges are read into tables first
+                            internalConsumer.seekToBeginning(workSetTps);
+                            internalConsumer.resume(workSetTps);
+                            internalConsumer.seekToBeginning(solutionSetTps);
+                            internalConsumer.resume(solutionSetTps);
+                        } else {
+                            internalConsumer.pause(workSetTps);
+                            internalConsumer.pause(solutionSetTps);
+                        }
+                    }
+                }
+                if (ZKUtils.isReady(curator, applicationId, pregelState)) {
+                    if (!ZKUtils.hasChild(curator, applicationId, pregelState, workerName)) {
+                        // Try to ensure we have all messages; however the consumer may not yet
+                        // be in sync so we do another check in the next stage
+                        if (isWorkSetSynced(pregelState.superstep())) {
+                            if (isCheckpoint(pregelState.superstep())) {
+                                // The received messages are part of the checkpoint
+                                context.commit();
                             }
+                            ZKUtils.addChild(curator, applicationId, pregelState, workerName, CreateMode.EPHEMERAL);
+                        }
+                    }
+                }
+            } else if (pregelState.stage() == Stage.SEND) {
+                if (ZKUtils.isReady(curator, applicationId, pregelState)) {
+                    if (incremental && pregelState.superstep() > lastSeededStep && !maybeSeed(pregelState.superstep())) {
+                        // Not all changes to the graph have been read yet
+                        return;
+                    }
+                    if (hasVerticesToForward()) {
+                        // This check is to ensure we have all messages produced in the last stage;
+                        // we may get new messages as well but that is fine
+                        if (isWorkSetSynced(pregelState.superstep())) {
+                            forwardVertices();
+                        }
+                    }
+
+                    // clean up previous step
+                    int previousStep = pregelState.superstep() - 1;
+                    if (previousStep > lastDeletedStep) {
+                        // The messages of the last checkpoint are kept until the next checkpoint is taken
+                        if (!isCheckpoint(previousStep)) {
+                            inbox.delete(previousStep);
+                        }
+                        if (isCheckpoint(pregelState.superstep()) && pregelState.superstep() > checkpointInterval) {
+                            inbox.delete(pregelState.superstep() - checkpointInterval);
+                        }
+                        metrics.publish(previousStep, context.taskId().partition, workerName);
+                        lastDeletedStep = previousStep;
+                    }
+                    removeStep(previousStep);
+                }
+            }
+        }
+
+        private void removeStep(int superstep) {
+            activeVertices.remove(superstep);
+            // Also the vertices of earlier supersteps whose messages were kept in the inbox after a restart
+            verticesToForward.keySet().removeIf(step -> step <= superstep);
+            lastWrittenOffsets.remove(superstep);
+            activatedPartitions.remove(superstep);
+            publishedPartitions.remove(superstep);
+            aggregators.remove(superstep);
+            vertexAggregates.remove(superstep);
+            previousAggregates.remove(superstep);
+            aggregatorChannel.remove(superstep);
+        }
+
+        /**
+         * Detect the end of the asynchronous phase by counting messages in waves, see {@link AsyncTermination}.
+         */
+        private PregelState checkTermination(PregelState pregelState) throws Exception {
+            String barriersPath = ZKUtils.barriersPath(applicationId);
+            String progressPath = ZKUtils.progressPath(applicationId);
+            ChildData data = barrierCache.getCurrentData(progressPath);
+            if (data == null) {
+                if (!ZKUtils.hasChild(curator, barriersPath, ZKUtils.PROGRESS)) {
+                    ZKUtils.addChild(curator, barriersPath, ZKUtils.PROGRESS, CreateMode.PERSISTENT, KryoUtils.serialize(0));
+                }
+                return pregelState;
+            }
+            int wave = KryoUtils.<Integer>deserialize(data.getData());
+            Map<String, ChildData> children = barrierCache.getCurrentChildren(progressPath);
+            List<Tuple3<Integer, Long, Long>> reports = new ArrayList<>();
+            if (children != null) {
+                for (ChildData child : children.values()) {
+                    reports.add(KryoUtils.deserialize(child.getData()));
+                }
+            }
+            AsyncTermination.Status status = termination.check(wave, reports);
+            if (status == AsyncTermination.Status.WAITING) {
+                return pregelState;
+            } else if (status == AsyncTermination.Status.CONVERGED) {
+                log.info("Asynchronous Pregel computation converged after {} messages", termination.received());
+                return pregelState.state(State.COMPLETED);
+            }
+            long now = System.currentTimeMillis();
+            if (now - progressTime >= longConfig(ASYNC_TERMINATION_CHECK_INTERVAL_MS, DEFAULT_ASYNC_TERMINATION_CHECK_INTERVAL_MS)) {
+                progressTime = now;
+                ZKUtils.updateChild(curator, barriersPath, ZKUtils.PROGRESS, KryoUtils.serialize(wave + 1));
+            } else {
+                // Nothing changes in ZK until the next wave is started
+                barrierChanged.set(true);
+            }
+            return pregelState;
+        }
+
+        private void reportProgress() throws Exception {
+            String progressPath = ZKUtils.progressPath(applicationId);
+            ChildData data = barrierCache.getCurrentData(progressPath);
+            if (data == null) {
+                return;
+            }
+            int wave = KryoUtils.<Integer>deserialize(data.getData());
+            if (wave <= lastReportedWave) {
+                return;
+            }
+            int partition = context.taskId().partition;
+            Tuple3<Integer, Long, Long> progress = new Tuple3<>(
+                wave, counter(asyncSent, partition).sum(), counter(asyncReceived, partition).sum());
+            String childPath = childPath(partition);
+            byte[] childData = KryoUtils.serialize(progress);
+            if (ZKUtils.hasChild(curator, progressPath, childPath)) {
+                ZKUtils.updateChild(curator, progressPath, childPath, childData);
+            } else {
+                ZKUtils.addChild(curator, progressPath, childPath, CreateMode.PERSISTENT, childData);
+            }
+            lastReportedWave = wave;
+        }
+
+        /**
+         * Record a checkpoint once all messages of the superstep have been received.  The vertex values and
+         * edges are saved by the tasks as they change, and the aggregates of the previous superstep are kept in the aggregates topic.
+         */
+        private void saveCheckpoint(PregelState pregelState) throws Exception {
+            String barrierPath = ZKUtils.barrierPath(applicationId, pregelState);
+            Set<Integer> partitions = new HashSet<>();
+            for (String child : curator.getChildren().forPath(barrierPath)) {
+                if (!child.equals(ZKUtils.READY)) {
+                    partitions.add(Integer.parseInt(child.substring(child.lastIndexOf('-') + 1)));
+                }
+            }
+            String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+            byte[] data = KryoUtils.serialize(new Tuple2<>(pregelState.superstep(), partitions));
+            if (ZKUtils.hasChild(curator, rootPath, ZKUtils.CHECKPOINT)) {
+                ZKUtils.updateChild(curator, rootPath, ZKUtils.CHECKPOINT, data);
+            } else {
+                ZKUtils.addChild(curator, rootPath, ZKUtils.CHECKPOINT, CreateMode.PERSISTENT, data);
+            }
+            log.info("Step {}, saved checkpoint with {} active partitions", pregelState.superstep(), partitions.size());
+        }
+
+        private void maybeRestore() throws Exception {
+            String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+            if (!ZKUtils.hasChild(curator, rootPath, ZKUtils.RESUME)) {
+                return;
+            }
+            Tuple2<Integer, Map<Integer, Long>> resume =
+                KryoUtils.deserialize(ZKUtils.getChildData(curator, rootPath, ZKUtils.RESUME));
+            this.resumeOffsets = resume._2;
+            String resumePath = ZKPaths.makePath(rootPath, ZKUtils.RESUME);
+            String taskId = context.taskId().toString();
+            if (ZKUtils.hasChild(curator, resumePath, taskId)) {
+                return;
+            }
+            restore(resume._1);
+            ZKUtils.addChild(curator, resumePath, taskId, CreateMode.PERSISTENT);
+        }
+
+        private void restore(int superstep) {
+            log.info("Restoring task {} to checkpoint at superstep {}", context.taskId(), superstep);
+            // Discard the messages received after the checkpoint, and forward the messages of the checkpoint
+            inbox.deleteFrom(superstep + 1);
+            forwardInbox(superstep);
+
+            // Undo the changes to vertices and edges made after the checkpoint
+            List<KeyValue<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>>> saved = new ArrayList<>();
+            try (KeyValueIterator<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>> iter = checkpointStore.all()) {
+                while (iter.hasNext()) {
+                    KeyValue<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>> entry = iter.next();
+                    if (entry.value._1 == superstep) {
+                        saved.add(entry);
+                    }
+                }
+            }
+            for (KeyValue<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>> entry : saved) {
+                restoreVertex(entry.key, entry.value._2, entry.value._3);
+            }
+            solutionSetProducer.flush();
+
+            // Messages before the resume offsets were sent after the checkpoint
+            TopicPartition tp = new TopicPartition(workSetTopic, context.taskId().partition);
+            Long resumeOffset = resumeOffsets.get(tp.partition());
+            if (resumeOffset != null) {
+                positions.merge(tp, resumeOffset, Math::max);
+            }
+            log.info("Restored {} vertices of task {}", saved.size(), context.taskId());
+        }
+
+        /**
+         * Forward the vertices that have messages in the inbox of the given superstep.
+         */
+        private void forwardInbox(int superstep) {
+            VertexSet<K> targets = VertexSet.create(longIds, false);
+            for (K target : inbox.targets(superstep)) {
+                targets.add(target);
+            }
+            verticesToForward.put(superstep, targets);
+        }
+
+        private void restoreVertex(K key, Tuple4<Integer, VV, Integer, VV> vertex, Map<K, EV> edges) {
+            if (vertex != null) {
+                localSolutionSetStore.put(key, vertex);
+            } else {
+                localSolutionSetStore.delete(key);
+                VV vertexValue = ValueAndTimestamp.getValueOrNull(verticesStore.get(key));
+                vertex = new Tuple4<>(-1, vertexValue, 0, vertexValue);
+            }
+            // The solution set topic may hold a later value
+            solutionSetProducer.send(new ProducerRecord<>(solutionSetTopic, vertexToPartition(key), key, vertex));
+            if (edges != null) {
+                edgesStore.put(key, ValueAndTimestamp.make(edges, System.currentTimeMillis()));
+            } else {
+                edgesStore.delete(key);
+            }
+        }
+
+        /**
+         * Seed the vertices that changed since the previous run, once all changes that the incremental run was
+         * started with have been read.
+         *
+         * @return whether the superstep needs no seeding or was seeded
+         */
+        private boolean maybeSeed(int superstep) throws Exception {
+            String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+            Tuple2<Integer, Map<TopicPartition, Long>> resume = ZKUtils.hasChild(curator, rootPath, ZKUtils.INCREMENTAL)
+                ? KryoUtils.deserialize(ZKUtils.getChildData(curator, rootPath, ZKUtils.INCREMENTAL))
+                : null;
+            if (resume == null || resume._1 != superstep) {
+                lastSeededStep = superstep;
+                return true;
+            }
+            if (!isGraphSynced(verticesTopic, superstep, resume._2)
+                || !isGraphSynced(edgesGroupedBySourceTopic, superstep, resume._2)) {
+                return false;
+            }
+            seed(superstep);
+            lastSeededStep = superstep;
+            return true;
+        }
+
+        private boolean isGraphSynced(String topic, int superstep, Map<TopicPartition, Long> graphOffsets) {
+            Set<TopicPartition> partitions = localPartitions(internalConsumer, topic);
+            // The positions of the partitions that were not read since this instance started are its committed
+            // positions
+            Map<TopicPartition, Long> pos = new HashMap<>();
+            for (TopicPartition tp : partitions) {
+                Long position = positions.get(tp);
+                pos.put(tp, position != null ? position : internalConsumer.position(tp));
+            }
+            return isSynced(topic, superstep, pos, endOffsets(internalConsumer, partitions, graphOffsets::get));
+        }
+
+        /**
+         * Call {@link IncrementalComputeFunction#update} for each vertex of this task that changed since the
+         * previous run, and send the seeded messages to the next superstep.  The partition then leaves the
+         * superstep as if its vertices had been computed.
+         */
+        @SuppressWarnings("unchecked")
+        private void seed(int superstep) throws Exception {
+            IncrementalComputeFunction<K, VV, EV, Message> cf =
+                (IncrementalComputeFunction<K, VV, EV, Message>) computeFunction;
+            int partition = context.taskId().partition;
+            inbox.delete(superstep);
+            verticesToForward.remove(superstep);
+
+            List<KeyValue<K, Tuple2<Map<K, EV>, VV>>> changes = new ArrayList<>();
+            try (KeyValueIterator<K, Tuple2<Map<K, EV>, VV>> iter = graphChangesStore.all()) {
+                while (iter.hasNext()) {
+                    changes.add(iter.next());
+                }
+            }
+            boolean applied = true;
+            Map<String, ?> previousAggregates = previousAggregates(superstep);
+            for (KeyValue<K, Tuple2<Map<K, EV>, VV>> change : changes) {
+                graphChangesStore.delete(change.key);
+                if (applied) {
+                    applied = seedVertex(cf, superstep, change.key, change.value._1, change.value._2, previousAggregates);
+                }
+            }
+            producer.flush();
+            solutionSetProducer.flush();
+            if (!applied) {
+                log.info("Step {}, the changes to the graph in task {} cannot be applied incrementally",
+                    superstep, context.taskId());
+                ZKUtils.addChild(curator, ZKUtils.PREGEL_PATH + applicationId, ZKUtils.RECOMPUTE, CreateMode.PERSISTENT);
+            }
+            log.info("Step {}, seeded {} changed vertices of task {}", superstep, changes.size(), context.taskId());
+
+            publishActivatedPartitions(superstep);
+            Map<String, Aggregator<?>> partials = newAggregators();
+            new ComputeFunction.Aggregators(previousAggregates, partials)
+                .aggregate(LAST_WRITTEN_OFFSETS, lastWrittenOffsets.get(superstep));
+            aggregatorChannel.send(superstep, partition, KryoUtils.serialize(partials));
+            ZKUtils.removeChild(curator, applicationId, new PregelState(State.RUNNING, superstep, Stage.SEND), childPath(partition));
+            context.commit();
+        }
+
+        private boolean seedVertex(IncrementalComputeFunction<K, VV, EV, Message> cf, int superstep, K key,
+                                   Map<K, EV> previousEdges, VV previousValue, Map<String, ?> previousAggregates) {
+            VV inputValue = ValueAndTimestamp.getValueOrNull(verticesStore.get(key));
+            if (previousValue == null && inputValue == null) {
+                // Edges of a vertex that has no value
+                return true;
+            } else if (previousValue != null && inputValue != null && !previousValue.equals(inputValue)) {
+                // A replaced value invalidates what was computed from it
+                return false;
+            }
+            boolean added = previousValue == null;
+            boolean removed = inputValue == null;
+            Tuple4<Integer, VV, Integer, VV> storedVertex = localSolutionSetStore.get(key);
+            VV value = added ? inputValue : storedVertex != null ? storedVertex._4 : previousValue;
+            Map<K, EV> storedEdges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
+            Map<K, EV> edges = storedEdges != null ? new HashMap<>(storedEdges) : new HashMap<>();
+            ComputeFunction.Callback<K, VV, EV, Message> cb = new ComputeFunction.Callback<>(
+                key, edges, previousAggregates, Collections.emptyMap(), messageCombiner);
+            if (!cf.update(new VertexWithValue<>(key, value), previousEdges, edges, cb)) {
+                return false;
+            }
+            if (added) {
+                initialMessage.ifPresent(message -> cb.sendMessageTo(key, message));
+            }
+
+            if (removed) {
+                localSolutionSetStore.delete(key);
+                solutionSetProducer.send(new ProducerRecord<>(solutionSetTopic, vertexToPartition(key), key, null));
+            } else if (cb.newVertexValue != null) {
+                Tuple4<Integer, VV, Integer, VV> vertex = new Tuple4<>(superstep, value, superstep + 1, cb.newVertexValue);
+                localSolutionSetStore.put(key, vertex);
+                solutionSetProducer.send(new ProducerRecord<>(solutionSetTopic, vertexToPartition(key), key, vertex));
+            } else if (added && storedVertex == null) {
+                Tuple4<Integer, VV, Integer, VV> vertex = new Tuple4<>(-1, value, 0, value);
+                solutionSetProducer.send(new ProducerRecord<>(solutionSetTopic, vertexToPartition(key), key, vertex));
+            }
+            if (cb.edgesChanged && !removed) {
+                edgesStore.put(key, ValueAndTimestamp.make(edges, System.currentTimeMillis()));
+            }
+            for (Map.Entry<K, List<Message>> entry : cb.outgoingMessages.entrySet()) {
+                Tuple3<Integer, K, List<Message>> tuple = new Tuple3<>(superstep + 1, key, entry.getValue());
+                ProducerRecord<K, Tuple3<Integer, K, List<Message>>> producerRecord =
+                    new ProducerRecord<>(workSetTopic, vertexToPartition(entry.getKey()), entry.getKey(), tuple);
+                try {
+                    inFlightMessages.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw toRuntimeException(e);
+                }
+                producer.send(producerRecord, (metadata, error) -> {
+                    try {
+                        if (error == null) {
+                            messageWritten(superstep, metadata);
+                        } else {
+                            log.error("Failed to send record to {}: {}", workSetTopic, error);
                         }
-                    } catch (Exception e) {
-                        throw toRuntimeException(e);
+                    } finally {
+                        inFlightMessages.release();
                     }
                 });
-            } catch (Exception e) {
-                throw toRuntimeException(e);
             }
+            return true;
+        }
+
+        private boolean isWorkSetSynced(int superstep) {
+            Set<TopicPartition> partitions = localPartitions(internalConsumer, workSetTopic);
+            Map<TopicPartition, Long> endOffsets = endOffsets(internalConsumer, partitions, lastWrittenOffsets(superstep));
+            boolean synced = isSynced(workSetTopic, superstep, positions(positions, partitions), endOffsets);
+            awaitedWorkSetOffsets = synced ? null : endOffsets;
+            return synced;
+        }
+
+        /**
+         * Trigger a barrier check once the work set has caught up with the offsets that the last check waited for,
+         * rather than for every record.
+         */
+        private void workSetPositionChanged() {
+            if (awaitedWorkSetOffsets == null) {
+                return;
+            }
+            for (Map.Entry<TopicPartition, Long> endOffset : awaitedWorkSetOffsets.entrySet()) {
+                if (positions.getOrDefault(endOffset.getKey(), 0L) < endOffset.getValue()) {
+                    return;
+                }
+            }
+            awaitedWorkSetOffsets = null;
+            barrierChanged.set(true);
         }
 
         @SuppressWarnings("unchecked")
@@ -562,12 +1475,22 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             int superstep = pregelState.superstep();
             // Collect aggregator values, then run the masterCompute() and
             // finally save the aggregator values
+            long reduceStart = System.nanoTime();
             Map<String, Aggregator<?>> newAggregators = reduceAggregators(superstep - 1);
+            long reduceNanos = System.nanoTime() - reduceStart;
+            if (superstep > 0) {
+                long now = System.currentTimeMillis();
+                metrics.publishSuperstep(superstep - 1, now - superstepStartTime, reduceNanos);
+                superstepStartTime = now;
+            }
             ComputeFunction.MasterCallback cb = new ComputeFunction.MasterCallback(newAggregators);
             computeFunction.masterCompute(superstep, cb);
             saveAggregates(superstep - 1, newAggregators);
             if (cb.haltComputation) {
                 return pregelState.state(State.HALTED);
+            } else if (incremental && isRecomputeNeeded()) {
+                log.info("Pregel computation halted, as the changes to the graph cannot be applied incrementally");
+                return pregelState.state(State.HALTED);
             } else if (pregelState.superstep() > maxIterations) {
                 return pregelState.state(State.COMPLETED);
             } else {
@@ -575,89 +1498,96 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             }
         }
 
-        private Map<String, Aggregator<?>> reduceAggregators(int superstep) throws Exception {
-            String rootPath = ZKUtils.aggregatePath(applicationId, superstep);
+        private Map<String, Aggregator<?>> reduceAggregators(int superstep) {
             Map<String, Aggregator<?>> newAggregators = newAggregators();
             initAggregators(newAggregators, previousAggregates(superstep));
-            boolean exists = curator.checkExists().forPath(rootPath) != null;
-            if (!exists) return newAggregators;
-            List<String> children = curator.getChildren().forPath(rootPath);
-            if (children != null) {
-                for (String path : children) {
-                    if (!path.endsWith(ALL_PARTITIONS)) {
-                        byte[] data = ZKUtils.getChildData(curator, rootPath, path);
-                        if (data.length > 0) {
-                            Map<String, Aggregator<?>> aggregators = KryoUtils.deserialize(data);
-                            mergeAggregators(newAggregators, aggregators);
-                        }
-                    }
-                }
+            // The partial aggregates were merged as they arrived, and all partitions sent theirs before leaving
+            // the barrier
+            Map<String, Aggregator<?>> partials = aggregatorChannel.partials(superstep);
+            if (partials != null) {
+                mergeAggregators(newAggregators, partials);
             }
             return newAggregators;
         }
 
         private void saveAggregates(int superstep, Map<String, Aggregator<?>> newAggregators) throws Exception {
-            String rootPath = ZKUtils.aggregatePath(applicationId, superstep);
             Map<String, ?> newAggregates = newAggregators.entrySet().stream()
                 .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getAggregate()));
-            ZKUtils.addChild(curator, rootPath, ALL_PARTITIONS, CreateMode.PERSISTENT, KryoUtils.serialize(newAggregates));
+            aggregatorChannel.send(superstep, AggregatorChannel.ALL_PARTITIONS, KryoUtils.serialize(newAggregates));
         }
 
-        private boolean hasVerticesToForward(Map<K, Map<K, List<Message>>> messages) {
-            if (messages == null) return false;
-            for (Map.Entry<K, Map<K, List<Message>>> entry : messages.entrySet()) {
-                Set<K> forwarded = forwardedVertices.get(pregelState.superstep());
-                if (forwarded == null || !forwarded.contains(entry.getKey())) {
-                    return true;
-                }
-            }
-            return false;
+        private boolean hasVerticesToForward() {
+            VertexSet<K> vertices = verticesToForward.get(pregelState.superstep());
+            return vertices != null && !vertices.isEmpty();
         }
 
-        private void forwardVertices(Map<K, Map<K, List<Message>>> messages) {
-            List<Map.Entry<K, Map<K, List<Message>>>> toForward = new ArrayList<>();
-            for (Map.Entry<K, Map<K, List<Message>>> entry : messages.entrySet()) {
-                Set<K> forwarded = forwardedVertices.computeIfAbsent(pregelState.superstep(), k -> new HashSet<>());
-                if (!forwarded.contains(entry.getKey())) {
-                    forwarded.add(entry.getKey());
-                    activateVertex(entry);
-                    toForward.add(entry);
-                }
+        private void forwardVertices() {
+            int superstep = pregelState.superstep();
+            VertexSet<K> vertices = verticesToForward.remove(superstep);
+            for (K vertex : vertices) {
+                activateVertex(vertex);
             }
-            for (Map.Entry<K, Map<K, List<Message>>> entry : toForward) {
-                context.forward(entry.getKey(), new Tuple2<>(pregelState.superstep(), entry.getValue()));
+            metrics.stats(superstep, context.taskId().partition).storeReads.add(vertices.size());
+            for (K vertex : vertices) {
+                context.forward(vertex, new Tuple2<>(superstep, messageCombiner != null
+                    ? inbox.messages(superstep, vertex, messageCombiner)
+                    : inbox.messages(superstep, vertex)));
             }
             context.commit();
         }
 
-        private void activateVertex(Map.Entry<K, Map<K, List<Message>>> entry) {
-            int partition = vertexToPartition(entry.getKey(), serialized.keySerde().serializer(), numPartitions);
-            Map<Integer, Set<K>> active = activeVertices.computeIfAbsent(
+        private void activateVertex(K vertex) {
+            int partition = vertexToPartition(vertex);
+            Map<Integer, VertexSet<K>> active = activeVertices.computeIfAbsent(
                 pregelState.superstep(), k -> new ConcurrentHashMap<>());
-            Set<K> vertices = active.computeIfAbsent(partition, k -> ConcurrentHashMap.newKeySet());
-            vertices.add(entry.getKey());
-            log.debug("Step {}, vertex {} for partition {} is active", pregelState.superstep(), entry.getKey(), partition);
+            VertexSet<K> vertices = active.computeIfAbsent(partition, k -> VertexSet.create(longIds, true));
+            vertices.add(vertex);
+            log.debug("Step {}, vertex {} for partition {} is active", pregelState.superstep(), vertex, partition);
         }
 
         @Override
         public KeyValue<K, Tuple2<Integer, Map<K, List<Message>>>> transform(
             final K readOnlyKey, final Tuple3<Integer, K, List<Message>> value
         ) {
-            Map<K, Map<K, List<Message>>> messages = localworkSetStore.get(value._1);
-            if (messages == null) {
-                messages = new HashMap<>();
+            Long resumeOffset = resumeOffsets.get(context.partition());
+            if (resumeOffset != null && context.offset() < resumeOffset) {
+                // Sent after the checkpoint we resumed from
+                positions.merge(new TopicPartition(context.topic(), context.partition()), context.offset() + 1, Math::max);
+                workSetPositionChanged();
+                return null;
             }
-            Map<K, List<Message>> messagesForSuperstep = messages.computeIfAbsent(readOnlyKey, k -> new HashMap<>());
+            if (async && value._1 > 0) {
+                // Compute the vertex right away; messages beyond the last iteration are dropped
+                if (value._1 <= maxIterations) {
+                    List<Message> messages = value._3 != null ? value._3 : Collections.emptyList();
+                    metrics.stats(phase(value._1), context.partition()).messagesReceived.add(messages.size());
+                    context.forward(readOnlyKey, new Tuple2<>(value._1, Collections.singletonMap(value._2, messages)));
+                }
+                positions.merge(new TopicPartition(context.topic(), context.partition()), context.offset() + 1, Math::max);
+                counter(asyncReceived, context.taskId().partition).increment();
+                return null;
+            }
+            PregelMetrics.SuperstepStats stats = metrics.stats(value._1, context.partition());
+            if (value._3 != null) {
+                stats.messagesReceived.add(value._3.size());
+            }
+            stats.storeWrites.increment();
             if (value._3 != null) {
-                messagesForSuperstep.put(value._2, value._3);
+                inbox.put(value._1, readOnlyKey, value._2, value._3);
+            } else {
+                stats.storeReads.increment();
+                inbox.putIfAbsent(value._1, readOnlyKey, value._2);
             }
-            localworkSetStore.put(value._1, messages);
             positions.merge(new TopicPartition(context.topic(), context.partition()), context.offset() + 1, Math::max);
 
-            Set<K> forwarded = forwardedVertices.get(value._1);
-            if (forwarded != null) {
-                forwarded.remove(readOnlyKey);
+            // (Re-)forward this vertex with all of its messages
+            VertexSet<K> vertices = verticesToForward.computeIfAbsent(value._1, k -> VertexSet.create(longIds, false));
+            if (vertices.isEmpty()) {
+                // The first vertex of a superstep may have vertices to forward where there were none
+                barrierChanged.set(true);
             }
+            vertices.add(readOnlyKey);
+            workSetPositionChanged();
 
             return null;
         }
@@ -665,7 +1595,8 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         @Override
         public void close() {
             if (barrierCache != null) {
-                barrierCache.close();
+                barrierCache.getListenable().removeListener(barrierListener);
+                releaseBarrierCache();
             }
             if (sharedValue != null) {
                 try {
@@ -687,6 +1618,60 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         }
     }
 
+    /**
+     * Applies the records of a graph topic to its store in incremental mode.  The records after the graph offsets
+     * are changes to a graph that was already computed, so they are recorded for the next incremental run rather
+     * than forwarded to the initialization of the first superstep.
+     */
+    private final class UpdateGraph<V> implements Transformer<K, V, KeyValue<K, V>> {
+
+        private final String storeName;
+        private ProcessorContext context;
+        private TimestampedKeyValueStore<K, V> store;
+        private TimestampedKeyValueStore<K, VV> verticesStore;
+        private TimestampedKeyValueStore<K, Map<K, EV>> edgesStore;
+        private KeyValueStore<K, Tuple2<Map<K, EV>, VV>> graphChangesStore;
+
+        UpdateGraph(String storeName) {
+            this.storeName = storeName;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void init(final ProcessorContext context) {
+            this.context = context;
+            this.store = (TimestampedKeyValueStore<K, V>) context.getStateStore(storeName);
+            this.verticesStore = (TimestampedKeyValueStore<K, VV>) context.getStateStore(verticesStoreName);
+            this.edgesStore = (TimestampedKeyValueStore<K, Map<K, EV>>) context.getStateStore(edgesStoreName);
+            this.graphChangesStore = (KeyValueStore<K, Tuple2<Map<K, EV>, VV>>) context.getStateStore(localGraphChangesStoreName);
+        }
+
+        @Override
+        public KeyValue<K, V> transform(final K readOnlyKey, final V value) {
+            TopicPartition tp = new TopicPartition(context.topic(), context.partition());
+            positions.merge(tp, context.offset() + 1, Math::max);
+            boolean changed = graphOffsets != null && !graphOffsets.isEmpty()
+                && context.offset() > graphOffsets.getOrDefault(tp, -1L);
+            if (changed && graphChangesStore.get(readOnlyKey) == null) {
+                // Keep the vertex as of the previous run, before its first change
+                Map<K, EV> edges = ValueAndTimestamp.getValueOrNull(edgesStore.get(readOnlyKey));
+                VV vertexValue = ValueAndTimestamp.getValueOrNull(verticesStore.get(readOnlyKey));
+                graphChangesStore.put(readOnlyKey,
+                    new Tuple2<>(edges != null ? edges : Collections.emptyMap(), vertexValue));
+            }
+            if (value != null) {
+                store.put(readOnlyKey, ValueAndTimestamp.make(value, context.timestamp()));
+            } else {
+                store.delete(readOnlyKey);
+            }
+            return changed ? null : KeyValue.pair(readOnlyKey, value);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
     private final class VertexComputeUdf
         implements ValueTransformerWithKey<K, Tuple2<Integer, Map<K, List<Message>>>,
         Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, List<Message>>>> {
@@ -695,14 +1680,18 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         private KeyValueStore<K, Tuple4<Integer, VV, Integer, VV>> localSolutionSetStore;
         private TimestampedKeyValueStore<K, VV> verticesStore;
         private TimestampedKeyValueStore<K, Map<K, EV>> edgesStore;
+        private KeyValueStore<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>> checkpointStore;
 
         @SuppressWarnings("unchecked")
         @Override
         public void init(final ProcessorContext context) {
             this.context = context;
             this.localSolutionSetStore = (KeyValueStore<K, Tuple4<Integer, VV, Integer, VV>>) context.getStateStore(localSolutionSetStoreName);
-            this.verticesStore = (TimestampedKeyValueStore<K, VV>) context.getStateStore(vertices.queryableStoreName());
-            this.edgesStore = (TimestampedKeyValueStore<K, Map<K, EV>>) context.getStateStore(edgesGroupedBySource.queryableStoreName());
+            this.verticesStore = (TimestampedKeyValueStore<K, VV>) context.getStateStore(verticesStoreName);
+            this.edgesStore = (TimestampedKeyValueStore<K, Map<K, EV>>) context.getStateStore(edgesStoreName);
+            if (checkpointInterval > 0) {
+                this.checkpointStore = (KeyValueStore<K, Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>>>) context.getStateStore(localCheckpointStoreName);
+            }
         }
 
         @Override
@@ -710,8 +1699,14 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             final K readOnlyKey, final Tuple2<Integer, Map<K, List<Message>>> value
         ) {
             int superstep = value._1;
-            Tuple4<Integer, VV, Integer, VV> vertex = localSolutionSetStore.get(readOnlyKey);
+            int partition = vertexToPartition(readOnlyKey);
+            PregelMetrics.SuperstepStats stats = metrics.stats(phase(superstep), partition);
+            stats.activeVertices.increment();
+            stats.storeReads.increment();
+            Tuple4<Integer, VV, Integer, VV> storedVertex = localSolutionSetStore.get(readOnlyKey);
+            Tuple4<Integer, VV, Integer, VV> vertex = storedVertex;
             if (vertex == null) {
+                stats.storeReads.increment();
                 VV vertexValue = ValueAndTimestamp.getValueOrNull(verticesStore.get(readOnlyKey));
                 if (vertexValue == null) {
                     log.warn("No vertex value for {}", readOnlyKey);
@@ -720,8 +1715,9 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             }
             Map<K, List<Message>> messages = value._2;
             Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, List<Message>>> result =
-                apply(superstep, readOnlyKey, vertex, messages);
+                apply(superstep, partition, stats, readOnlyKey, vertex, storedVertex, messages);
             if (result._2 != null) {
+                stats.storeWrites.increment();
                 localSolutionSetStore.put(readOnlyKey, result._2);
             }
             return result;
@@ -729,35 +1725,54 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
 
         private Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, List<Message>>> apply(
             int superstep,
+            int partition,
+            PregelMetrics.SuperstepStats stats,
             K key,
             Tuple4<Integer, VV, Integer, VV> vertex,
+            Tuple4<Integer, VV, Integer, VV> storedVertex,
             Map<K, List<Message>> incomingMessages
         ) {
-            // Find the value that applies to this step
-            VV oldVertexValue = vertex._3 <= superstep ? vertex._4 : vertex._2;
-            int partition = vertexToPartition(key, serialized.keySerde().serializer(), numPartitions);
+            // Find the value that applies to this step, which in asynchronous mode is always the latest one
+            VV oldVertexValue = async || vertex._3 <= superstep ? vertex._4 : vertex._2;
+            int phase = phase(superstep);
 
-            if (!hasAggregators(superstep, partition)) {
+            if (!hasAggregators(phase, partition)) {
                 ComputeFunction.Aggregators aggregators = new ComputeFunction.Aggregators(
-                    previousAggregates(superstep), aggregators(superstep, partition));
-                computeFunction.preSuperstep(superstep, aggregators);
+                    previousAggregates(phase), aggregators(phase, partition));
+                computeFunction.preSuperstep(phase, aggregators);
             }
 
-            ComputeFunction.Callback<K, VV, EV, Message> cb = new ComputeFunction.Callback<>(context, key, edgesStore,
-                previousAggregates(superstep), vertexAggregates(superstep, partition));
+            // Read the adjacency once; edge mutations are applied to it and written back once after compute
+            stats.storeReads.increment();
+            Map<K, EV> outgoingEdges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
+            if (superstep == 0 && outgoingEdges != null) {
+                countCutEdges(partition, stats, outgoingEdges.keySet());
+            }
+            Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>> snapshot = snapshot(superstep, stats, key, storedVertex, outgoingEdges);
+            if (outgoingEdges == null) {
+                outgoingEdges = new HashMap<>();
+            }
+            Map<K, EV> vertexEdges = outgoingEdges;
+            ComputeFunction.Callback<K, VV, EV, Message> cb = new ComputeFunction.Callback<>(key, vertexEdges,
+                previousAggregates(phase), vertexAggregates(phase, partition), messageCombiner);
             Iterable<Message> messages = () -> incomingMessages.values().stream()
                 .flatMap(List::stream)
                 .iterator();
-            Iterable<EdgeWithValue<K, EV>> edges = () -> {
-                Map<K, EV> outgoingEdges = ValueAndTimestamp.getValueOrNull(edgesStore.get(key));
-                if (outgoingEdges == null) {
-                    outgoingEdges = Collections.emptyMap();
-                }
-                return outgoingEdges.entrySet().stream()
-                    .map(e -> new EdgeWithValue<>(key, e.getKey(), e.getValue()))
-                    .iterator();
-            };
+            // Edges read with the compact serde are decoded one at a time while iterating
+            Iterable<EdgeWithValue<K, EV>> edges = () -> vertexEdges.entrySet().stream()
+                .map(e -> new EdgeWithValue<>(key, e.getKey(), e.getValue()))
+                .iterator();
+            long computeStart = System.nanoTime();
             computeFunction.compute(superstep, new VertexWithValue<>(key, oldVertexValue), messages, edges, cb);
+            stats.computeNanos.add(System.nanoTime() - computeStart);
+            if (snapshot != null && (cb.newVertexValue != null || cb.edgesChanged)) {
+                stats.storeWrites.increment();
+                checkpointStore.put(key, snapshot);
+            }
+            if (cb.edgesChanged) {
+                stats.storeWrites.increment();
+                edgesStore.put(key, ValueAndTimestamp.make(vertexEdges, context.timestamp()));
+            }
             Tuple4<Integer, VV, Integer, VV> newVertex = cb.newVertexValue != null
                 ? new Tuple4<>(superstep, oldVertexValue, superstep + 1, cb.newVertexValue) : null;
             Map<K, List<Message>> outgoingMessages = cb.outgoingMessages;
@@ -768,6 +1783,41 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             return new Tuple3<>(superstep + 1, newVertex, outgoingMessages);
         }
 
+        private void countCutEdges(int partition, PregelMetrics.SuperstepStats stats, Set<K> targets) {
+            long cut = 0;
+            for (K target : targets) {
+                if (vertexToPartition(target) != partition) {
+                    cut++;
+                }
+            }
+            stats.edges.add(targets.size());
+            stats.cutEdges.add(cut);
+        }
+
+        /**
+         * Copy the stored value and edges of the vertex, unless they have already been saved since the last
+         * checkpoint.  The copy is saved only if the vertex changes, so the checkpoint store holds the state
+         * as of the last checkpoint of every vertex that changed since.
+         */
+        private Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>> snapshot(
+            int superstep,
+            PregelMetrics.SuperstepStats stats,
+            K key,
+            Tuple4<Integer, VV, Integer, VV> storedVertex,
+            Map<K, EV> storedEdges
+        ) {
+            int checkpoint = lastCheckpoint(superstep);
+            if (checkpointStore == null || checkpoint <= 0) {
+                return null;
+            }
+            stats.storeReads.increment();
+            Tuple3<Integer, Tuple4<Integer, VV, Integer, VV>, Map<K, EV>> saved = checkpointStore.get(key);
+            if (saved != null && saved._1 >= checkpoint) {
+                return null;
+            }
+            return new Tuple3<>(checkpoint, storedVertex, storedEdges != null ? new HashMap<>(storedEdges) : null);
+        }
+
         @Override
         public void close() {
         }
@@ -776,6 +1826,7 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
     private final class SendMessages implements Processor<K, Tuple2<Integer, Map<K, List<Message>>>> {
 
         private final Producer<K, Tuple3<Integer, K, List<Message>>> producer;
+        private int taskPartition;
 
         public SendMessages(Producer<K, Tuple3<Integer, K, List<Message>>> producer) {
             this.producer = producer;
@@ -783,75 +1834,108 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
 
         @Override
         public void init(final ProcessorContext context) {
+            this.taskPartition = context.taskId().partition;
         }
 
         @Override
         public void process(final K readOnlyKey, final Tuple2<Integer, Map<K, List<Message>>> value) {
             try {
                 int superstep = value._1 - 1;
+                int partition = vertexToPartition(readOnlyKey);
+                PregelMetrics.SuperstepStats stats = metrics.stats(phase(superstep), partition);
+                long sendStart = System.nanoTime();
                 for (Map.Entry<K, List<Message>> entry : value._2.entrySet()) {
+                    stats.messagesSent.add(entry.getValue().size());
                     // List of messages may be empty in case of sending to self
                     Tuple3<Integer, K, List<Message>> tuple = new Tuple3<>(superstep + 1, readOnlyKey, entry.getValue());
                     ProducerRecord<K, Tuple3<Integer, K, List<Message>>> producerRecord =
-                        new ProducerRecord<>(workSetTopic, entry.getKey(), tuple);
-                    Callback cb = callback(superstep, readOnlyKey, entry.getKey(), entry.getValue());
+                        new ProducerRecord<>(workSetTopic, vertexToPartition(entry.getKey()), entry.getKey(), tuple);
+                    Callback cb = callback(superstep, stats, readOnlyKey, entry.getKey(), entry.getValue(), true);
+                    if (async) {
+                        counter(asyncSent, taskPartition).increment();
+                    }
+                    // Bound the number of unacknowledged messages; the send itself does not block
+                    inFlightMessages.acquire();
                     producer.send(producerRecord, cb);
                 }
-                producer.flush();
-                // Deactivate this vertex
-                deactivateVertex(superstep, readOnlyKey);
+                stats.sendNanos.add(System.nanoTime() - sendStart);
+                // Deactivate this vertex, unless there is no barrier to pass
+                if (!async || superstep == 0) {
+                    deactivateVertex(superstep, partition, stats, readOnlyKey);
+                }
             } catch (Exception e) {
                 throw toRuntimeException(e);
             }
         }
 
-        private Callback callback(int superstep, K readOnlyKey, K vertex, List<Message> messages) {
+        private Callback callback(int superstep, PregelMetrics.SuperstepStats stats, K readOnlyKey, K vertex,
+                                  List<Message> messages, boolean acquired) {
             return (metadata, error) -> {
-                if (error == null) {
-                    try {
-                        // Activate partition for next step
-                        int p = vertexToPartition(vertex, serialized.keySerde().serializer(), numPartitions);
-                        log.debug("Step {}, adding partition {} for vertex {}", superstep, p, vertex);
-                        ZKUtils.addChild(curator, applicationId, new PregelState(State.RUNNING, superstep + 1, Stage.SEND), childPath(p));
-
-                        Map<Integer, Long> endOffsets = lastWrittenOffsets.computeIfAbsent(superstep, k -> new ConcurrentHashMap<>());
-                        endOffsets.merge(metadata.partition(), metadata.offset(), Math::max);
-                    } catch (Exception e) {
-                        throw toRuntimeException(e);
-                    }
-                } else if (error instanceof RecordTooLargeException && messages.size() > 1) {
-                    log.warn("Record too large, retrying with smaller messages");
-                    for (Message message : messages) {
-                        List<Message> singleton = Collections.singletonList(message);
-                        Tuple3<Integer, K, List<Message>> tuple = new Tuple3<>(superstep + 1, readOnlyKey, singleton);
-                        ProducerRecord<K, Tuple3<Integer, K, List<Message>>> record =
-                            new ProducerRecord<>(workSetTopic, vertex, tuple);
-                        producer.send(record, callback(superstep, readOnlyKey, vertex, singleton));
+                try {
+                    onCompletion(superstep, stats, readOnlyKey, vertex, messages, metadata, error);
+                } finally {
+                    if (acquired) {
+                        inFlightMessages.release();
                     }
-                } else {
-                    log.error("Failed to send record to {}: {}", workSetTopic, error);
                 }
             };
         }
 
-        private void deactivateVertex(int superstep, K vertex) throws Exception {
-            int partition = vertexToPartition(vertex, serialized.keySerde().serializer(), numPartitions);
-            Map<Integer, Set<K>> active = activeVertices.get(superstep);
-            Set<K> vertices = active.get(partition);
+        private void onCompletion(int superstep, PregelMetrics.SuperstepStats stats, K readOnlyKey, K vertex,
+                                  List<Message> messages, RecordMetadata metadata, Exception error) {
+            if (error == null) {
+                stats.bytesProduced.add(Math.max(0, metadata.serializedKeySize()) + Math.max(0, metadata.serializedValueSize()));
+                if (async) {
+                    return;
+                }
+                log.debug("Step {}, adding partition {} for vertex {}", superstep, metadata.partition(), vertex);
+                messageWritten(superstep, metadata);
+            } else if (error instanceof RecordTooLargeException && messages.size() > 1) {
+                log.warn("Record too large, retrying with smaller messages");
+                if (async) {
+                    counter(asyncSent, taskPartition).add(messages.size() - 1);
+                }
+                for (Message message : messages) {
+                    List<Message> singleton = Collections.singletonList(message);
+                    Tuple3<Integer, K, List<Message>> tuple = new Tuple3<>(superstep + 1, readOnlyKey, singleton);
+                    ProducerRecord<K, Tuple3<Integer, K, List<Message>>> record =
+                        new ProducerRecord<>(workSetTopic, vertexToPartition(vertex), vertex, tuple);
+                    // Sent from the producer's I/O thread, so must not wait for a permit
+                    producer.send(record, callback(superstep, stats, readOnlyKey, vertex, singleton, false));
+                }
+            } else {
+                log.error("Failed to send record to {}: {}", workSetTopic, error);
+                if (async) {
+                    // Count the lost record as received, so that termination can still be detected
+                    counter(asyncReceived, taskPartition).increment();
+                }
+            }
+        }
+
+        private void deactivateVertex(int superstep, int partition, PregelMetrics.SuperstepStats stats, K vertex) throws Exception {
+            Map<Integer, VertexSet<K>> active = activeVertices.get(superstep);
+            VertexSet<K> vertices = active.get(partition);
             vertices.remove(vertex);
             log.debug("Step {}, vertex {} for partition {} is NOT active", superstep, vertex, partition);
             if (vertices.isEmpty()) {
-                // Deactivate partition
+                // Wait for all outstanding messages, so that the next superstep is activated
+                // and the last written offsets are known before the partition is deactivated
+                long flushStart = System.nanoTime();
+                producer.flush();
+                stats.sendNanos.add(System.nanoTime() - flushStart);
+                publishActivatedPartitions(superstep);
                 // Note: this may be invoked more than once, so we don't mutate aggregates.
-                log.debug("Step {}, removing partition {} for last vertex {}", superstep, partition, vertex);
-                ZKUtils.removeChild(curator, applicationId, new PregelState(State.RUNNING, superstep, Stage.SEND), childPath(partition));
                 Map<String, Aggregator<?>> copyAggregators = copyAggregators(superstep, partition);
                 aggregateVertices(superstep, partition, copyAggregators);
                 ComputeFunction.Aggregators aggregators = new ComputeFunction.Aggregators(
                     previousAggregates(superstep), copyAggregators);
                 computeFunction.postSuperstep(superstep, aggregators);
                 initLastWrittenOffsets(superstep, aggregators);
-                saveAggregators(superstep, partition, copyAggregators);
+                // Send the partial aggregates before deactivating the partition, so the leader reduces them
+                aggregatorChannel.send(superstep, partition, KryoUtils.serialize(copyAggregators));
+                log.debug("Step {}, removing partition {} for last vertex {}", superstep, partition, vertex);
+                ZKUtils.removeChild(curator, applicationId, new PregelState(State.RUNNING, superstep, Stage.SEND), childPath(partition));
+                stats.doneTimeMs = System.currentTimeMillis();
             }
         }
 
@@ -885,17 +1969,6 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             aggregators.aggregate(LAST_WRITTEN_OFFSETS, lastWrittenOffsets.get(superstep));
         }
 
-        private void saveAggregators(int superstep, int partition, Map<String, Aggregator<?>> aggregators) throws Exception {
-            String rootPath = ZKUtils.aggregatePath(applicationId, superstep);
-            String childPath = childPath(partition);
-            byte[] childData = KryoUtils.serialize(aggregators);
-            if (ZKUtils.hasChild(curator, rootPath, childPath)) {
-                ZKUtils.updateChild(curator, rootPath, childPath, childData);
-            } else {
-                ZKUtils.addChild(curator, rootPath, childPath, CreateMode.PERSISTENT, childData);
-            }
-        }
-
         @Override
         public void close() {
         }
@@ -907,14 +1980,30 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
             if (producer != null) {
                 producer.close();
             }
+            if (solutionSetProducer != null) {
+                solutionSetProducer.close();
+            }
+            if (aggregatorChannel != null) {
+                aggregatorChannel.close();
+            }
+            metrics.close();
 
-            // Clean up ZK
-            ZKUtils.removeRoot(curator, applicationId);
+            // Clean up ZK, unless an unfinished computation may be resumed from its checkpoint
+            if (checkpointInterval <= 0 || isFinished()) {
+                ZKUtils.removeRoot(curator, applicationId);
+            }
         } catch (Exception e) {
             // ignore
         }
     }
 
+    private boolean isFinished() throws Exception {
+        String rootPath = ZKUtils.PREGEL_PATH + applicationId;
+        return !ZKUtils.hasChild(curator, rootPath, ZKUtils.CHECKPOINT)
+            || !ZKUtils.hasChild(curator, rootPath, ZKUtils.SUPERSTEP)
+            || state().state() != State.RUNNING;
+    }
+
     protected static class AggregatorWrapper<T> {
         private final Class<? extends Aggregator<T>> aggregatorClass;
         private final boolean persistent;
@@ -965,10 +2054,15 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
         }
     }
 
-    private static <K> int vertexToPartition(K vertex, Serializer<K> serializer, int numPartitions) {
-        // TODO make configurable, currently this is tied to DefaultStreamPartitioner
-        byte[] keyBytes = serializer.serialize(null, vertex);
-        int partition = Utils.toPositive(Utils.murmur2(keyBytes)) % numPartitions;
+    private int vertexToPartition(K vertex) {
+        // Called for every message and edge, so only one call in PARTITION_TIMING_SAMPLE is timed; the counter
+        // is not synchronized, as a lost increment only shifts which call is timed
+        if ((++partitionCalls & (PARTITION_TIMING_SAMPLE - 1)) != 0) {
+            return partitioner.partition(vertex, numPartitions);
+        }
+        long startTime = System.nanoTime();
+        int partition = partitioner.partition(vertex, numPartitions);
+        metrics.partitioned(System.nanoTime() - startTime, PARTITION_TIMING_SAMPLE);
         return partition;
     }
 
@@ -994,13 +2088,21 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
                                          Map<TopicPartition, Long> positions,
                                          Function<TopicPartition, Long> lastWrittenOffsets) {
         Set<TopicPartition> partitions = localPartitions(consumer, topic);
-        Map<TopicPartition, Long> pos;
-        if (positions != null) {
-            pos = partitions.stream()
-                .collect(Collectors.toMap(Function.identity(), tp -> positions.getOrDefault(tp, 0L)));
-        } else {
-            pos = positions(consumer, partitions);
-        }
+        Map<TopicPartition, Long> pos = positions != null
+            ? positions(positions, partitions)
+            : positions(consumer, partitions);
+        return isSynced(topic, superstep, pos, endOffsets(consumer, partitions, lastWrittenOffsets));
+    }
+
+    private static Map<TopicPartition, Long> positions(Map<TopicPartition, Long> positions,
+                                                       Set<TopicPartition> partitions) {
+        return partitions.stream()
+            .collect(Collectors.toMap(Function.identity(), tp -> positions.getOrDefault(tp, 0L)));
+    }
+
+    private static Map<TopicPartition, Long> endOffsets(Consumer<byte[], byte[]> consumer,
+                                                        Set<TopicPartition> partitions,
+                                                        Function<TopicPartition, Long> lastWrittenOffsets) {
         Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions);
 
         // Consumer end offsets may be stale; use last written offset if available
@@ -1012,7 +2114,11 @@ public class PregelComputation<K, VV, EV, Message> implements Closeable {
                 }
             }
         }
+        return endOffsets;
+    }
 
+    private static boolean isSynced(String topic, int superstep,
+                                    Map<TopicPartition, Long> pos, Map<TopicPartition, Long> endOffsets) {
         boolean synced = endOffsets.equals(pos);
         if (synced) {
             log.debug("Step {}, synced Topic {}, end {}", superstep, topic, endOffsets);
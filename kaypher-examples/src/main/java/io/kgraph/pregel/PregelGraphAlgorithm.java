@@ -26,6 +26,7 @@ import java.util.concurrent.CompletableFuture;
 
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.config.TopicConfig;
 import org.apache.kafka.streams.KafkaStreams;
 import org.apache.kafka.streams.KeyValue;
 import org.apache.kafka.streams.StreamsBuilder;
@@ -174,6 +175,8 @@ public class PregelGraphAlgorithm<K, VV, EV, Message>
     public GraphAlgorithmState<Void> configure(StreamsBuilder builder, Properties streamsConfig) {
         ClientUtils.createTopic(solutionSetTopic, numPartitions, replicationFactor, streamsConfig);
         ClientUtils.createTopic(workSetTopic, numPartitions, replicationFactor, streamsConfig);
+        ClientUtils.createTopic(computation.aggregatesTopic(), 1, replicationFactor,
+            Collections.singletonMap(TopicConfig.CLEANUP_POLICY_CONFIG, TopicConfig.CLEANUP_POLICY_COMPACT), streamsConfig);
 
         computation.prepare(builder, streamsConfig);
 
@@ -196,6 +199,23 @@ public class PregelGraphAlgorithm<K, VV, EV, Message>
             state.runningTime(), computation.previousAggregates(state.superstep()), futureResult);
     }
 
+    /**
+     * Resume from the result of the previous run after the graph topics changed, see
+     * {@link PregelComputation#runIncremental}.  The compute function must be an {@link IncrementalComputeFunction}.
+     *
+     * @param graphOffsets the last written offsets of the updated graph, or null to seed the changes read so far
+     * @param maxIterations the maximum number of supersteps to compute after the previous run
+     * @return the state of the computation
+     */
+    public GraphAlgorithmState<KTable<K, VV>> runIncremental(Map<TopicPartition, Long> graphOffsets, int maxIterations) {
+        CompletableFuture<KTable<K, VV>> futureResult = new CompletableFuture<>();
+
+        PregelState state = computation.runIncremental(graphOffsets, maxIterations, futureResult);
+
+        return new GraphAlgorithmState<>(streams, state.state(), state.superstep(),
+            state.runningTime(), computation.previousAggregates(state.superstep()), futureResult);
+    }
+
     @Override
     public GraphAlgorithmState<KTable<K, VV>> state() {
         PregelState state = computation.state();
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.MeasurableStat;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Total;
+import org.apache.kafka.common.metrics.stats.Value;
+import org.apache.kafka.common.utils.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-superstep metrics of a Pregel computation, published via JMX and as a summary log event
+ * at each barrier transition.
+ *
+ * <p>Each partition collects its {@link SuperstepStats} while a superstep runs, and publishes them
+ * once the superstep is over.  The last value of each partition, the total of each worker across
+ * supersteps, the edge-cut ratio of each worker, the superstep time and aggregator reduce time of the
+ * computation, and the time this instance spent mapping vertices to partitions are registered under the JMX
+ * domain {@value #JMX_PREFIX}.
+ *
+ * <p>The work skew of each worker is the compute and send time of its busiest partition in a superstep over
+ * that of its median partition, which shows when a few high-degree vertices hold up the barrier.
+ */
+public class PregelMetrics implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PregelMetrics.class);
+
+    public static final String JMX_PREFIX = "io.kgraph.pregel";
+
+    private static final String COMPUTATION_GROUP = "pregel-metrics";
+    private static final String WORKER_GROUP = "pregel-worker-metrics";
+    private static final String PARTITION_GROUP = "pregel-partition-metrics";
+
+    private final String applicationId;
+    private final Metrics metrics;
+    private final Map<Integer, Map<Integer, SuperstepStats>> stats = new ConcurrentHashMap<>();
+    private final LongAdder totalEdges = new LongAdder();
+    private final LongAdder totalCutEdges = new LongAdder();
+    private final LongAdder partitionTimeNanos = new LongAdder();
+    private final LongAdder partitionCount = new LongAdder();
+    // The compute and send time of the partitions of this instance, by superstep
+    private final Map<Integer, Map<Integer, Long>> work = new ConcurrentHashMap<>();
+
+    public PregelMetrics(String applicationId) {
+        this.applicationId = applicationId;
+        this.metrics = new Metrics(new MetricConfig(),
+            Collections.singletonList(new JmxReporter(JMX_PREFIX)), Time.SYSTEM);
+    }
+
+    public Map<MetricName, ? extends Metric> metrics() {
+        return metrics.metrics();
+    }
+
+    /**
+     * The stats of a partition in the given superstep.
+     */
+    public SuperstepStats stats(int superstep, int partition) {
+        return stats.computeIfAbsent(superstep, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(partition, k -> new SuperstepStats());
+    }
+
+    /**
+     * Publish and discard the stats of a partition in the given superstep, after its barrier.
+     */
+    public void publish(int superstep, int partition, String worker) {
+        Map<Integer, SuperstepStats> stepStats = stats.get(superstep);
+        SuperstepStats partitionStats = stepStats != null ? stepStats.remove(partition) : null;
+        if (stepStats != null && stepStats.isEmpty()) {
+            stats.remove(superstep);
+        }
+        if (partitionStats == null) {
+            return;
+        }
+        long barrierWaitMs = partitionStats.doneTimeMs > 0L
+            ? Math.max(0L, System.currentTimeMillis() - partitionStats.doneTimeMs) : 0L;
+
+        Map<String, Long> values = new HashMap<>();
+        values.put("active-vertices", partitionStats.activeVertices.sum());
+        values.put("messages-sent", partitionStats.messagesSent.sum());
+        values.put("messages-received", partitionStats.messagesReceived.sum());
+        values.put("bytes-produced", partitionStats.bytesProduced.sum());
+        values.put("compute-time-ms", TimeUnit.NANOSECONDS.toMillis(partitionStats.computeNanos.sum()));
+        values.put("send-time-ms", TimeUnit.NANOSECONDS.toMillis(partitionStats.sendNanos.sum()));
+        values.put("barrier-wait-time-ms", barrierWaitMs);
+        values.put("store-reads", partitionStats.storeReads.sum());
+        values.put("store-writes", partitionStats.storeWrites.sum());
+        values.put("edges", partitionStats.edges.sum());
+        values.put("cut-edges", partitionStats.cutEdges.sum());
+
+        Map<String, String> partitionTags = new HashMap<>();
+        partitionTags.put("application-id", applicationId);
+        partitionTags.put("worker", worker);
+        partitionTags.put("partition", String.valueOf(partition));
+        Map<String, String> workerTags = new HashMap<>();
+        workerTags.put("application-id", applicationId);
+        workerTags.put("worker", worker);
+        for (Map.Entry<String, Long> entry : values.entrySet()) {
+            String name = entry.getKey();
+            sensor(name, PARTITION_GROUP, partitionTags, new Value()).record(entry.getValue());
+            sensor(name + "-total", WORKER_GROUP, workerTags, new Total()).record(entry.getValue());
+        }
+        recordEdgeCut(worker, values.get("edges"), values.get("cut-edges"));
+        recordPartitioning();
+        double workSkew = recordWorkSkew(superstep, partition, workerTags,
+            partitionStats.computeNanos.sum() + partitionStats.sendNanos.sum());
+
+        log.info("Pregel superstep summary: application={} superstep={} worker={} partition={} "
+                + "activeVertices={} messagesSent={} messagesReceived={} bytesProduced={} computeTimeMs={} "
+                + "sendTimeMs={} barrierWaitTimeMs={} storeReads={} storeWrites={} edges={} cutEdges={} workSkew={}",
+            applicationId, superstep, worker, partition,
+            values.get("active-vertices"), values.get("messages-sent"), values.get("messages-received"),
+            values.get("bytes-produced"), values.get("compute-time-ms"), values.get("send-time-ms"),
+            values.get("barrier-wait-time-ms"), values.get("store-reads"), values.get("store-writes"),
+            values.get("edges"), values.get("cut-edges"), workSkew);
+    }
+
+    private double recordWorkSkew(int superstep, int partition, Map<String, String> workerTags, long workNanos) {
+        Map<Integer, Long> stepWork = work.computeIfAbsent(superstep, k -> new ConcurrentHashMap<>());
+        stepWork.put(partition, workNanos);
+        work.keySet().removeIf(step -> step < superstep - 1);
+        double skew = skew(stepWork.values().stream().mapToLong(Long::longValue).toArray());
+        sensor("work-skew", WORKER_GROUP, workerTags, new Value()).record(skew);
+        return skew;
+    }
+
+    /**
+     * The work of the busiest partition over that of the median one, or 1 if there are no partitions.
+     */
+    public static double skew(long[] work) {
+        if (work.length == 0) {
+            return 1.0;
+        }
+        long[] sorted = work.clone();
+        Arrays.sort(sorted);
+        long median = sorted[(sorted.length - 1) / 2];
+        return (double) sorted[sorted.length - 1] / Math.max(median, 1L);
+    }
+
+    /**
+     * The fraction of the edges of the partitions of this instance whose target lives in another partition,
+     * as counted in the first superstep.
+     */
+    public double edgeCutRatio() {
+        long edges = totalEdges.sum();
+        return edges > 0 ? (double) totalCutEdges.sum() / edges : 0.0;
+    }
+
+    private void recordEdgeCut(String worker, long edges, long cutEdges) {
+        if (edges == 0) {
+            return;
+        }
+        totalEdges.add(edges);
+        totalCutEdges.add(cutEdges);
+        Map<String, String> workerTags = new HashMap<>();
+        workerTags.put("application-id", applicationId);
+        workerTags.put("worker", worker);
+        double ratio = edgeCutRatio();
+        sensor("edge-cut-ratio", WORKER_GROUP, workerTags, new Value()).record(ratio);
+        log.info("Pregel edge cut: application={} worker={} edges={} cutEdges={} edgeCutRatio={}",
+            applicationId, worker, totalEdges.sum(), totalCutEdges.sum(), ratio);
+    }
+
+    /**
+     * Count the mappings of vertices to their partitions, of which one was timed.  The time is only added up here
+     * and recorded when a partition publishes its stats.
+     *
+     * @param partitionNanos the time of the timed mapping
+     * @param count the number of mappings that the timed one stands for
+     */
+    public void partitioned(long partitionNanos, int count) {
+        partitionTimeNanos.add(partitionNanos * count);
+        partitionCount.add(count);
+    }
+
+    /**
+     * The estimated total time this instance spent mapping vertices to partitions.
+     */
+    public long partitionTimeNanos() {
+        return partitionTimeNanos.sum();
+    }
+
+    /**
+     * The number of times this instance mapped a vertex to a partition, rounded to the sampled mappings.
+     */
+    public long partitionCount() {
+        return partitionCount.sum();
+    }
+
+    private void recordPartitioning() {
+        Map<String, String> tags = Collections.singletonMap("application-id", applicationId);
+        sensor("partition-time-ms", COMPUTATION_GROUP, tags, new Value())
+            .record(TimeUnit.NANOSECONDS.toMillis(partitionTimeNanos.sum()));
+        sensor("partition-count", COMPUTATION_GROUP, tags, new Value()).record(partitionCount.sum());
+    }
+
+    /**
+     * Publish the barrier transition of the computation from one superstep to the next.
+     */
+    public void publishSuperstep(int superstep, long superstepTimeMs, long aggregatorReduceNanos) {
+        Map<String, String> tags = Collections.singletonMap("application-id", applicationId);
+        long aggregatorReduceMs = TimeUnit.NANOSECONDS.toMillis(aggregatorReduceNanos);
+        sensor("superstep", COMPUTATION_GROUP, tags, new Value()).record(superstep);
+        sensor("superstep-time-ms", COMPUTATION_GROUP, tags, new Value()).record(superstepTimeMs);
+        sensor("aggregator-reduce-time-ms", COMPUTATION_GROUP, tags, new Value()).record(aggregatorReduceMs);
+        log.info("Pregel superstep barrier: application={} superstep={} superstepTimeMs={} aggregatorReduceTimeMs={}",
+            applicationId, superstep, superstepTimeMs, aggregatorReduceMs);
+    }
+
+    // Only called once per partition and superstep, so synchronizing is cheap
+    private synchronized Sensor sensor(String name, String group, Map<String, String> tags, MeasurableStat stat) {
+        String sensorName = group + "." + name + "." + tags;
+        Sensor sensor = metrics.getSensor(sensorName);
+        if (sensor == null) {
+            sensor = metrics.sensor(sensorName);
+            sensor.add(metrics.metricName(name, group, tags), stat);
+        }
+        return sensor;
+    }
+
+    @Override
+    public void close() {
+        metrics.close();
+    }
+
+    /**
+     * The counters of a partition in a superstep.
+     */
+    public static class SuperstepStats {
+        final LongAdder activeVertices = new LongAdder();
+        final LongAdder messagesSent = new LongAdder();
+        final LongAdder messagesReceived = new LongAdder();
+        final LongAdder bytesProduced = new LongAdder();
+        final LongAdder computeNanos = new LongAdder();
+        final LongAdder sendNanos = new LongAdder();
+        final LongAdder storeReads = new LongAdder();
+        final LongAdder storeWrites = new LongAdder();
+        // Outgoing edges of the active vertices, and those whose target is in another partition
+        final LongAdder edges = new LongAdder();
+        final LongAdder cutEdges = new LongAdder();
+        // When the partition finished sending, so the rest of the superstep is spent at the barrier
+        volatile long doneTimeMs;
+    }
+}
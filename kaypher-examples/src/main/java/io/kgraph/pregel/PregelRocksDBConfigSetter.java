@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.WriteBufferManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Configures the RocksDB stores of a Pregel computation by the role of each store, and lets all of them
+ * share one block cache per JVM.  The memtables of all stores are charged to the same cache by a write
+ * buffer manager, which flushes memtables once they hold {@code pregel.rocksdb.total.write.buffer.bytes}
+ * together, so that the blocks and memtables stay within the capacity of the cache, whatever the number of
+ * partitions.  The capacity is not strictly enforced, and the memory used by iterators is not charged to it.
+ *
+ * <p>The work set store is written once per message and read once per vertex at the barrier, so it gets
+ * large write buffers, universal compaction and no bloom filter.  The vertices, edges and solution set
+ * stores are read by point lookups, so they get bloom filters and level compaction.  The defaults of each
+ * role can be overridden with {@code pregel.rocksdb.<role>.write.buffer.bytes},
+ * {@code pregel.rocksdb.<role>.bloom.filter.bits} (0 for none) and
+ * {@code pregel.rocksdb.<role>.compaction.style}, where the role is one of {@code workset},
+ * {@code solutionset}, {@code vertices}, {@code edges}, {@code checkpoint} and {@code default}.
+ *
+ * <p>{@link PregelComputation#prepare} installs this config setter unless the streams config names another
+ * one, which then applies to all stores.
+ */
+public class PregelRocksDBConfigSetter implements RocksDBConfigSetter {
+    private static final Logger log = LoggerFactory.getLogger(PregelRocksDBConfigSetter.class);
+
+    public static final String BLOCK_CACHE_BYTES = "pregel.rocksdb.block.cache.bytes";
+    public static final String TOTAL_WRITE_BUFFER_BYTES = "pregel.rocksdb.total.write.buffer.bytes";
+
+    private static final String PREFIX = "pregel.rocksdb.";
+    private static final String WRITE_BUFFER_BYTES = ".write.buffer.bytes";
+    private static final String BLOOM_FILTER_BITS = ".bloom.filter.bits";
+    private static final String COMPACTION_STYLE = ".compaction.style";
+
+    private static final long DEFAULT_BLOCK_CACHE_BYTES = 128 * 1024 * 1024L;
+    private static final long DEFAULT_TOTAL_WRITE_BUFFER_BYTES = 64 * 1024 * 1024L;
+
+    enum StoreRole {
+        WORKSET(32 * 1024 * 1024L, 4, 0, CompactionStyle.UNIVERSAL, "localworkSetStore-"),
+        // The local store of the computation, and the store of the solution set table
+        SOLUTIONSET(16 * 1024 * 1024L, 3, 10, CompactionStyle.LEVEL, "localSolutionSetStore-", "solutionSetStore-"),
+        VERTICES(8 * 1024 * 1024L, 2, 10, CompactionStyle.LEVEL, "verticesStore-"),
+        EDGES(8 * 1024 * 1024L, 2, 10, CompactionStyle.LEVEL, "edgesStore-"),
+        CHECKPOINT(16 * 1024 * 1024L, 2, 0, CompactionStyle.UNIVERSAL, "localCheckpointStore-"),
+        DEFAULT(16 * 1024 * 1024L, 3, 10, CompactionStyle.LEVEL);
+
+        private final long writeBufferBytes;
+        private final int maxWriteBuffers;
+        private final int bloomFilterBits;
+        private final CompactionStyle compactionStyle;
+        private final String[] storePrefixes;
+
+        StoreRole(long writeBufferBytes, int maxWriteBuffers, int bloomFilterBits,
+                  CompactionStyle compactionStyle, String... storePrefixes) {
+            this.writeBufferBytes = writeBufferBytes;
+            this.maxWriteBuffers = maxWriteBuffers;
+            this.bloomFilterBits = bloomFilterBits;
+            this.compactionStyle = compactionStyle;
+            this.storePrefixes = storePrefixes;
+        }
+
+        static StoreRole of(String storeName) {
+            for (StoreRole role : values()) {
+                for (String storePrefix : role.storePrefixes) {
+                    if (storeName.startsWith(storePrefix)) {
+                        return role;
+                    }
+                }
+            }
+            return DEFAULT;
+        }
+
+        String configPrefix() {
+            return PREFIX + name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // The block cache and write buffer manager shared by the open stores, and the filters of each store's options
+    private static Cache blockCache;
+    private static WriteBufferManager writeBufferManager;
+    private static int openStores;
+    private static final Map<Options, BloomFilter> filters = new IdentityHashMap<>();
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs) {
+        StoreRole role = StoreRole.of(storeName);
+        String prefix = role.configPrefix();
+        long writeBufferBytes = longConfig(configs, prefix + WRITE_BUFFER_BYTES, role.writeBufferBytes);
+        int bloomFilterBits = (int) longConfig(configs, prefix + BLOOM_FILTER_BITS, role.bloomFilterBits);
+        Object compactionStyle = configs.get(prefix + COMPACTION_STYLE);
+
+        options.setWriteBufferSize(writeBufferBytes);
+        options.setMaxWriteBufferNumber(role.maxWriteBuffers);
+        options.setCompactionStyle(compactionStyle != null
+            ? CompactionStyle.valueOf(compactionStyle.toString().toUpperCase(Locale.ROOT)) : role.compactionStyle);
+        if (options.compactionStyle() == CompactionStyle.LEVEL) {
+            options.setLevelCompactionDynamicLevelBytes(true);
+        }
+
+        BlockBasedTableConfig tableConfig = (BlockBasedTableConfig) options.tableFormatConfig();
+        synchronized (PregelRocksDBConfigSetter.class) {
+            if (blockCache == null) {
+                blockCache = new LRUCache(longConfig(configs, BLOCK_CACHE_BYTES, DEFAULT_BLOCK_CACHE_BYTES));
+                writeBufferManager = new WriteBufferManager(
+                    longConfig(configs, TOTAL_WRITE_BUFFER_BYTES, DEFAULT_TOTAL_WRITE_BUFFER_BYTES), blockCache);
+            }
+            openStores++;
+            tableConfig.setBlockCache(blockCache);
+            options.setWriteBufferManager(writeBufferManager);
+            // Index and filter blocks are charged to the shared cache, to keep the memory bounded
+            tableConfig.setCacheIndexAndFilterBlocks(true);
+            tableConfig.setPinL0FilterAndIndexBlocksInCache(true);
+            if (bloomFilterBits > 0) {
+                BloomFilter filter = new BloomFilter(bloomFilterBits, false);
+                filters.put(options, filter);
+                tableConfig.setFilter(filter);
+            } else {
+                tableConfig.setFilter(null);
+            }
+        }
+        options.setTableFormatConfig(tableConfig);
+        log.debug("Configured store {} as {}: writeBufferBytes={} bloomFilterBits={} compactionStyle={}",
+            storeName, role, writeBufferBytes, bloomFilterBits, options.compactionStyle());
+    }
+
+    @Override
+    public void close(String storeName, Options options) {
+        synchronized (PregelRocksDBConfigSetter.class) {
+            BloomFilter filter = filters.remove(options);
+            if (filter != null) {
+                filter.close();
+            }
+            if (--openStores == 0 && blockCache != null) {
+                writeBufferManager.close();
+                writeBufferManager = null;
+                blockCache.close();
+                blockCache = null;
+            }
+        }
+    }
+
+    private static long longConfig(Map<String, Object> configs, String name, long defaultValue) {
+        Object value = configs.get(name);
+        return value != null ? Long.parseLong(value.toString()) : defaultValue;
+    }
+}
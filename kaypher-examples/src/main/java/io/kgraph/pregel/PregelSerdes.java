@@ -0,0 +1,429 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.DoubleSerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+import io.kgraph.GraphSerialized;
+import io.kgraph.utils.KryoSerde;
+import io.kgraph.utils.KryoUtils;
+import io.vavr.Tuple3;
+import io.vavr.Tuple4;
+
+/**
+ * Serdes for the work set, solution set and grouped edges of a Pregel computation.  For {@code Long} vertex ids
+ * with {@code Long} or {@code Double} values, the records are written without class tags, with integers as
+ * zig-zag varints and doubles as 8 bytes; other types are written with Kryo.  Since the type of the messages is
+ * not part of the {@link GraphSerialized}, each list of messages is preceded by a byte telling whether it holds
+ * longs, doubles, or anything else, which is written with Kryo.  The grouped edges are read as a
+ * {@link LongAdjacency}, which decodes them lazily.
+ */
+public final class PregelSerdes {
+
+    private static final byte MESSAGES_NULL = 0;
+    private static final byte MESSAGES_LONG = 1;
+    private static final byte MESSAGES_DOUBLE = 2;
+    private static final byte MESSAGES_KRYO = 3;
+
+    private static final byte EDGES_DELTA = 0;
+    private static final byte EDGES_KRYO = 1;
+
+    private PregelSerdes() {
+    }
+
+    /**
+     * The serde of the work set values, which are the superstep, the sender and the messages.
+     */
+    public static <K, VV, EV, Message> Serde<Tuple3<Integer, K, List<Message>>> workSet(
+        GraphSerialized<K, VV, EV> serialized
+    ) {
+        if (!isLong(serialized.keySerde())) {
+            return new KryoSerde<>();
+        }
+        return new CompactSerde<>(PregelSerdes::writeWorkSet, PregelSerdes::readWorkSet);
+    }
+
+    /**
+     * The serde of the solution set values, which are the superstep and value before and after the last change.
+     */
+    public static <K, VV, EV> Serde<Tuple4<Integer, VV, Integer, VV>> solutionSet(
+        GraphSerialized<K, VV, EV> serialized
+    ) {
+        Codec<VV> codec = codec(serialized.vertexValueSerde());
+        if (codec == null) {
+            return new KryoSerde<>();
+        }
+        return new CompactSerde<>(data -> writeSolutionSet(data, codec), data -> readSolutionSet(data, codec));
+    }
+
+    /**
+     * The serde of the outgoing edges of a vertex, keyed by target.  The edges must be written with this serde
+     * when the graph is loaded.
+     */
+    public static <K, VV, EV> Serde<Map<K, EV>> edgesGroupedBySource(GraphSerialized<K, VV, EV> serialized) {
+        Codec<EV> codec = codec(serialized.edgeValueSerde());
+        if (!isLong(serialized.keySerde()) || codec == null) {
+            return new KryoSerde<>();
+        }
+        return new CompactSerde<>(data -> writeEdges(data, codec), data -> readEdges(data, codec));
+    }
+
+    private static boolean isLong(Serde<?> serde) {
+        return serde.serializer() instanceof LongSerializer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Codec<T> codec(Serde<T> serde) {
+        Serializer<T> serializer = serde.serializer();
+        if (serializer instanceof LongSerializer) {
+            return (Codec<T>) LONG_CODEC;
+        } else if (serializer instanceof DoubleSerializer) {
+            return (Codec<T>) DOUBLE_CODEC;
+        }
+        return null;
+    }
+
+    private static <K, Message> byte[] writeWorkSet(Tuple3<Integer, K, List<Message>> value) {
+        Writer writer = new Writer();
+        writer.writeVarInt(value._1);
+        writer.writeVarLong((Long) value._2);
+        List<Message> messages = value._3;
+        if (messages == null) {
+            writer.writeByte(MESSAGES_NULL);
+        } else if (messages.stream().allMatch(m -> m instanceof Long)) {
+            writer.writeByte(MESSAGES_LONG);
+            writer.writeVarInt(messages.size());
+            for (Message message : messages) {
+                writer.writeVarLong((Long) message);
+            }
+        } else if (messages.stream().allMatch(m -> m instanceof Double)) {
+            writer.writeByte(MESSAGES_DOUBLE);
+            writer.writeVarInt(messages.size());
+            for (Message message : messages) {
+                writer.writeDouble((Double) message);
+            }
+        } else {
+            writer.writeByte(MESSAGES_KRYO);
+            writer.writeBytes(KryoUtils.serialize(messages));
+        }
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, Message> Tuple3<Integer, K, List<Message>> readWorkSet(byte[] data) {
+        Reader reader = new Reader(data);
+        int superstep = reader.readVarInt();
+        K sender = (K) (Long) reader.readVarLong();
+        byte type = reader.readByte();
+        List<Message> messages;
+        switch (type) {
+            case MESSAGES_NULL:
+                messages = null;
+                break;
+            case MESSAGES_LONG: {
+                int size = reader.readVarInt();
+                messages = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    messages.add((Message) (Long) reader.readVarLong());
+                }
+                break;
+            }
+            case MESSAGES_DOUBLE: {
+                int size = reader.readVarInt();
+                messages = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    messages.add((Message) (Double) reader.readDouble());
+                }
+                break;
+            }
+            case MESSAGES_KRYO:
+                messages = KryoUtils.deserialize(reader.readRemaining());
+                break;
+            default:
+                throw new SerializationException("Unknown message type " + type);
+        }
+        return new Tuple3<>(superstep, sender, messages);
+    }
+
+    private static <VV> byte[] writeSolutionSet(Tuple4<Integer, VV, Integer, VV> value, Codec<VV> codec) {
+        Writer writer = new Writer();
+        writer.writeByte((byte) ((value._2 != null ? 1 : 0) | (value._4 != null ? 2 : 0)));
+        writer.writeVarInt(value._1);
+        if (value._2 != null) {
+            codec.write(writer, value._2);
+        }
+        writer.writeVarInt(value._3);
+        if (value._4 != null) {
+            codec.write(writer, value._4);
+        }
+        return writer.toByteArray();
+    }
+
+    private static <VV> Tuple4<Integer, VV, Integer, VV> readSolutionSet(byte[] data, Codec<VV> codec) {
+        Reader reader = new Reader(data);
+        byte present = reader.readByte();
+        int superstep = reader.readVarInt();
+        VV value = (present & 1) != 0 ? codec.read(reader) : null;
+        int newSuperstep = reader.readVarInt();
+        VV newValue = (present & 2) != 0 ? codec.read(reader) : null;
+        return new Tuple4<>(superstep, value, newSuperstep, newValue);
+    }
+
+    private static <K, EV> byte[] writeEdges(Map<K, EV> edges, Codec<EV> codec) {
+        Writer writer = new Writer();
+        if (!(edges instanceof LongAdjacency) && edges.containsValue(null)) {
+            writer.writeByte(EDGES_KRYO);
+            writer.writeBytes(KryoUtils.serialize(edges));
+            return writer.toByteArray();
+        }
+        writer.writeByte(EDGES_DELTA);
+        LongAdjacency.write(writer, edges, codec);
+        return writer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, EV> Map<K, EV> readEdges(byte[] data, Codec<EV> codec) {
+        Reader reader = new Reader(data);
+        byte type = reader.readByte();
+        if (type == EDGES_KRYO) {
+            return KryoUtils.deserialize(reader.readRemaining());
+        } else if (type != EDGES_DELTA) {
+            throw new SerializationException("Unknown edges type " + type);
+        }
+        return (Map<K, EV>) LongAdjacency.read(reader, codec);
+    }
+
+    private static final class CompactSerde<T> implements Serde<T> {
+        private final Serializer<T> serializer;
+        private final Deserializer<T> deserializer;
+
+        CompactSerde(Function<T, byte[]> write, Function<byte[], T> read) {
+            this.serializer = new Serializer<T>() {
+                @Override
+                public void configure(Map<String, ?> configs, boolean isKey) {
+                }
+
+                @Override
+                public byte[] serialize(String topic, T data) {
+                    return data != null ? write.apply(data) : null;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            this.deserializer = new Deserializer<T>() {
+                @Override
+                public void configure(Map<String, ?> configs, boolean isKey) {
+                }
+
+                @Override
+                public T deserialize(String topic, byte[] data) {
+                    return data != null ? read.apply(data) : null;
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        }
+
+        @Override
+        public void configure(Map<String, ?> configs, boolean isKey) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Serializer<T> serializer() {
+            return serializer;
+        }
+
+        @Override
+        public Deserializer<T> deserializer() {
+            return deserializer;
+        }
+    }
+
+    interface Codec<T> {
+        void write(Writer writer, T value);
+
+        T read(Reader reader);
+    }
+
+    private static final Codec<Long> LONG_CODEC = new Codec<Long>() {
+        @Override
+        public void write(Writer writer, Long value) {
+            writer.writeVarLong(value);
+        }
+
+        @Override
+        public Long read(Reader reader) {
+            return reader.readVarLong();
+        }
+    };
+
+    private static final Codec<Double> DOUBLE_CODEC = new Codec<Double>() {
+        @Override
+        public void write(Writer writer, Double value) {
+            writer.writeDouble(value);
+        }
+
+        @Override
+        public Double read(Reader reader) {
+            return reader.readDouble();
+        }
+    };
+
+    static final class Writer {
+        private byte[] buffer = new byte[32];
+        private int position;
+
+        void writeByte(byte b) {
+            ensureCapacity(1);
+            buffer[position++] = b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeBytes(bytes, 0, bytes.length);
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, buffer, position, length);
+            position += length;
+        }
+
+        /**
+         * Write a zig-zag encoded varint, so that small negative values are short as well.
+         */
+        void writeVarInt(int value) {
+            writeVarLong(value);
+        }
+
+        void writeVarLong(long value) {
+            writeUnsignedVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeUnsignedVarLong(long v) {
+            ensureCapacity(10);
+            while ((v & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buffer[position++] = (byte) v;
+        }
+
+        void writeDouble(double value) {
+            ensureCapacity(8);
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (bits >>> shift);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensureCapacity(int n) {
+            if (position + n > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + n));
+            }
+        }
+    }
+
+    static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this(buffer, 0);
+        }
+
+        Reader(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        byte[] buffer() {
+            return buffer;
+        }
+
+        int position() {
+            return position;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long v = readUnsignedVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        long readUnsignedVarLong() {
+            long v = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (shift > 63) {
+                    throw new SerializationException("Malformed varint");
+                }
+                b = buffer[position++];
+                v |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return v;
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        byte[] readRemaining() {
+            byte[] bytes = Arrays.copyOfRange(buffer, position, buffer.length);
+            position = buffer.length;
+            return bytes;
+        }
+    }
+}
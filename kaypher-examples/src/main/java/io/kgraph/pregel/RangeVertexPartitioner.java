@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * A partitioner that splits a range of numeric vertex ids into contiguous, equally sized ranges,
+ * so that vertices with nearby ids, which are often neighbors, are placed in the same partition.
+ * Ids outside of the configured range are placed in the first or last partition.
+ *
+ * @param <K> The type of the vertex id.
+ */
+public class RangeVertexPartitioner<K extends Number> implements VertexPartitioner<K> {
+
+    public static final String RANGE_MIN = "pregel.partitioner.range.min";
+    public static final String RANGE_MAX = "pregel.partitioner.range.max";
+
+    private long min;
+    private long max;
+
+    @Override
+    public void configure(Map<String, ?> configs, Serializer<K> keySerializer) {
+        this.min = longConfig(configs, RANGE_MIN);
+        this.max = longConfig(configs, RANGE_MAX);
+        if (max < min) {
+            throw new IllegalArgumentException(RANGE_MAX + " must not be less than " + RANGE_MIN);
+        }
+    }
+
+    private static long longConfig(Map<String, ?> configs, String key) {
+        Object value = configs.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing config " + key);
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    @Override
+    public int partition(K vertex, int numPartitions) {
+        long id = vertex.longValue();
+        if (id <= min) {
+            return 0;
+        } else if (id >= max) {
+            return numPartitions - 1;
+        }
+        // Computed in floating point, since max - min + 1 may overflow
+        double fraction = ((double) id - min) / ((double) max - min + 1);
+        return Math.min(numPartitions - 1, (int) (fraction * numPartitions));
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import io.kgraph.pregel.PregelComputation.AggregatorWrapper;
+import io.kgraph.pregel.aggregators.Aggregator;
+import io.kgraph.utils.ClientUtils;
+
+/**
+ * The aggregators registered by a compute function, for the in-process engines.
+ */
+final class RegisteredAggregators {
+
+    private final Map<String, ?> configs;
+    private final Map<String, AggregatorWrapper<?>> registeredAggregators = new ConcurrentHashMap<>();
+
+    RegisteredAggregators(Map<String, ?> configs) {
+        this.configs = configs;
+    }
+
+    Map<String, AggregatorWrapper<?>> registered() {
+        return registeredAggregators;
+    }
+
+    Set<String> names() {
+        return registeredAggregators.keySet();
+    }
+
+    Map<String, Aggregator<?>> newAggregators() {
+        Set<Map.Entry<String, AggregatorWrapper<?>>> entries = registeredAggregators.entrySet();
+        return entries.stream()
+            .collect(Collectors.toMap(Map.Entry::getKey,
+                entry -> ClientUtils.getConfiguredInstance(entry.getValue().getAggregatorClass(), configs)));
+    }
+
+    /**
+     * Create the aggregators for the next superstep, starting with the persistent values of the previous one.
+     */
+    @SuppressWarnings("unchecked")
+    Map<String, Aggregator<?>> newAggregators(Map<String, ?> previousAggregates) {
+        Map<String, Aggregator<?>> aggregators = newAggregators();
+        for (Map.Entry<String, Aggregator<?>> entry : aggregators.entrySet()) {
+            String name = entry.getKey();
+            Aggregator<Object> aggregator = (Aggregator<Object>) entry.getValue();
+            Object value = previousAggregates.get(name);
+            if (value != null && registeredAggregators.get(name).isPersistent()) {
+                aggregator.aggregate(value);
+            }
+        }
+        return aggregators;
+    }
+
+    @SuppressWarnings("unchecked")
+    static void merge(Map<String, Aggregator<?>> result, Map<String, Aggregator<?>> element) {
+        for (Map.Entry<String, Aggregator<?>> entry : result.entrySet()) {
+            String name = entry.getKey();
+            Aggregator<Object> aggregator1 = (Aggregator<Object>) entry.getValue();
+            Aggregator<Object> aggregator2 = (Aggregator<Object>) element.get(name);
+            if (aggregator2 != null) {
+                aggregator1.aggregate(aggregator2.getAggregate());
+            }
+        }
+    }
+
+    static Map<String, ?> aggregates(Map<String, Aggregator<?>> aggregators) {
+        Map<String, Object> aggregates = new HashMap<>();
+        for (Map.Entry<String, Aggregator<?>> entry : aggregators.entrySet()) {
+            aggregates.put(entry.getKey(), entry.getValue().getAggregate());
+        }
+        return aggregates;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import io.kgraph.EdgeWithValue;
+import io.kgraph.VertexWithValue;
+
+/**
+ * A compute function whose work along the edges of a vertex can be split from the computation of the vertex,
+ * so that a {@link LocalPregelComputation} can spread the edges of high-degree vertices over mirrors in other
+ * partitions.  A vertex whose out-degree is above {@link LocalPregelComputation#MIRROR_DEGREE} is computed
+ * with {@link #compute} as usual but without its edges, after which {@link #scatter} is called for each of its
+ * edges, in parallel by the mirrors, with the new vertex value.  The messages sent by the mirrors are combined
+ * with the message combiner, if any, before they are received.
+ *
+ * <p>The result must not depend on whether a vertex is mirrored, so {@link #compute} must only use the edges
+ * for work that {@link #scatter} does for mirrored vertices.
+ *
+ * @param <K> The type of the vertex key (the vertex identifier).
+ * @param <VV> The type of the vertex value (the state of the vertex).
+ * @param <EV> The type of the values that are associated with the edges.
+ * @param <Message> The type of the message sent between vertices along the edges.
+ */
+public interface ScatterComputeFunction<K, VV, EV, Message> extends ComputeFunction<K, VV, EV, Message> {
+
+    /**
+     * Send a message along an edge of a mirrored vertex, or change the value of the edge.
+     *
+     * @param superstep the current superstep
+     * @param vertex the vertex, with the value computed in this superstep
+     * @param degree the out-degree of the vertex
+     * @param edge the edge
+     * @param cb a callback for sending a message along the edge or setting its value
+     */
+    void scatter(int superstep,
+                 VertexWithValue<K, VV> vertex,
+                 int degree,
+                 EdgeWithValue<K, EV> edge,
+                 ScatterCallback<K, EV, Message> cb);
+
+    interface ScatterCallback<K, EV, Message> {
+
+        void sendMessageTo(K target, Message message);
+
+        void setNewEdgeValue(EV value);
+    }
+}
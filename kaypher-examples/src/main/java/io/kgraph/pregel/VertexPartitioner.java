@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Maps a vertex to the partition that owns it.
+ *
+ * <p>The same partitioner must be used to load the graph with
+ * {@link io.kgraph.utils.GraphUtils#groupEdgesBySourceAndRepartition} and to run the computation,
+ * since the vertices, edges and messages of a vertex are co-partitioned.  A partitioner either computes
+ * the partition from the vertex id, or places the vertices while the graph is loaded; in the latter case
+ * the computation learns the placement from the vertices topic.
+ *
+ * @param <K> The type of the vertex id.
+ */
+public interface VertexPartitioner<K> {
+
+    /**
+     * Configure the partitioner.
+     *
+     * @param configs configuration parameters
+     * @param keySerializer the serializer of the vertex ids
+     */
+    default void configure(Map<String, ?> configs, Serializer<K> keySerializer) {
+    }
+
+    /**
+     * Compute the partition of a vertex.
+     *
+     * @param vertex the vertex id
+     * @param numPartitions the number of partitions
+     * @return the partition
+     */
+    int partition(K vertex, int numPartitions);
+
+    /**
+     * Place a vertex while the graph is loaded.
+     *
+     * @param vertex the vertex id
+     * @param neighbors the targets of the outgoing edges of the vertex, if known
+     * @param numPartitions the number of partitions
+     * @return the partition
+     */
+    default int place(K vertex, Collection<K> neighbors, int numPartitions) {
+        return partition(vertex, numPartitions);
+    }
+
+    /**
+     * Whether the partitions are decided by {@link #place} rather than computed from the vertex id.
+     *
+     * @return true if the placement must be learned from the vertices topic with {@link #placed}
+     */
+    default boolean isPlacementBased() {
+        return false;
+    }
+
+    /**
+     * Record the partition of a vertex that was placed when the graph was loaded.
+     *
+     * @param vertex the vertex id
+     * @param partition the partition
+     */
+    default void placed(K vertex, int partition) {
+    }
+}
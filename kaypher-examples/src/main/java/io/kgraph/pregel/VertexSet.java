@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of vertex ids, such as the active vertices of a partition in a superstep.  Long ids are kept
+ * in a {@link LongBitmap}; other ids fall back to a hash set.
+ *
+ * @param <K> The type of the vertex id.
+ */
+abstract class VertexSet<K> implements Iterable<K> {
+
+    /**
+     * Create a set for ids that are all {@code Long} if {@code longIds} is set.
+     *
+     * @param longIds whether the ids are {@code Long}
+     * @param concurrent whether the set is accessed from more than one thread
+     */
+    static <K> VertexSet<K> create(boolean longIds, boolean concurrent) {
+        if (longIds) {
+            return concurrent ? new SynchronizedLongVertexSet<>() : new LongVertexSet<>();
+        }
+        return new HashVertexSet<>(concurrent ? ConcurrentHashMap.newKeySet() : new HashSet<>());
+    }
+
+    abstract boolean add(K vertex);
+
+    abstract boolean remove(K vertex);
+
+    abstract boolean isEmpty();
+
+    abstract long size();
+
+    private static class LongVertexSet<K> extends VertexSet<K> {
+        private final LongBitmap bitmap = new LongBitmap();
+
+        @Override
+        boolean add(K vertex) {
+            return bitmap.add((Long) vertex);
+        }
+
+        @Override
+        boolean remove(K vertex) {
+            return bitmap.remove((Long) vertex);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return bitmap.isEmpty();
+        }
+
+        @Override
+        long size() {
+            return bitmap.cardinality();
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<K> iterator() {
+            return (Iterator<K>) (Iterator<?>) bitmap.iterator();
+        }
+    }
+
+    private static final class SynchronizedLongVertexSet<K> extends LongVertexSet<K> {
+
+        @Override
+        synchronized boolean add(K vertex) {
+            return super.add(vertex);
+        }
+
+        @Override
+        synchronized boolean remove(K vertex) {
+            return super.remove(vertex);
+        }
+
+        @Override
+        synchronized boolean isEmpty() {
+            return super.isEmpty();
+        }
+
+        @Override
+        synchronized long size() {
+            return super.size();
+        }
+    }
+
+    private static final class HashVertexSet<K> extends VertexSet<K> {
+        private final Set<K> set;
+
+        HashVertexSet(Set<K> set) {
+            this.set = set;
+        }
+
+        @Override
+        boolean add(K vertex) {
+            return set.add(vertex);
+        }
+
+        @Override
+        boolean remove(K vertex) {
+            return set.remove(vertex);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return set.isEmpty();
+        }
+
+        @Override
+        long size() {
+            return set.size();
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return set.iterator();
+        }
+    }
+}
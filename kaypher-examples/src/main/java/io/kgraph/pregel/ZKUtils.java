@@ -38,11 +38,15 @@ public class ZKUtils {
     public static final String GRAPHS_PATH = "/kafka-graphs";
     public static final String PREGEL_PATH = "/kafka-graphs/pregel-";
 
-    public static final String AGGREGATES = "aggregates";
     public static final String BARRIERS = "barriers";
+    public static final String CHECKPOINT = "checkpoint";
     public static final String GROUP = "group";
+    public static final String INCREMENTAL = "incremental";
     public static final String LEADER = "leader";
+    public static final String PROGRESS = "progress";
     public static final String READY = "ready";
+    public static final String RECOMPUTE = "recompute";
+    public static final String RESUME = "resume";
     public static final String SUPERSTEP = "superstep";
 
     public static CuratorFramework createCurator(String zookeeperConnect) {
@@ -190,17 +194,24 @@ public class ZKUtils {
     }
 
     public static void removeRoot(CuratorFramework curator, String id) throws Exception {
-        String path = PREGEL_PATH + id;
+        removePath(curator, PREGEL_PATH + id);
+    }
+
+    public static void removePath(CuratorFramework curator, String path) throws Exception {
         try {
-            log.debug("removing root {}", path);
+            log.debug("removing path {}", path);
             curator.delete().guaranteed().deletingChildrenIfNeeded().forPath(path);
         } catch (KeeperException.NoNodeException e) {
             // ignore
         }
     }
 
-    protected static String aggregatePath(String id, int superstep) {
-        return ZKPaths.makePath(PREGEL_PATH + id, AGGREGATES, String.valueOf(superstep));
+    protected static String barriersPath(String id) {
+        return ZKPaths.makePath(PREGEL_PATH + id, BARRIERS);
+    }
+
+    protected static String progressPath(String id) {
+        return ZKPaths.makePath(PREGEL_PATH + id, BARRIERS, PROGRESS);
     }
 
     protected static String barrierPath(String id, PregelState pregelState) {
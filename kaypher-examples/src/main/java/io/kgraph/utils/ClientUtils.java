@@ -177,7 +177,12 @@ public class ClientUtils {
     }
 
     public static void createTopic(String topic, int numPartitions, short replicationFactor, Properties props) {
-        NewTopic newTopic = new NewTopic(topic, numPartitions, replicationFactor);
+        createTopic(topic, numPartitions, replicationFactor, Collections.emptyMap(), props);
+    }
+
+    public static void createTopic(String topic, int numPartitions, short replicationFactor,
+                                   Map<String, String> topicConfigs, Properties props) {
+        NewTopic newTopic = new NewTopic(topic, numPartitions, replicationFactor).configs(topicConfigs);
         AdminClient adminClient = AdminClient.create(props);
         adminClient.createTopics(Collections.singletonList(newTopic));
         adminClient.close();
@@ -0,0 +1,480 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.DoubleFunction;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.Serializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.Edge;
+import io.kgraph.pregel.LongCsrGraph;
+
+/**
+ * Reads vertex and edge list files with numeric ids, such as the SNAP and LDBC data sets, without
+ * creating a String per line or token.  The file is memory-mapped and split into chunks at line
+ * boundaries, which are parsed in parallel.
+ *
+ * <p>A vertex line holds an id and an optional value, an edge line a source id, a target id and
+ * an optional value, separated by spaces, tabs or commas.  Columns after these are ignored, as are
+ * empty lines and lines starting with {@code #} or {@code %}.  Vertices and edges without a value
+ * get the given default value.
+ */
+public final class GraphFiles {
+    private static final Logger log = LoggerFactory.getLogger(GraphFiles.class);
+
+    // Keep each mapping well below the 2 GB limit of a MappedByteBuffer
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private GraphFiles() {
+    }
+
+    @FunctionalInterface
+    public interface VertexConsumer {
+        void accept(long id, double value);
+    }
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(long source, long target, double value);
+    }
+
+    /**
+     * Parse the vertices of a file.  The consumer is called concurrently from {@code parallelism} threads.
+     */
+    public static void forEachVertex(Path file, double defaultValue, int parallelism, VertexConsumer consumer)
+        throws IOException {
+        parse(file, parallelism, chunk -> {
+            parseVertices(chunk, defaultValue, consumer);
+            return null;
+        });
+    }
+
+    /**
+     * Parse the edges of a file.  The consumer is called concurrently from {@code parallelism} threads.
+     */
+    public static void forEachEdge(Path file, double defaultValue, int parallelism, EdgeConsumer consumer)
+        throws IOException {
+        parse(file, parallelism, chunk -> {
+            parseEdges(chunk, defaultValue, consumer);
+            return null;
+        });
+    }
+
+    public static <V> void verticesToTopic(
+        Path file,
+        double defaultValue,
+        DoubleFunction<V> valueMapper,
+        Serializer<Long> keySerializer,
+        Serializer<V> valueSerializer,
+        Properties props,
+        String topic,
+        int numPartitions,
+        short replicationFactor,
+        int parallelism
+    ) throws IOException {
+        ClientUtils.createTopic(topic, numPartitions, replicationFactor, props);
+        try (Producer<Long, V> producer = new KafkaProducer<>(props, keySerializer, valueSerializer)) {
+            forEachVertex(file, defaultValue, parallelism, (id, value) ->
+                producer.send(new ProducerRecord<>(topic, id, valueMapper.apply(value))));
+            producer.flush();
+        }
+    }
+
+    public static <V> void edgesToTopic(
+        Path file,
+        double defaultValue,
+        DoubleFunction<V> valueMapper,
+        Serializer<V> valueSerializer,
+        Properties props,
+        String topic,
+        int numPartitions,
+        short replicationFactor,
+        int parallelism
+    ) throws IOException {
+        ClientUtils.createTopic(topic, numPartitions, replicationFactor, props);
+        try (Producer<Edge<Long>, V> producer = new KafkaProducer<>(props, new KryoSerializer<>(), valueSerializer)) {
+            forEachEdge(file, defaultValue, parallelism, (source, target, value) ->
+                producer.send(new ProducerRecord<>(topic, new Edge<>(source, target), valueMapper.apply(value))));
+            producer.flush();
+        }
+    }
+
+    /**
+     * Read a graph into memory.  The vertices file may be null, in which case all vertices get the
+     * default vertex value.
+     */
+    public static LongCsrGraph toCsrGraph(
+        Path verticesFile,
+        Path edgesFile,
+        double defaultVertexValue,
+        double defaultEdgeValue,
+        int parallelism
+    ) throws IOException {
+        LongCsrGraph.Builder builder = LongCsrGraph.builder().defaultValue(defaultVertexValue);
+        if (verticesFile != null) {
+            List<Columns> vertices = parse(verticesFile, parallelism, chunk -> {
+                Columns columns = new Columns();
+                parseVertices(chunk, defaultVertexValue, (id, value) -> columns.add(id, 0L, value));
+                return columns;
+            });
+            for (Columns columns : vertices) {
+                for (int i = 0; i < columns.size; i++) {
+                    builder.addVertex(columns.sources[i], columns.values[i]);
+                }
+            }
+        }
+        List<Columns> edges = parse(edgesFile, parallelism, chunk -> {
+            Columns columns = new Columns();
+            parseEdges(chunk, defaultEdgeValue, columns::add);
+            return columns;
+        });
+        for (Columns columns : edges) {
+            for (int i = 0; i < columns.size; i++) {
+                builder.addEdge(columns.sources[i], columns.targets[i], columns.values[i]);
+            }
+        }
+        return builder.build();
+    }
+
+    private static final class Columns {
+        private long[] sources = new long[1024];
+        private long[] targets = new long[1024];
+        private double[] values = new double[1024];
+        private int size;
+
+        void add(long source, long target, double value) {
+            if (size == sources.length) {
+                sources = Arrays.copyOf(sources, size * 2);
+                targets = Arrays.copyOf(targets, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            sources[size] = source;
+            targets[size] = target;
+            values[size] = value;
+            size++;
+        }
+    }
+
+    /**
+     * A part of the file that starts at the beginning of a line and ends after the end of a line, or at the end of the file.
+     */
+    static final class Chunk {
+        final ByteBuffer buffer;
+        final long offset;
+
+        Chunk(ByteBuffer buffer, long offset) {
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Apply the function to the chunks of the file in parallel, and return its results in the order of the chunks.
+     */
+    static <T> List<T> parse(Path file, int parallelism, Function<Chunk, T> function) throws IOException {
+        long startMs = System.currentTimeMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int numChunks = (int) Math.max((long) Math.max(1, parallelism) * CHUNKS_PER_THREAD,
+                (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+            List<Long> boundaries = new ArrayList<>();
+            boundaries.add(0L);
+            for (int i = 1; i < numChunks; i++) {
+                long boundary = lineStart(channel, Math.max(boundaries.get(boundaries.size() - 1), size / numChunks * i));
+                if (boundary > boundaries.get(boundaries.size() - 1) && boundary < size) {
+                    boundaries.add(boundary);
+                }
+            }
+            boundaries.add(size);
+
+            List<Callable<T>> tasks = new ArrayList<>();
+            for (int i = 0; i < boundaries.size() - 1; i++) {
+                long start = boundaries.get(i);
+                long length = boundaries.get(i + 1) - start;
+                if (length > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Line too long in " + file + " at offset " + start);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                tasks.add(() -> function.apply(new Chunk(buffer, start)));
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())));
+            try {
+                List<T> results = new ArrayList<>();
+                for (Future<T> future : pool.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+                log.info("Parsed {} ({} bytes, {} chunks) in {} ms",
+                    file, size, tasks.size(), System.currentTimeMillis() - startMs);
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + file, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * The offset of the first line that starts at or after the given offset.
+     */
+    private static long lineStart(FileChannel channel, long offset) throws IOException {
+        if (offset == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset - 1;
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    static void parseVertices(Chunk chunk, double defaultValue, VertexConsumer consumer) {
+        Scanner scanner = new Scanner(chunk);
+        while (scanner.nextLine()) {
+            long id = scanner.nextLong();
+            double value = scanner.hasNext() ? scanner.nextDouble() : defaultValue;
+            consumer.accept(id, value);
+            scanner.skipLine();
+        }
+    }
+
+    static void parseEdges(Chunk chunk, double defaultValue, EdgeConsumer consumer) {
+        Scanner scanner = new Scanner(chunk);
+        while (scanner.nextLine()) {
+            long source = scanner.nextLong();
+            if (!scanner.hasNext()) {
+                throw scanner.error("Missing target");
+            }
+            long target = scanner.nextLong();
+            double value = scanner.hasNext() ? scanner.nextDouble() : defaultValue;
+            consumer.accept(source, target, value);
+            scanner.skipLine();
+        }
+    }
+
+    /**
+     * Reads the tokens of a chunk directly from its bytes.
+     */
+    private static final class Scanner {
+        // The powers of ten that are exactly representable as doubles
+        private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+        private final ByteBuffer buffer;
+        private final long offset;
+        private final int limit;
+        private int position;
+
+        Scanner(Chunk chunk) {
+            this.buffer = chunk.buffer;
+            this.offset = chunk.offset;
+            this.limit = buffer.limit();
+        }
+
+        /**
+         * Move to the first token of the next line that is neither empty nor a comment.
+         */
+        boolean nextLine() {
+            while (position < limit) {
+                skipSeparators();
+                if (position == limit) {
+                    return false;
+                }
+                byte b = buffer.get(position);
+                if (b == '\n') {
+                    position++;
+                } else if (b == '#' || b == '%') {
+                    skipLine();
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void skipLine() {
+            while (position < limit && buffer.get(position++) != '\n') {
+            }
+        }
+
+        /**
+         * Whether the current line has another token.
+         */
+        boolean hasNext() {
+            skipSeparators();
+            return position < limit && buffer.get(position) != '\n';
+        }
+
+        long nextLong() {
+            skipSeparators();
+            int start = position;
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long result = 0;
+            int digits = 0;
+            while (position < limit) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                // Accumulate negatively so that Long.MIN_VALUE can be parsed
+                if (result < (Long.MIN_VALUE + digit) / 10) {
+                    throw error("Number too large", start);
+                }
+                result = result * 10 - digit;
+                digits++;
+                position++;
+            }
+            if (digits == 0 || !atEndOfToken()) {
+                throw error("Invalid number", start);
+            }
+            if (!negative && result == Long.MIN_VALUE) {
+                throw error("Number too large", start);
+            }
+            return negative ? result : -result;
+        }
+
+        double nextDouble() {
+            skipSeparators();
+            int start = position;
+            boolean negative = false;
+            if (position < limit && (buffer.get(position) == '-' || buffer.get(position) == '+')) {
+                negative = buffer.get(position) == '-';
+                position++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean fraction = false;
+            boolean exact = true;
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b == '.' && !fraction) {
+                    fraction = true;
+                } else if (b >= '0' && b <= '9') {
+                    if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                        mantissa = mantissa * 10 + (b - '0');
+                        if (fraction) {
+                            fractionDigits++;
+                        }
+                    } else {
+                        exact = false;
+                    }
+                    digits++;
+                } else {
+                    break;
+                }
+                position++;
+            }
+            if (digits > 0 && exact && fractionDigits < POWERS_OF_TEN.length && atEndOfToken()) {
+                double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negative ? -value : value;
+            }
+            // Exponents, special values and long mantissas are rare, parse them as Strings
+            while (!atEndOfToken()) {
+                position++;
+            }
+            String token = new String(bytes(start, position), StandardCharsets.US_ASCII);
+            try {
+                return Double.parseDouble(token);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number", start);
+            }
+        }
+
+        private byte[] bytes(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            for (int i = start; i < end; i++) {
+                bytes[i - start] = buffer.get(i);
+            }
+            return bytes;
+        }
+
+        private boolean atEndOfToken() {
+            return position == limit || isSeparator(buffer.get(position)) || buffer.get(position) == '\n';
+        }
+
+        private void skipSeparators() {
+            while (position < limit && isSeparator(buffer.get(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isSeparator(byte b) {
+            return b == ' ' || b == '\t' || b == ',' || b == '\r';
+        }
+
+        IllegalArgumentException error(String message) {
+            return error(message, position);
+        }
+
+        private IllegalArgumentException error(String message, int start) {
+            int end = start;
+            while (end < limit && end - start < 64 && buffer.get(end) != '\n') {
+                end++;
+            }
+            return new IllegalArgumentException(message + " at offset " + (offset + start) + ": "
+                + new String(bytes(start, end), StandardCharsets.US_ASCII).trim());
+        }
+    }
+}
@@ -0,0 +1,436 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.TopologyDescription;
+import org.apache.kafka.streams.processor.Processor;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.EdgeWithValue;
+import io.kgraph.KGraph;
+import io.kgraph.pregel.PregelSerdes;
+import io.kgraph.pregel.VertexPartitioner;
+
+/**
+ * Loads a graph into the vertices and grouped edges topics of a Pregel computation.
+ *
+ * <p>The end offsets of the input topics are taken when loading starts, and loading is complete once the
+ * loader has committed those offsets, has committed everything written to its repartition topics, and all
+ * of its writes are acknowledged.  Records are sent in batches, by as many stream threads as there are
+ * partitions, up to the number of processors, unless {@link StreamsConfig#NUM_STREAM_THREADS_CONFIG} is set.
+ * With a placement-based partitioner, a single stream thread places each vertex with its outgoing edges, and
+ * the vertices are kept in memory and sent once all edges have been placed.
+ * The progress is logged at every check.
+ */
+final class GraphLoader<K, VV, EV> {
+    private static final Logger log = LoggerFactory.getLogger(GraphLoader.class);
+
+    private static final long DEFAULT_CHECK_INTERVAL_MS = 1000;
+    private static final int DEFAULT_PRODUCER_LINGER_MS = 10;
+    private static final int DEFAULT_PRODUCER_BATCH_SIZE = 64 * 1024;
+
+    private final Properties streamsConfig;
+    private final String applicationId;
+    private final String bootstrapServers;
+    private final long checkIntervalMs;
+    private final int producerLingerMs;
+    private final int producerBatchSize;
+
+    private final Map<TopicPartition, Long> lastWrittenOffsets = new ConcurrentHashMap<>();
+    private final LongAdder vertexCount = new LongAdder();
+    private final LongAdder edgeCount = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+    // The vertices read when placing them by their edges, in the order they were read
+    private final Map<K, VV> deferredVertices = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    GraphLoader(Properties config) {
+        this.streamsConfig = new Properties();
+        this.streamsConfig.putAll(config);
+        this.checkIntervalMs = Long.parseLong(
+            remove(streamsConfig, GraphUtils.LOADER_CHECK_INTERVAL_MS, DEFAULT_CHECK_INTERVAL_MS));
+        this.producerLingerMs = Integer.parseInt(
+            remove(streamsConfig, GraphUtils.LOADER_PRODUCER_LINGER_MS, DEFAULT_PRODUCER_LINGER_MS));
+        this.producerBatchSize = Integer.parseInt(
+            remove(streamsConfig, GraphUtils.LOADER_PRODUCER_BATCH_SIZE, DEFAULT_PRODUCER_BATCH_SIZE));
+        this.applicationId = streamsConfig.getProperty(StreamsConfig.APPLICATION_ID_CONFIG);
+        this.bootstrapServers = streamsConfig.getProperty(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG);
+    }
+
+    private static String remove(Properties props, String key, Object defaultValue) {
+        Object value = props.remove(key);
+        return String.valueOf(value != null ? value : defaultValue);
+    }
+
+    CompletableFuture<Map<TopicPartition, Long>> load(
+        StreamsBuilder builder,
+        KGraph<K, VV, EV> graph,
+        String verticesTopic,
+        String edgesGroupedBySourceTopic,
+        int numPartitions,
+        short replicationFactor,
+        VertexPartitioner<K> partitioner
+    ) {
+        log.info("Started loading graph");
+
+        ClientUtils.createTopic(verticesTopic, numPartitions, replicationFactor, streamsConfig);
+        ClientUtils.createTopic(edgesGroupedBySourceTopic, numPartitions, replicationFactor, streamsConfig);
+
+        Serializer<K> keySerializer = graph.keySerde().serializer();
+        Properties vertexProducerConfig = producerConfig("pregel-vertex-producer",
+            keySerializer.getClass(), graph.vertexValueSerde().serializer().getClass());
+        Producer<K, VV> vertexProducer =
+            new KafkaProducer<>(vertexProducerConfig, keySerializer, graph.vertexValueSerde().serializer());
+
+        // The edges are read back with the same serde by the Pregel computation
+        Serializer<Map<K, EV>> edgesSerializer = PregelSerdes.edgesGroupedBySource(graph.serialized()).serializer();
+        Properties edgeProducerConfig = producerConfig("pregel-edge-producer",
+            keySerializer.getClass(), edgesSerializer.getClass());
+        Producer<K, Map<K, EV>> edgeProducer = new KafkaProducer<>(edgeProducerConfig, keySerializer, edgesSerializer);
+
+        if (partitioner.isPlacementBased()) {
+            // The vertices are placed by their edges, and are sent once all edges have been placed
+            graph.vertices()
+                .toStream()
+                .process(DeferVertices::new);
+        } else {
+            graph.vertices()
+                .toStream()
+                .process(() -> new SendRecords<>(verticesTopic, vertexProducer, vertexCount,
+                    (k, v) -> partitioner.place(k, Collections.emptyList(), numPartitions)));
+        }
+        graph.edgesGroupedBySource()
+            .toStream()
+            // Removed vertices and edges are forwarded as tombstones
+            .mapValues(v -> v != null
+                ? StreamSupport.stream(v.spliterator(), false)
+                    .collect(Collectors.toMap(EdgeWithValue::target, EdgeWithValue::value))
+                : null)
+            .process(() -> new SendRecords<>(edgesGroupedBySourceTopic, edgeProducer, edgeCount,
+                (k, v) -> partitioner.place(k, v != null ? v.keySet() : Collections.emptyList(), numPartitions)));
+
+        Topology topology = builder.build();
+        log.debug("Graph description {}", topology.describe());
+        Set<String> sinkTopics = new HashSet<>();
+        Set<String> sourceTopics = new HashSet<>();
+        for (TopologyDescription.Subtopology subtopology : topology.describe().subtopologies()) {
+            for (TopologyDescription.Node node : subtopology.nodes()) {
+                if (node instanceof TopologyDescription.Source) {
+                    sourceTopics.addAll(((TopologyDescription.Source) node).topicSet());
+                } else if (node instanceof TopologyDescription.Sink) {
+                    sinkTopics.add(((TopologyDescription.Sink) node).topic());
+                }
+            }
+        }
+        // Repartition topics are both written and read by the loader, and are prefixed by the application id
+        Set<String> inputTopics = new HashSet<>(sourceTopics);
+        inputTopics.removeAll(sinkTopics);
+        Set<String> internalTopics = sourceTopics.stream()
+            .filter(sinkTopics::contains)
+            .map(topic -> applicationId + "-" + topic)
+            .collect(Collectors.toSet());
+        Map<TopicPartition, Long> inputEndOffsets = endOffsets(inputTopics);
+        log.info("Loading graph from {} up to offsets {}", inputTopics, inputEndOffsets);
+
+        if (partitioner.isPlacementBased()) {
+            // The placement depends on the order in which the vertices are placed
+            Object numThreads = streamsConfig.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, 1);
+            if (numThreads != null && Integer.parseInt(numThreads.toString()) != 1) {
+                log.warn("Loading graph with one stream thread instead of {}, as the vertices are placed by {}",
+                    numThreads, partitioner.getClass().getSimpleName());
+            }
+        } else if (!streamsConfig.containsKey(StreamsConfig.NUM_STREAM_THREADS_CONFIG)) {
+            int numThreads = Math.max(1, Math.min(numPartitions, Runtime.getRuntime().availableProcessors()));
+            streamsConfig.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, numThreads);
+        }
+        KafkaStreams streams = new KafkaStreams(topology, streamsConfig);
+        streams.setUncaughtExceptionHandler((thread, e) -> {
+            log.error("Failed to load graph in thread {}", thread.getName(), e);
+            error.compareAndSet(null, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+        });
+        streams.start();
+
+        AdminClient adminClient = AdminClient.create(streamsConfig);
+        CompletableFuture<Map<TopicPartition, Long>> future = new CompletableFuture<>();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        long startMs = System.currentTimeMillis();
+        Progress progress = new Progress(startMs);
+        ScheduledFuture<?> scheduledFuture = executor.scheduleWithFixedDelay(() -> {
+            try {
+                Exception e = error.get();
+                boolean complete = e == null && streams.state() == KafkaStreams.State.RUNNING
+                    && isComplete(adminClient, inputEndOffsets, internalTopics);
+                if (complete && !deferredVertices.isEmpty()) {
+                    // All edges have been placed; vertices without edges are placed now
+                    sendDeferredVertices(verticesTopic, vertexProducer, partitioner, numPartitions);
+                    complete = false;
+                }
+                progress.log(complete);
+                if (e == null && !complete) {
+                    return;
+                }
+                try {
+                    vertexProducer.close();
+                    edgeProducer.close();
+                    streams.close();
+                    adminClient.close();
+                } finally {
+                    if (e == null) {
+                        future.complete(lastWrittenOffsets);
+                    } else {
+                        future.completeExceptionally(e);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Could not check graph loading progress", e);
+            }
+        }, 0, checkIntervalMs, TimeUnit.MILLISECONDS);
+
+        return future.whenCompleteAsync((v, t) -> {
+            scheduledFuture.cancel(true);
+            executor.shutdown();
+        });
+    }
+
+    private void sendDeferredVertices(String verticesTopic,
+                                      Producer<K, VV> vertexProducer,
+                                      VertexPartitioner<K> partitioner,
+                                      int numPartitions) {
+        Map<K, VV> vertices;
+        synchronized (deferredVertices) {
+            vertices = new LinkedHashMap<>(deferredVertices);
+            deferredVertices.clear();
+        }
+        log.info("Sending {} vertices after their edges", vertices.size());
+        for (Map.Entry<K, VV> entry : vertices.entrySet()) {
+            K vertex = entry.getKey();
+            send(verticesTopic, vertexProducer, vertexCount,
+                partitioner.place(vertex, Collections.emptyList(), numPartitions), vertex, entry.getValue());
+        }
+        vertexProducer.flush();
+    }
+
+    private Properties producerConfig(String clientId, Class<?> keySerializer, Class<?> valueSerializer) {
+        Properties producerConfig = ClientUtils.producerConfig(bootstrapServers, keySerializer, valueSerializer, streamsConfig);
+        producerConfig.setProperty(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        producerConfig.put(ProducerConfig.LINGER_MS_CONFIG, producerLingerMs);
+        producerConfig.put(ProducerConfig.BATCH_SIZE_CONFIG, producerBatchSize);
+        return producerConfig;
+    }
+
+    private Map<TopicPartition, Long> endOffsets(Collection<String> topics) {
+        Properties consumerConfig = ClientUtils.consumerConfig(bootstrapServers, applicationId + "-end-offsets",
+            ByteArrayDeserializer.class, ByteArrayDeserializer.class, streamsConfig);
+        try (Consumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerConfig)) {
+            return consumer.endOffsets(topics.stream()
+                .flatMap(topic -> consumer.partitionsFor(topic).stream())
+                .map(info -> new TopicPartition(info.topic(), info.partition()))
+                .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Whether the loader has committed the input end offsets, and everything written to the repartition
+     * topics before.  Since offsets are committed only after the records that were processed are forwarded
+     * and written, the committed offsets are read before the end offsets of the repartition topics, and
+     * those before the number of writes that are not yet acknowledged.
+     */
+    private boolean isComplete(AdminClient adminClient,
+                               Map<TopicPartition, Long> inputEndOffsets,
+                               Set<String> internalTopics) throws InterruptedException, ExecutionException {
+        Map<TopicPartition, OffsetAndMetadata> committed =
+            adminClient.listConsumerGroupOffsets(applicationId).partitionsToOffsetAndMetadata().get();
+        if (!isCommitted(committed, inputEndOffsets)) {
+            return false;
+        }
+        Map<TopicPartition, Long> internalEndOffsets;
+        try {
+            Map<String, TopicDescription> descriptions = adminClient.describeTopics(internalTopics).all().get();
+            internalEndOffsets = endOffsets(descriptions.keySet());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+                // Not yet created
+                return false;
+            }
+            throw e;
+        }
+        return isCommitted(committed, internalEndOffsets) && inFlight.get() == 0;
+    }
+
+    private static boolean isCommitted(Map<TopicPartition, OffsetAndMetadata> committed,
+                                       Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> entry : endOffsets.entrySet()) {
+            OffsetAndMetadata offset = committed.get(entry.getKey());
+            long position = offset != null ? offset.offset() : 0L;
+            if (position < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final class Progress {
+        private long lastMs;
+        private long lastRecords;
+        private long lastBytes;
+        private final long startMs;
+
+        Progress(long startMs) {
+            this.startMs = startMs;
+            this.lastMs = startMs;
+        }
+
+        void log(boolean complete) {
+            long now = System.currentTimeMillis();
+            long records = vertexCount.sum() + edgeCount.sum();
+            long bytes = bytesWritten.sum();
+            if (complete) {
+                double seconds = Math.max(1L, now - startMs) / 1000.0;
+                log.info("Finished loading graph: {} vertices, {} edges, {} bytes in {} s ({} records/s, {} bytes/s)",
+                    vertexCount.sum(), edgeCount.sum(), bytes, seconds,
+                    (long) (records / seconds), (long) (bytes / seconds));
+            } else if (records > lastRecords) {
+                double seconds = Math.max(1L, now - lastMs) / 1000.0;
+                log.info("Loading graph: {} vertices, {} edges, {} records/s, {} bytes/s, {} unacknowledged",
+                    vertexCount.sum(), edgeCount.sum(), (long) ((records - lastRecords) / seconds),
+                    (long) ((bytes - lastBytes) / seconds), inFlight.get());
+            }
+            lastMs = now;
+            lastRecords = records;
+            lastBytes = bytes;
+        }
+    }
+
+    private <KR, VR> void send(String topic, Producer<KR, VR> producer, LongAdder count, int partition,
+                               KR key, VR value) {
+        count.increment();
+        ProducerRecord<KR, VR> producerRecord = new ProducerRecord<>(topic, partition, key, value);
+        inFlight.incrementAndGet();
+        producer.send(producerRecord, (metadata, e) -> {
+            try {
+                if (e == null) {
+                    bytesWritten.add(Math.max(0, metadata.serializedKeySize())
+                        + Math.max(0, metadata.serializedValueSize()));
+                    lastWrittenOffsets.merge(
+                        new TopicPartition(metadata.topic(), metadata.partition()),
+                        metadata.offset(),
+                        Math::max
+                    );
+                } else {
+                    log.error("Failed to send record to {}: {}", topic, e);
+                    error.compareAndSet(null, e);
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Keeps the latest value of each vertex, including removals, until the vertices are sent.
+     */
+    private final class DeferVertices implements Processor<K, VV> {
+
+        @Override
+        public void init(ProcessorContext context) {
+        }
+
+        @Override
+        public void process(final K readOnlyKey, final VV value) {
+            deferredVertices.put(readOnlyKey, value);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final class SendRecords<KR, VR> implements Processor<KR, VR> {
+
+        private final String topic;
+        private final Producer<KR, VR> producer;
+        private final LongAdder count;
+        private final BiFunction<KR, VR, Integer> partitioner;
+
+        SendRecords(String topic,
+                    Producer<KR, VR> producer,
+                    LongAdder count,
+                    BiFunction<KR, VR, Integer> partitioner
+        ) {
+            this.topic = topic;
+            this.producer = producer;
+            this.count = count;
+            this.partitioner = partitioner;
+        }
+
+        @Override
+        public void init(ProcessorContext context) {
+        }
+
+        @Override
+        public void process(final KR readOnlyKey, final VR value) {
+            send(topic, producer, count, partitioner.apply(readOnlyKey, value), readOnlyKey, value);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.StreamPartitioner;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.junit.Test;
+
+public class AdjacencyTest {
+
+    private final Serde<Adjacency.Key<Long>> serde = Adjacency.keySerde(Serdes.Long());
+
+    @Test
+    public void testKeySerde() {
+        Adjacency.Key<Long> key = new Adjacency.Key<>(-1L, 42L);
+        assertEquals(key, serde.deserializer().deserialize("t", serde.serializer().serialize("t", key)));
+    }
+
+    @Test
+    public void testEdges() {
+        ByteOrderedStore store = new ByteOrderedStore();
+        // Vertices whose serialized ids differ in the last byte, and one that is all 0xFF
+        for (long vertex : new long[] {-1L, 0L, 1L, 2L, 255L, 256L}) {
+            for (long neighbor = 0; neighbor < 3; neighbor++) {
+                store.put(new Adjacency.Key<>(vertex, neighbor), vertex * 10 + neighbor);
+            }
+        }
+
+        Adjacency<Long, Long> bySource = new Adjacency<>(null, true);
+        assertEquals(Arrays.asList(new EdgeWithValue<>(1L, 0L, 10L), new EdgeWithValue<>(1L, 1L, 11L),
+            new EdgeWithValue<>(1L, 2L, 12L)), bySource.edges(store, 1L));
+        assertEquals(3, bySource.edges(store, 255L).size());
+        assertEquals(3, bySource.edges(store, -1L).size());
+        assertEquals(0, bySource.edges(store, 3L).size());
+
+        Adjacency<Long, Long> byTarget = new Adjacency<>(null, false);
+        assertEquals(new EdgeWithValue<>(2L, 256L, 2562L), byTarget.edges(store, 256L).get(2));
+    }
+
+    @Test
+    public void testPartitioner() {
+        StreamPartitioner<Adjacency.Key<Long>, Long> partitioner = Adjacency.partitioner(Serdes.Long());
+        for (long vertex = 0; vertex < 100; vertex++) {
+            // The partition the producer places the vertex on, as for a table of the vertices
+            int partition = Utils.toPositive(Utils.murmur2(Serdes.Long().serializer().serialize("t", vertex))) % 8;
+            for (long neighbor = 0; neighbor < 10; neighbor++) {
+                assertEquals(partition, (int) partitioner.partition("t", new Adjacency.Key<>(vertex, neighbor), 0L, 8));
+            }
+        }
+    }
+
+    /**
+     * A store ordered by the serialized keys, as a RocksDB store is.
+     */
+    private class ByteOrderedStore implements ReadOnlyKeyValueStore<Adjacency.Key<Long>, Long> {
+
+        private final NavigableMap<Bytes, Long> entries = new TreeMap<>();
+
+        void put(Adjacency.Key<Long> key, Long value) {
+            entries.put(Bytes.wrap(serde.serializer().serialize("t", key)), value);
+        }
+
+        @Override
+        public Long get(Adjacency.Key<Long> key) {
+            return entries.get(Bytes.wrap(serde.serializer().serialize("t", key)));
+        }
+
+        @Override
+        public KeyValueIterator<Adjacency.Key<Long>, Long> range(Adjacency.Key<Long> from, Adjacency.Key<Long> to) {
+            return iterator(entries.subMap(Bytes.wrap(serde.serializer().serialize("t", from)), true,
+                Bytes.wrap(serde.serializer().serialize("t", to)), true));
+        }
+
+        @Override
+        public KeyValueIterator<Adjacency.Key<Long>, Long> all() {
+            return iterator(entries);
+        }
+
+        @Override
+        public long approximateNumEntries() {
+            return entries.size();
+        }
+
+        private KeyValueIterator<Adjacency.Key<Long>, Long> iterator(Map<Bytes, Long> map) {
+            Iterator<Map.Entry<Bytes, Long>> iterator = map.entrySet().iterator();
+            return new KeyValueIterator<Adjacency.Key<Long>, Long>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue<Adjacency.Key<Long>, Long> next() {
+                    Map.Entry<Bytes, Long> entry = iterator.next();
+                    return new KeyValue<>(serde.deserializer().deserialize("t", entry.getKey().get()), entry.getValue());
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public Adjacency.Key<Long> peekNextKey() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
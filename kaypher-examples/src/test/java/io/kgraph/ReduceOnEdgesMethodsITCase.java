@@ -110,6 +110,42 @@ public class ReduceOnEdgesMethodsITCase extends AbstractIntegrationTest {
         TestUtils.compareResultAsTuples(result, expectedResult);
     }
 
+    @Test
+    public void testLowestWeightAllNeighborNoValue() throws Exception {
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            LongSerializer.class, new Properties()
+        );
+        StreamsBuilder builder = new StreamsBuilder();
+
+        KTable<Long, Long> vertices =
+            StreamUtils.tableFromCollection(builder, producerConfig, Serdes.Long(), Serdes.Long(),
+                TestGraphUtils.getLongLongVertices());
+
+        KTable<Edge<Long>, Long> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Long(),
+                TestGraphUtils.getLongLongEdges());
+
+        KGraph<Long, Long, Long> graph = new KGraph<>(
+            vertices, edges, GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Long()));
+
+        KTable<Long, Long> verticesWithLowestAllNeighbor =
+            graph.reduceOnEdges(new SelectMinWeightNeighborNoValue(), EdgeDirection.BOTH);
+
+        startStreams(builder, Serdes.Long(), Serdes.Long());
+
+        Thread.sleep(5000);
+
+        List<KeyValue<Long, Long>> result = StreamUtils.listFromTable(streams, verticesWithLowestAllNeighbor);
+
+        expectedResult = "1,12\n" +
+            "2,12\n" +
+            "3,13\n" +
+            "4,34\n" +
+            "5,35\n";
+
+        TestUtils.compareResultAsTuples(result, expectedResult);
+    }
+
     private static final class SelectMinWeightNeighbor
         implements EdgesFunctionWithVertexValue<Long, Long, Long, Long> {
 
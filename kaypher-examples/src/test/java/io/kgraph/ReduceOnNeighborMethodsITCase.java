@@ -20,6 +20,7 @@ package io.kgraph;
 
 import static io.kgraph.utils.TestUtils.compareResultAsTuples;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -111,6 +112,80 @@ public class ReduceOnNeighborMethodsITCase extends AbstractIntegrationTest {
         compareResultAsTuples(result, expectedResult);
     }
 
+    @Test
+    public void testSumOfAllNeighborsNoValue() throws Exception {
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            LongSerializer.class, new Properties()
+        );
+        StreamsBuilder builder = new StreamsBuilder();
+
+        KTable<Long, Long> vertices =
+            StreamUtils.tableFromCollection(builder, producerConfig, Serdes.Long(), Serdes.Long(),
+                TestGraphUtils.getLongLongVertices());
+
+        KTable<Edge<Long>, Long> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Long(),
+                TestGraphUtils.getLongLongEdges());
+
+        KGraph<Long, Long, Long> graph = new KGraph<>(
+            vertices, edges, GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Long()));
+
+        KTable<Long, Long> verticesWithSumOfAllNeighborValues =
+            graph.reduceOnNeighbors((v1, v2) -> v1 + v2, EdgeDirection.BOTH);
+
+        startStreams(builder, Serdes.Long(), Serdes.Long());
+
+        Thread.sleep(5000);
+
+        List<KeyValue<Long, Long>> result = StreamUtils.listFromTable(streams, verticesWithSumOfAllNeighborValues);
+
+        expectedResult = "1,10\n" +
+            "2,4\n" +
+            "3,12\n" +
+            "4,8\n" +
+            "5,8\n";
+
+        compareResultAsTuples(result, expectedResult);
+    }
+
+    @Test
+    public void testSumOfAllNeighborsNoValueRemovedEdge() throws Exception {
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            LongSerializer.class, new Properties()
+        );
+        StreamsBuilder builder = new StreamsBuilder();
+
+        KTable<Long, Long> vertices =
+            StreamUtils.tableFromCollection(builder, producerConfig, Serdes.Long(), Serdes.Long(),
+                TestGraphUtils.getLongLongVertices());
+
+        List<KeyValue<Edge<Long>, Long>> edgeList = new ArrayList<>(TestGraphUtils.getLongLongEdges());
+        // Remove the edge from 1 to 3
+        edgeList.add(new KeyValue<>(new Edge<>(1L, 3L), null));
+        KTable<Edge<Long>, Long> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Long(), edgeList);
+
+        KGraph<Long, Long, Long> graph = new KGraph<>(
+            vertices, edges, GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Long()));
+
+        KTable<Long, Long> verticesWithSumOfAllNeighborValues =
+            graph.reduceOnNeighbors((v1, v2) -> v1 + v2, EdgeDirection.BOTH);
+
+        startStreams(builder, Serdes.Long(), Serdes.Long());
+
+        Thread.sleep(5000);
+
+        List<KeyValue<Long, Long>> result = StreamUtils.listFromTable(streams, verticesWithSumOfAllNeighborValues);
+
+        expectedResult = "1,7\n" +
+            "2,4\n" +
+            "3,11\n" +
+            "4,8\n" +
+            "5,8\n";
+
+        compareResultAsTuples(result, expectedResult);
+    }
+
     private static final class SumOutNeighbors implements
         NeighborsFunctionWithVertexValue<Long, Long, Long, Long> {
 
@@ -19,6 +19,7 @@
 package io.kgraph.library;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -27,6 +28,9 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.LongSerializer;
 import org.apache.kafka.common.serialization.Serdes;
@@ -47,7 +51,9 @@ import io.kgraph.GraphAlgorithmState;
 import io.kgraph.GraphSerialized;
 import io.kgraph.KGraph;
 import io.kgraph.TestGraphUtils;
+import io.kgraph.pregel.PregelComputation;
 import io.kgraph.pregel.PregelGraphAlgorithm;
+import io.kgraph.pregel.PregelSerdes;
 import io.kgraph.utils.ClientUtils;
 import io.kgraph.utils.GraphGenerators;
 import io.kgraph.utils.GraphUtils;
@@ -95,32 +101,139 @@ public class ConnectedComponentsTest extends AbstractIntegrationTest {
         Map<Long, Long> map = StreamUtils.mapFromStore(paths.streams(), "solutionSetStore-" + suffix);
         log.debug("result: {}", map);
 
-        Map<Long, Long> expectedResult = new HashMap<>();
-        expectedResult.put(0L, 0L);
-        expectedResult.put(1L, 0L);
-        expectedResult.put(2L, 0L);
-        expectedResult.put(3L, 0L);
-        expectedResult.put(4L, 0L);
-        expectedResult.put(5L, 0L);
-        expectedResult.put(6L, 0L);
-        expectedResult.put(7L, 0L);
-        expectedResult.put(8L, 0L);
-        expectedResult.put(9L, 0L);
-        expectedResult.put(10L, 10L);
-        expectedResult.put(11L, 10L);
-        expectedResult.put(12L, 10L);
-        expectedResult.put(13L, 10L);
-        expectedResult.put(14L, 10L);
-        expectedResult.put(15L, 10L);
-        expectedResult.put(16L, 10L);
-        expectedResult.put(17L, 10L);
-        expectedResult.put(18L, 10L);
-        expectedResult.put(19L, 10L);
-        expectedResult.put(20L, 10L);
+        assertEquals(twoChainsComponents(), map);
+    }
+
+    @Test
+    public void testIncrementalConnectedComponents() throws Exception {
+        String suffix = "incremental";
+        StreamsBuilder builder = new StreamsBuilder();
 
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            LongSerializer.class, new Properties()
+        );
+        KTable<Edge<Long>, Long> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Long(),
+                TestGraphUtils.getTwoChains());
+        KGraph<Long, Long, Long> graph = KGraph.fromEdges(edges, id -> id,
+            GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Long()));
+
+        Properties props = ClientUtils.streamsConfig("prepare-" + suffix, "prepare-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), graph.vertexValueSerde().getClass());
+        CompletableFuture<Map<TopicPartition, Long>> state = GraphUtils.groupEdgesBySourceAndRepartition(builder, props, graph, "vertices-" + suffix, "edgesGroupedBySource-" + suffix, 2, (short) 1);
+        Map<TopicPartition, Long> offsets = state.get();
+
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 2, (short) 1,
+                Collections.emptyMap(), Optional.empty(), new ConnectedComponents<>());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), KryoSerde.class);
+        algorithm.configure(new StreamsBuilder(), props);
+        GraphAlgorithmState<KTable<Long, Long>> paths = algorithm.run();
+        paths.result().get();
+        int lastSuperstep = algorithm.state().superstep();
+
+        // Join the two chains with an edge from 9 to 10
+        try (Producer<Long, Map<Long, Long>> producer = new KafkaProducer<>(producerConfig, new LongSerializer(),
+            PregelSerdes.edgesGroupedBySource(graph.serialized()).serializer())) {
+            producer.send(new ProducerRecord<>("edgesGroupedBySource-" + suffix, 9L, Collections.singletonMap(10L, 1L))).get();
+        }
+
+        GraphAlgorithmState<KTable<Long, Long>> resumed =
+            ((PregelGraphAlgorithm<Long, Long, Long, Long>) algorithm).runIncremental(null, Integer.MAX_VALUE);
+        // Resumed from the previous result rather than started over
+        assertEquals(lastSuperstep, resumed.superstep());
+        resumed.result().get();
+        assertTrue(algorithm.state().superstep() > lastSuperstep);
+
+        Thread.sleep(2000);
+
+        Map<Long, Long> map = StreamUtils.mapFromStore(resumed.streams(), "solutionSetStore-" + suffix);
+        log.debug("result: {}", map);
+
+        Map<Long, Long> expectedResult = new HashMap<>();
+        for (long i = 0; i < 21; i++) {
+            expectedResult.put(i, 0L);
+        }
         assertEquals(expectedResult, map);
     }
 
+    @Test
+    public void testResumeFromCheckpoint() throws Exception {
+        String suffix = "checkpoint";
+        StreamsBuilder builder = new StreamsBuilder();
+
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            LongSerializer.class, new Properties()
+        );
+        KTable<Edge<Long>, Long> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Long(),
+                TestGraphUtils.getTwoChains());
+        KGraph<Long, Long, Long> graph = KGraph.fromEdges(edges, id -> id,
+            GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Long()));
+
+        Properties props = ClientUtils.streamsConfig("prepare-" + suffix, "prepare-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), graph.vertexValueSerde().getClass());
+        CompletableFuture<Map<TopicPartition, Long>> state = GraphUtils.groupEdgesBySourceAndRepartition(builder, props, graph, "vertices-" + suffix, "edgesGroupedBySource-" + suffix, 2, (short) 1);
+        Map<TopicPartition, Long> offsets = state.get();
+
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(PregelComputation.CHECKPOINT_INTERVAL, 2);
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 2, (short) 1,
+                configs, Optional.empty(), new ConnectedComponents<>());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), KryoSerde.class);
+        algorithm.configure(new StreamsBuilder(), props);
+        algorithm.run();
+
+        // Kill the run after the checkpoint of superstep 4, while messages of later supersteps are in the
+        // work set and the inbox
+        GraphAlgorithmState<KTable<Long, Long>> killed = algorithm.state();
+        while (killed.state() == GraphAlgorithmState.State.RUNNING && killed.superstep() < 5) {
+            Thread.sleep(10);
+            killed = algorithm.state();
+        }
+        assertEquals(GraphAlgorithmState.State.RUNNING, killed.state());
+        algorithm.close();
+
+        // Resume with a new instance and empty local state, restored from the changelogs
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 2, (short) 1,
+                configs, Optional.empty(), new ConnectedComponents<>());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), KryoSerde.class);
+        algorithm.configure(new StreamsBuilder(), props);
+        GraphAlgorithmState<KTable<Long, Long>> paths = algorithm.run();
+        // Resumed from a checkpoint rather than started over
+        assertTrue(paths.superstep() >= 4);
+        paths.result().get();
+
+        Thread.sleep(2000);
+
+        Map<Long, Long> map = StreamUtils.mapFromStore(paths.streams(), "solutionSetStore-" + suffix);
+        log.debug("result: {}", map);
+
+        assertEquals(twoChainsComponents(), map);
+    }
+
+    private static Map<Long, Long> twoChainsComponents() {
+        Map<Long, Long> expectedResult = new HashMap<>();
+        for (long i = 0; i < 10; i++) {
+            expectedResult.put(i, 0L);
+        }
+        for (long i = 10; i < 21; i++) {
+            expectedResult.put(i, 10L);
+        }
+        return expectedResult;
+    }
+
     @Test
     public void testGridConnectedComponents() throws Exception {
         String suffix = "grid";
@@ -194,6 +194,73 @@ public class PageRankTest extends AbstractIntegrationTest {
         assertEquals(expectedResult, list);
     }
 
+    @Test
+    public void testChainLongerPageRankWithCombiner() throws Exception {
+        String suffix = "longer-combined";
+        StreamsBuilder builder = new StreamsBuilder();
+
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            DoubleSerializer.class, new Properties()
+        );
+        KTable<Edge<Long>, Double> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Double(),
+                TestGraphUtils.getChain());
+        KGraph<Long, Double, Double> initialGraph = KGraph.fromEdges(edges,
+            GraphAlgorithmType.initialVertexValueMapper(GraphAlgorithmType.pagerank),
+            GraphSerialized.with(Serdes.Long(), Serdes.Double(), Serdes.Double()));
+        KTable<Long, Tuple2<Double, Double>> vertices =
+            initialGraph.vertices().mapValues((k, v) -> new Tuple2<>(0.0, 0.0));
+        KGraph<Long, Tuple2<Double, Double>, Double> graph =
+            new KGraph<>(vertices, initialGraph.edges(), GraphSerialized.with(initialGraph.keySerde(), new KryoSerde<>
+                (), Serdes.Double()));
+
+        Properties props = ClientUtils.streamsConfig("prepare-" + suffix, "prepare-client-" + suffix, CLUSTER
+                .bootstrapServers(),
+            graph.keySerde().getClass(), graph.vertexValueSerde().getClass());
+        CompletableFuture<Map<TopicPartition, Long>> state = GraphUtils.groupEdgesBySourceAndRepartition(builder, props, graph, "vertices-" + suffix, "edgesGroupedBySource-" + suffix, 50, (short) 1);
+        Map<TopicPartition, Long> offsets = state.get();
+
+        double resetProb = 0.15;
+        double tol = 0.0001;
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(PageRank.RESET_PROBABILITY, resetProb);
+        configs.put(PageRank.TOLERANCE, tol);
+        configs.put(PageRank.COMBINE_MESSAGES, true);
+        Optional<Double> initMsg = Optional.of(resetProb / (1.0 - resetProb));
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 50, (short) 1,
+                configs, initMsg, new PageRank<>());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix, CLUSTER.bootstrapServers(),
+            graph.keySerde().getClass(), KryoSerde.class);
+        KafkaStreams streams = algorithm.configure(new StreamsBuilder(), props).streams();
+        int maxIterations = 11;
+        GraphAlgorithmState<KTable<Long, Tuple2<Double, Double>>> ranks = algorithm.run(maxIterations);
+        ranks.result().get();
+
+        Thread.sleep(2000);
+
+        Map<Long, Tuple2<Double, Double>> map = StreamUtils.mapFromStore(ranks.streams(), "solutionSetStore-" +
+            suffix);
+        List<Double> list = map.values().stream().map(Tuple2::_1).sorted().collect(Collectors.toList());
+
+        log.debug("result: {}", map);
+
+        List<Double> expectedResult = new ArrayList<>();
+        expectedResult.add(0.15);
+        expectedResult.add(0.27749999999999997);
+        expectedResult.add(0.38587499999999997);
+        expectedResult.add(0.47799375);
+        expectedResult.add(0.5562946875);
+        expectedResult.add(0.622850484375);
+        expectedResult.add(0.67942291171875);
+        expectedResult.add(0.7275094749609375);
+        expectedResult.add(0.7683830537167969);
+        expectedResult.add(0.8031255956592774);
+        assertEquals(expectedResult, list);
+    }
+
     @Test
     public void testChainPersonalPageRank() throws Exception {
         String suffix = "chain-personal";
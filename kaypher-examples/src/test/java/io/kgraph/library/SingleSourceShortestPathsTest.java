@@ -19,6 +19,7 @@
 package io.kgraph.library;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -26,6 +27,9 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
 
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.DoubleSerializer;
 import org.apache.kafka.common.serialization.LongSerializer;
@@ -46,6 +50,7 @@ import io.kgraph.GraphSerialized;
 import io.kgraph.KGraph;
 import io.kgraph.TestGraphUtils;
 import io.kgraph.pregel.PregelGraphAlgorithm;
+import io.kgraph.pregel.PregelSerdes;
 import io.kgraph.utils.ClientUtils;
 import io.kgraph.utils.GraphUtils;
 import io.kgraph.utils.KryoSerde;
@@ -102,6 +107,118 @@ public class SingleSourceShortestPathsTest extends AbstractIntegrationTest {
         assertEquals(expectedResult, map);
     }
 
+    @Test
+    public void testAsyncSingleSourceShortestPaths() throws Exception {
+        String suffix = "async";
+        StreamsBuilder builder = new StreamsBuilder();
+
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            DoubleSerializer.class, new Properties()
+        );
+        KTable<Edge<Long>, Double> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Double(),
+                TestGraphUtils.getLongDoubleEdges());
+        KGraph<Long, Double, Double> graph = KGraph.fromEdges(edges,
+            GraphAlgorithmType.initialVertexValueMapper(GraphAlgorithmType.sssp),
+            GraphSerialized.with(Serdes.Long(), Serdes.Double(), Serdes.Double()));
+
+        Properties props = ClientUtils.streamsConfig("prepare-" + suffix, "prepare-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), graph.vertexValueSerde().getClass());
+        CompletableFuture<Map<TopicPartition, Long>> state = GraphUtils.groupEdgesBySourceAndRepartition(builder, props, graph, "vertices-" + suffix, "edgesGroupedBySource-" + suffix, 2, (short) 1);
+        Map<TopicPartition, Long> offsets = state.get();
+
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SingleSourceShortestPaths.SRC_VERTEX_ID, 1L);
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 2, (short) 1,
+                configs, Optional.empty(), new AsyncSingleSourceShortestPaths());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix, CLUSTER.bootstrapServers(),
+            graph.keySerde().getClass(), KryoSerde.class);
+        algorithm.configure(new StreamsBuilder(), props);
+        GraphAlgorithmState<KTable<Long, Double>> paths = algorithm.run();
+        paths.result().get();
+
+        Map<Long, Double> map = StreamUtils.mapFromStore(paths.streams(), "solutionSetStore-" + suffix);
+        log.debug("result: {}", map);
+
+        Map<Long, Double> expectedResult = new HashMap<>();
+        expectedResult.put(1L, 0.0);
+        expectedResult.put(2L, 12.0);
+        expectedResult.put(3L, 13.0);
+        expectedResult.put(4L, 47.0);
+        expectedResult.put(5L, 48.0);
+
+        assertEquals(expectedResult, map);
+    }
+
+    @Test
+    public void testIncrementalSingleSourceShortestPaths() throws Exception {
+        String suffix = "incremental";
+        StreamsBuilder builder = new StreamsBuilder();
+
+        Properties producerConfig = ClientUtils.producerConfig(CLUSTER.bootstrapServers(), LongSerializer.class,
+            DoubleSerializer.class, new Properties()
+        );
+        KTable<Edge<Long>, Double> edges =
+            StreamUtils.tableFromCollection(builder, producerConfig, new KryoSerde<>(), Serdes.Double(),
+                TestGraphUtils.getLongDoubleEdges());
+        KGraph<Long, Double, Double> graph = KGraph.fromEdges(edges,
+            GraphAlgorithmType.initialVertexValueMapper(GraphAlgorithmType.sssp),
+            GraphSerialized.with(Serdes.Long(), Serdes.Double(), Serdes.Double()));
+
+        Properties props = ClientUtils.streamsConfig("prepare-" + suffix, "prepare-client-" + suffix,
+            CLUSTER.bootstrapServers(), graph.keySerde().getClass(), graph.vertexValueSerde().getClass());
+        CompletableFuture<Map<TopicPartition, Long>> state = GraphUtils.groupEdgesBySourceAndRepartition(builder, props, graph, "vertices-" + suffix, "edgesGroupedBySource-" + suffix, 2, (short) 1);
+        Map<TopicPartition, Long> offsets = state.get();
+
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SingleSourceShortestPaths.SRC_VERTEX_ID, 1L);
+        algorithm =
+            new PregelGraphAlgorithm<>(null, "run-" + suffix, CLUSTER.bootstrapServers(),
+                CLUSTER.zKConnectString(), "vertices-" + suffix, "edgesGroupedBySource-" + suffix, offsets, graph.serialized(),
+                "solutionSet-" + suffix, "solutionSetStore-" + suffix, "workSet-" + suffix, 2, (short) 1,
+                configs, Optional.empty(), new SingleSourceShortestPaths());
+        props = ClientUtils.streamsConfig("run-" + suffix, "run-client-" + suffix, CLUSTER.bootstrapServers(),
+            graph.keySerde().getClass(), KryoSerde.class);
+        algorithm.configure(new StreamsBuilder(), props);
+        GraphAlgorithmState<KTable<Long, Double>> paths = algorithm.run();
+        paths.result().get();
+        int lastSuperstep = algorithm.state().superstep();
+
+        // Add shorter paths from 2 to 4 and 5
+        Map<Long, Double> edgesOf2 = new HashMap<>();
+        edgesOf2.put(3L, 23.0);
+        edgesOf2.put(4L, 1.0);
+        edgesOf2.put(5L, 2.0);
+        try (Producer<Long, Map<Long, Double>> producer = new KafkaProducer<>(producerConfig, new LongSerializer(),
+            PregelSerdes.edgesGroupedBySource(graph.serialized()).serializer())) {
+            producer.send(new ProducerRecord<>("edgesGroupedBySource-" + suffix, 2L, edgesOf2)).get();
+        }
+
+        GraphAlgorithmState<KTable<Long, Double>> resumed =
+            ((PregelGraphAlgorithm<Long, Double, Double, Double>) algorithm).runIncremental(null, Integer.MAX_VALUE);
+        // Resumed from the previous result rather than started over
+        assertEquals(lastSuperstep, resumed.superstep());
+        resumed.result().get();
+        assertTrue(algorithm.state().superstep() > lastSuperstep);
+
+        Thread.sleep(2000);
+
+        Map<Long, Double> map = StreamUtils.mapFromStore(resumed.streams(), "solutionSetStore-" + suffix);
+        log.debug("result: {}", map);
+
+        Map<Long, Double> expectedResult = new HashMap<>();
+        expectedResult.put(1L, 0.0);
+        expectedResult.put(2L, 12.0);
+        expectedResult.put(3L, 13.0);
+        expectedResult.put(4L, 13.0);
+        expectedResult.put(5L, 14.0);
+
+        assertEquals(expectedResult, map);
+    }
+
     @After
     public void tearDown() throws Exception {
         algorithm.close();
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AggregatorChannelTest {
+
+    private static final String TOPIC = "aggregates-test";
+    private static final TopicPartition TP = new TopicPartition(TOPIC, 0);
+
+    private MockProducer<byte[], byte[]> producer;
+    private MockConsumer<byte[], byte[]> consumer;
+    private AggregatorChannel<Integer> channel;
+    private long offset;
+
+    @Before
+    public void setUp() {
+        producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.updatePartitions(TOPIC, Collections.singletonList(new PartitionInfo(TOPIC, 0, null, null, null)));
+        consumer.updateBeginningOffsets(Collections.singletonMap(TP, 0L));
+        consumer.updateEndOffsets(Collections.singletonMap(TP, 0L));
+        channel = new AggregatorChannel<>(TOPIC, producer, consumer,
+            (reduced, partial) -> (reduced != null ? reduced : 0) + partial[0]);
+    }
+
+    private void arrive(int superstep, int partition, byte[] data) {
+        consumer.addRecord(new ConsumerRecord<>(TOPIC, 0, offset++, AggregatorChannel.key(superstep, partition), data));
+        consumer.updateEndOffsets(Collections.singletonMap(TP, offset));
+    }
+
+    @Test
+    public void testReducePartialsAsTheyArrive() {
+        arrive(0, 0, new byte[] {1});
+        channel.poll();
+        arrive(0, 1, new byte[] {2});
+        // A partial that is received again is reduced once
+        arrive(0, 0, new byte[] {1});
+        arrive(1, 0, new byte[] {4});
+
+        assertEquals(Integer.valueOf(3), channel.partials(0));
+        assertEquals(Integer.valueOf(4), channel.partials(1));
+        assertNull(channel.aggregates(0));
+    }
+
+    @Test
+    public void testRemoveKeepsPreviousAggregates() {
+        arrive(0, AggregatorChannel.ALL_PARTITIONS, new byte[] {1});
+        arrive(1, 0, new byte[] {2});
+        arrive(1, AggregatorChannel.ALL_PARTITIONS, new byte[] {3});
+        arrive(2, 0, new byte[] {4});
+        channel.partials(2);
+
+        channel.remove(1);
+        // A partial that is sent again after it was reduced is ignored
+        arrive(0, 1, new byte[] {5});
+
+        assertNull(channel.aggregates(0));
+        assertNull(channel.partials(0));
+        assertArrayEquals(new byte[] {3}, channel.aggregates(1));
+        assertEquals(Integer.valueOf(2), channel.partials(1));
+        assertEquals(Integer.valueOf(4), channel.partials(2));
+    }
+
+    @Test
+    public void testDeletedRecordsDiscardSuperstep() {
+        arrive(1, 0, new byte[] {2});
+        arrive(1, 1, new byte[] {3});
+        arrive(1, 0, null);
+        arrive(1, 1, null);
+        arrive(1, 0, new byte[] {5});
+
+        assertEquals(Integer.valueOf(5), channel.partials(1));
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        arrive(0, AggregatorChannel.ALL_PARTITIONS, new byte[] {1});
+        arrive(1, 0, new byte[] {2});
+        channel.send(2, AggregatorChannel.ALL_PARTITIONS, new byte[] {3});
+
+        channel.truncate(1);
+
+        assertArrayEquals(new byte[] {1}, channel.aggregates(0));
+        assertNull(channel.partials(1));
+        assertNull(channel.aggregates(2));
+        // The send and a tombstone for each of the deleted records
+        assertEquals(3, producer.history().size());
+        for (ProducerRecord<byte[], byte[]> record : producer.history().subList(1, 3)) {
+            assertNull(record.value());
+        }
+    }
+}
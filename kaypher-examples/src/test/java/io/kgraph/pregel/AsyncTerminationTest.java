@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.kgraph.pregel.AsyncTermination.Status;
+import io.vavr.Tuple3;
+
+public class AsyncTerminationTest {
+
+    @Test
+    public void testWaitsForAllPartitions() {
+        AsyncTermination termination = new AsyncTermination(2);
+        // Partition 1 has not reported wave 1 yet
+        assertEquals(Status.WAITING, termination.check(1, Arrays.asList(report(1, 5, 5), report(0, 0, 0))));
+        assertEquals(Status.NEXT_WAVE, termination.check(1, Arrays.asList(report(1, 5, 5), report(1, 3, 3))));
+        assertEquals(Status.CONVERGED, termination.check(2, Arrays.asList(report(2, 5, 5), report(2, 3, 3))));
+    }
+
+    @Test
+    public void testMessagesInFlight() {
+        AsyncTermination termination = new AsyncTermination(2);
+        // Partition 0 sent 4 messages to partition 1 that were not received yet
+        assertEquals(Status.NEXT_WAVE, termination.check(1, Arrays.asList(report(1, 10, 6), report(1, 6, 6))));
+        assertEquals(Status.NEXT_WAVE, termination.check(2, Arrays.asList(report(2, 10, 6), report(2, 6, 6))));
+        // Received, and answered by messages that are received before the next wave
+        assertEquals(Status.NEXT_WAVE, termination.check(3, Arrays.asList(report(3, 10, 8), report(3, 8, 10))));
+        assertEquals(Status.CONVERGED, termination.check(4, Arrays.asList(report(4, 10, 8), report(4, 8, 10))));
+    }
+
+    @Test
+    public void testCountsRaceWithinWave() {
+        AsyncTermination termination = new AsyncTermination(2);
+        // Partition 1 reported before it sent a message that partition 0 received before reporting, so the
+        // totals match although partition 1 has since become active again
+        assertEquals(Status.NEXT_WAVE, termination.check(1, Arrays.asList(report(1, 5, 6), report(1, 6, 5))));
+        // The message is now counted as sent, and a reply to it is in flight
+        assertEquals(Status.NEXT_WAVE, termination.check(2, Arrays.asList(report(2, 6, 6), report(2, 7, 6))));
+        // The reply was received: the totals match again, but differ from the previous wave
+        assertEquals(Status.NEXT_WAVE, termination.check(3, Arrays.asList(report(3, 6, 7), report(3, 7, 6))));
+        assertEquals(Status.CONVERGED, termination.check(4, Arrays.asList(report(4, 6, 7), report(4, 7, 6))));
+    }
+
+    @Test
+    public void testWavesMustBeConsecutive() {
+        AsyncTermination termination = new AsyncTermination(1);
+        assertEquals(Status.NEXT_WAVE, termination.check(1, Arrays.asList(report(1, 5, 5))));
+        // Checked again before the next wave starts
+        assertEquals(Status.NEXT_WAVE, termination.check(1, Arrays.asList(report(1, 5, 5))));
+        // Wave 2 was missed, for example after the leader changed
+        assertEquals(Status.NEXT_WAVE, termination.check(3, Arrays.asList(report(3, 5, 5))));
+        assertEquals(Status.CONVERGED, termination.check(4, Arrays.asList(report(4, 5, 5))));
+    }
+
+    private static Tuple3<Integer, Long, Long> report(int wave, long sent, long received) {
+        return new Tuple3<>(wave, sent, received);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.common.utils.Utils;
+import org.junit.Test;
+
+public class DefaultVertexPartitionerTest {
+
+    private static final int NUM_PARTITIONS = 7;
+
+    @Test
+    public void testLongKeys() {
+        DefaultVertexPartitioner<Long> partitioner = new DefaultVertexPartitioner<>();
+        LongSerializer serializer = new LongSerializer();
+        partitioner.configure(Collections.emptyMap(), serializer);
+        for (long key = -1000L; key < 1000L; key++) {
+            assertEquals(expected(serializer, key), partitioner.partition(key, NUM_PARTITIONS));
+        }
+        assertEquals(expected(serializer, Long.MAX_VALUE), partitioner.partition(Long.MAX_VALUE, NUM_PARTITIONS));
+        assertEquals(expected(serializer, Long.MIN_VALUE), partitioner.partition(Long.MIN_VALUE, NUM_PARTITIONS));
+    }
+
+    @Test
+    public void testMurmur2InPlace() {
+        LongSerializer longSerializer = new LongSerializer();
+        IntegerSerializer integerSerializer = new IntegerSerializer();
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long key = random.nextLong();
+            assertEquals(Utils.murmur2(longSerializer.serialize(null, key)), DefaultVertexPartitioner.murmur2(key));
+            int intKey = (int) key;
+            assertEquals(Utils.murmur2(integerSerializer.serialize(null, intKey)), DefaultVertexPartitioner.murmur2(intKey));
+        }
+    }
+
+    @Test
+    public void testIntegerKeys() {
+        DefaultVertexPartitioner<Integer> partitioner = new DefaultVertexPartitioner<>();
+        IntegerSerializer serializer = new IntegerSerializer();
+        partitioner.configure(Collections.emptyMap(), serializer);
+        for (int key = -1000; key < 1000; key++) {
+            assertEquals(expected(serializer, key), partitioner.partition(key, NUM_PARTITIONS));
+        }
+    }
+
+    @Test
+    public void testCachedKeys() {
+        DefaultVertexPartitioner<String> partitioner = new DefaultVertexPartitioner<>();
+        StringSerializer serializer = new StringSerializer();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(DefaultVertexPartitioner.CACHE_SIZE, 10);
+        partitioner.configure(configs, serializer);
+        for (int i = 0; i < 3; i++) {
+            for (int key = 0; key < 100; key++) {
+                String vertex = "vertex-" + key;
+                assertEquals(expected(serializer, vertex), partitioner.partition(vertex, NUM_PARTITIONS));
+                assertEquals(expected(serializer, vertex, NUM_PARTITIONS + 1), partitioner.partition(vertex, NUM_PARTITIONS + 1));
+            }
+        }
+    }
+
+    private static <K> int expected(Serializer<K> serializer, K key) {
+        return expected(serializer, key, NUM_PARTITIONS);
+    }
+
+    private static <K> int expected(Serializer<K> serializer, K key, int numPartitions) {
+        return Utils.toPositive(Utils.murmur2(serializer.serialize(null, key))) % numPartitions;
+    }
+}
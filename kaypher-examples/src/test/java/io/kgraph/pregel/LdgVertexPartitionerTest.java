@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.Test;
+
+public class LdgVertexPartitionerTest {
+
+    @Test
+    public void testTwoChainsArePlacedApart() {
+        LdgVertexPartitioner<Long> partitioner = new LdgVertexPartitioner<>();
+        partitioner.configure(Collections.singletonMap(LdgVertexPartitioner.SLACK, "1.0"), new LongSerializer());
+        for (long first : new long[] {0L, 10L}) {
+            for (long vertex = first; vertex < first + 4; vertex++) {
+                partitioner.place(vertex, Arrays.asList(vertex - 1, vertex + 1), 2);
+            }
+        }
+        for (long vertex = 0L; vertex < 4L; vertex++) {
+            assertEquals(0, partitioner.partition(vertex, 2));
+            assertEquals(1, partitioner.partition(vertex + 10, 2));
+        }
+        assertTrue(partitioner.isPlacementBased());
+    }
+
+    @Test
+    public void testPlacedAndUnknownVertices() {
+        LdgVertexPartitioner<Long> partitioner = new LdgVertexPartitioner<>();
+        partitioner.configure(Collections.emptyMap(), new LongSerializer());
+        DefaultVertexPartitioner<Long> hashPartitioner = new DefaultVertexPartitioner<>();
+        hashPartitioner.configure(Collections.emptyMap(), new LongSerializer());
+
+        partitioner.placed(1L, 2);
+        assertEquals(2, partitioner.partition(1L, 3));
+        // Placing again keeps the loaded placement
+        assertEquals(2, partitioner.place(1L, Collections.emptyList(), 3));
+        assertEquals(hashPartitioner.partition(42L, 3), partitioner.partition(42L, 3));
+    }
+}
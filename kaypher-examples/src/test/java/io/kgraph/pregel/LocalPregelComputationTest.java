@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.kafka.streams.KeyValue;
+import org.junit.Test;
+
+import io.kgraph.Edge;
+import io.kgraph.GraphAlgorithmState;
+import io.kgraph.TestGraphUtils;
+import io.kgraph.library.BreadthFirstSearch;
+import io.kgraph.library.ConnectedComponents;
+import io.kgraph.library.PageRank;
+import io.kgraph.library.SingleSourceShortestPaths;
+import io.vavr.Tuple2;
+
+public class LocalPregelComputationTest {
+
+    @Test
+    public void testChainLongerPageRank() {
+        double resetProb = 0.15;
+        double tol = 0.0001;
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(PageRank.RESET_PROBABILITY, resetProb);
+        configs.put(PageRank.TOLERANCE, tol);
+        configs.put(LocalPregelComputation.PARALLELISM, 4);
+        Optional<Double> initMsg = Optional.of(resetProb / (1.0 - resetProb));
+
+        try (LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> computation =
+                 new LocalPregelComputation<>(8, configs, initMsg, new PageRank<>())) {
+            for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getChain()) {
+                computation.addVertex(edge.key.source(), new Tuple2<>(0.0, 0.0));
+                computation.addVertex(edge.key.target(), new Tuple2<>(0.0, 0.0));
+                computation.addEdges(edge.key.source(), Collections.singletonMap(edge.key.target(), edge.value));
+            }
+            PregelState state = computation.run(11);
+            assertEquals(GraphAlgorithmState.State.COMPLETED, state.state());
+
+            List<Double> list = computation.result().values().stream()
+                .map(Tuple2::_1).sorted().collect(Collectors.toList());
+
+            List<Double> expectedResult = new ArrayList<>();
+            expectedResult.add(0.15);
+            expectedResult.add(0.27749999999999997);
+            expectedResult.add(0.38587499999999997);
+            expectedResult.add(0.47799375);
+            expectedResult.add(0.5562946875);
+            expectedResult.add(0.622850484375);
+            expectedResult.add(0.67942291171875);
+            expectedResult.add(0.7275094749609375);
+            expectedResult.add(0.7683830537167969);
+            expectedResult.add(0.8031255956592774);
+            assertEquals(expectedResult, list);
+        }
+    }
+
+    @Test
+    public void testMirroredPageRank() {
+        double resetProb = 0.15;
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(PageRank.RESET_PROBABILITY, resetProb);
+        configs.put(PageRank.TOLERANCE, 1e-10);
+        configs.put(LocalPregelComputation.PARALLELISM, 4);
+        Map<String, Object> mirrorConfigs = new HashMap<>(configs);
+        mirrorConfigs.put(LocalPregelComputation.MIRROR_DEGREE, 10);
+        Optional<Double> initMsg = Optional.of(resetProb / (1.0 - resetProb));
+
+        try (LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> computation =
+                 new LocalPregelComputation<>(8, configs, initMsg, new PageRank<>());
+             LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> mirrored =
+                 new LocalPregelComputation<>(8, mirrorConfigs, initMsg, new PageRank<>())) {
+            // A hub with an edge to and from each of the other vertices
+            Map<Long, Double> hubEdges = new HashMap<>();
+            for (long i = 1; i <= 200; i++) {
+                hubEdges.put(i, 1.0);
+            }
+            for (LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> c :
+                     Arrays.asList(computation, mirrored)) {
+                c.addVertex(0L, new Tuple2<>(0.0, 0.0));
+                c.addEdges(0L, hubEdges);
+                for (long i = 1; i <= 200; i++) {
+                    c.addVertex(i, new Tuple2<>(0.0, 0.0));
+                    c.addEdges(i, Collections.singletonMap(0L, 1.0));
+                }
+                assertEquals(GraphAlgorithmState.State.COMPLETED, c.run(100).state());
+            }
+
+            Map<Long, Tuple2<Double, Double>> expected = computation.result();
+            Map<Long, Tuple2<Double, Double>> result = mirrored.result();
+            assertEquals(expected.keySet(), result.keySet());
+            for (Map.Entry<Long, Tuple2<Double, Double>> entry : expected.entrySet()) {
+                assertEquals(entry.getValue()._1, result.get(entry.getKey())._1, 1e-9);
+            }
+            assertTrue(mirrored.superstepSkews().get(0) < computation.superstepSkews().get(0));
+        }
+    }
+
+    @Test
+    public void testTwoChainsConnectedComponents() {
+        try (LocalPregelComputation<Long, Long, Long, Long> computation =
+                 new LocalPregelComputation<>(4, new HashMap<>(), Optional.empty(), new ConnectedComponents<>())) {
+            Map<Long, Map<Long, Long>> edgesBySource = new HashMap<>();
+            for (KeyValue<Edge<Long>, Long> edge : TestGraphUtils.getTwoChains()) {
+                computation.addVertex(edge.key.source(), edge.key.source());
+                computation.addVertex(edge.key.target(), edge.key.target());
+                edgesBySource.computeIfAbsent(edge.key.source(), k -> new HashMap<>()).put(edge.key.target(), edge.value);
+            }
+            edgesBySource.forEach(computation::addEdges);
+            computation.run(Integer.MAX_VALUE);
+
+            Map<Long, Long> result = computation.result();
+            for (Map.Entry<Long, Long> entry : result.entrySet()) {
+                assertEquals(entry.getKey() < 10 ? 0L : 10L, (long) entry.getValue());
+            }
+        }
+    }
+
+    private static LocalPregelComputation<Long, Long, Long, Long> twoChainsConnectedComponents() {
+        LocalPregelComputation<Long, Long, Long, Long> computation =
+            new LocalPregelComputation<>(4, new HashMap<>(), Optional.empty(), new ConnectedComponents<>());
+        Map<Long, Map<Long, Long>> edgesBySource = new HashMap<>();
+        for (KeyValue<Edge<Long>, Long> edge : TestGraphUtils.getTwoChains()) {
+            computation.addVertex(edge.key.source(), edge.key.source());
+            computation.addVertex(edge.key.target(), edge.key.target());
+            edgesBySource.computeIfAbsent(edge.key.source(), k -> new HashMap<>()).put(edge.key.target(), edge.value);
+        }
+        edgesBySource.forEach(computation::addEdges);
+        return computation;
+    }
+
+    @Test
+    public void testIncrementalConnectedComponents() {
+        try (LocalPregelComputation<Long, Long, Long, Long> computation = twoChainsConnectedComponents()) {
+            computation.run(Integer.MAX_VALUE);
+            int supersteps = computation.superstepTimes().size();
+
+            // Join the chains, and add a vertex to the second one
+            computation.addEdges(9L, Collections.singletonMap(10L, 1L));
+            computation.addVertex(21L, 21L);
+            computation.addEdges(20L, Collections.singletonMap(21L, 1L));
+            PregelState state = computation.runIncremental(Integer.MAX_VALUE);
+            assertEquals(GraphAlgorithmState.State.COMPLETED, state.state());
+            assertTrue(state.superstep() >= supersteps);
+
+            Map<Long, Long> result = computation.result();
+            assertEquals(22, result.size());
+            for (Map.Entry<Long, Long> entry : result.entrySet()) {
+                assertEquals(0L, (long) entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalConnectedComponentsWithRemovedEdges() {
+        try (LocalPregelComputation<Long, Long, Long, Long> computation = twoChainsConnectedComponents()) {
+            computation.run(Integer.MAX_VALUE);
+
+            // Removing an edge splits the first chain, which is recomputed from the initial values
+            computation.removeEdges(4L);
+            computation.runIncremental(Integer.MAX_VALUE);
+
+            Map<Long, Long> result = computation.result();
+            for (Map.Entry<Long, Long> entry : result.entrySet()) {
+                long vertex = entry.getKey();
+                assertEquals(vertex < 5 ? 0L : vertex < 10 ? 5L : 10L, (long) entry.getValue());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalShortestPaths() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(SingleSourceShortestPaths.SRC_VERTEX_ID, 1L);
+        try (LocalPregelComputation<Long, Double, Double, Double> computation =
+                 new LocalPregelComputation<>(2, configs, Optional.empty(), new SingleSourceShortestPaths())) {
+            Map<Long, Map<Long, Double>> edgesBySource = new HashMap<>();
+            for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getLongDoubleEdges()) {
+                computation.addVertex(edge.key.source(), Double.POSITIVE_INFINITY);
+                computation.addVertex(edge.key.target(), Double.POSITIVE_INFINITY);
+                edgesBySource.computeIfAbsent(edge.key.source(), k -> new HashMap<>()).put(edge.key.target(), edge.value);
+            }
+            edgesBySource.forEach(computation::addEdges);
+            computation.run(Integer.MAX_VALUE);
+            assertEquals(48.0, computation.result().get(5L), 0.0);
+
+            Map<Long, Double> edges = new HashMap<>(edgesBySource.get(1L));
+            edges.put(4L, 1.0);
+            computation.addEdges(1L, edges);
+            computation.runIncremental(Integer.MAX_VALUE);
+
+            Map<Long, Double> result = computation.result();
+            assertEquals(0.0, result.get(1L), 0.0);
+            assertEquals(12.0, result.get(2L), 0.0);
+            assertEquals(13.0, result.get(3L), 0.0);
+            assertEquals(1.0, result.get(4L), 0.0);
+            assertEquals(46.0, result.get(5L), 0.0);
+        }
+    }
+
+    @Test
+    public void testIncrementalBreadthFirstSearch() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(BreadthFirstSearch.SRC_VERTEX_ID, 0L);
+        try (LocalPregelComputation<Long, Long, Double, Long> computation =
+                 new LocalPregelComputation<>(2, configs, Optional.empty(), new BreadthFirstSearch<>())) {
+            for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getChain()) {
+                computation.addVertex(edge.key.source(), BreadthFirstSearch.UNVISITED);
+                computation.addVertex(edge.key.target(), BreadthFirstSearch.UNVISITED);
+                computation.addEdges(edge.key.source(), Collections.singletonMap(edge.key.target(), edge.value));
+            }
+            computation.run(Integer.MAX_VALUE);
+            assertEquals(9L, (long) computation.result().get(9L));
+
+            Map<Long, Double> edges = new HashMap<>();
+            edges.put(3L, 1.0);
+            edges.put(7L, 1.0);
+            computation.addEdges(2L, edges);
+            computation.runIncremental(Integer.MAX_VALUE);
+
+            Map<Long, Long> result = computation.result();
+            for (long vertex = 0; vertex < 10; vertex++) {
+                assertEquals(vertex < 7 ? vertex : vertex - 4, (long) result.get(vertex));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalPageRank() {
+        double resetProb = 0.15;
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(PageRank.RESET_PROBABILITY, resetProb);
+        configs.put(PageRank.TOLERANCE, 1e-10);
+        Optional<Double> initMsg = Optional.of(resetProb / (1.0 - resetProb));
+
+        Map<Long, Map<Long, Double>> edgesBySource = new HashMap<>();
+        for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getChain()) {
+            edgesBySource.computeIfAbsent(edge.key.source(), k -> new HashMap<>()).put(edge.key.target(), edge.value);
+        }
+        edgesBySource.get(0L).put(5L, 1.0);
+        Map<Long, Map<Long, Double>> changedEdges = new HashMap<>();
+        changedEdges.put(9L, Collections.singletonMap(0L, 1.0));
+        changedEdges.put(3L, Collections.singletonMap(7L, 1.0));
+        changedEdges.put(10L, Collections.singletonMap(2L, 1.0));
+
+        try (LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> computation =
+                 new LocalPregelComputation<>(4, configs, initMsg, new PageRank<>());
+             LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> expected =
+                 new LocalPregelComputation<>(4, configs, initMsg, new PageRank<>())) {
+            for (long vertex = 0; vertex < 10; vertex++) {
+                computation.addVertex(vertex, new Tuple2<>(0.0, 0.0));
+                expected.addVertex(vertex, new Tuple2<>(0.0, 0.0));
+            }
+            edgesBySource.forEach(computation::addEdges);
+            computation.run(Integer.MAX_VALUE);
+
+            computation.addVertex(10L, new Tuple2<>(0.0, 0.0));
+            changedEdges.forEach(computation::addEdges);
+            computation.runIncremental(Integer.MAX_VALUE);
+
+            expected.addVertex(10L, new Tuple2<>(0.0, 0.0));
+            edgesBySource.forEach(expected::addEdges);
+            changedEdges.forEach(expected::addEdges);
+            expected.run(Integer.MAX_VALUE);
+
+            Map<Long, Tuple2<Double, Double>> result = computation.result();
+            assertEquals(11, result.size());
+            for (Map.Entry<Long, Tuple2<Double, Double>> entry : expected.result().entrySet()) {
+                assertEquals(entry.getValue()._1, result.get(entry.getKey())._1, 1e-8);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedGraph() throws Exception {
+        LocalGraph<Long, Long, Double> graph = new LocalGraph<>(4);
+        for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getChain()) {
+            graph.addVertex(edge.key.source(), edge.key.source());
+            graph.addVertex(edge.key.target(), edge.key.target());
+            graph.addEdges(edge.key.source(), Collections.singletonMap(edge.key.target(), edge.value));
+        }
+
+        double resetProb = 0.15;
+        Map<String, Object> pageRankConfigs = new HashMap<>();
+        pageRankConfigs.put(PageRank.RESET_PROBABILITY, resetProb);
+        pageRankConfigs.put(PageRank.TOLERANCE, 0.0001);
+        Map<String, Object> bfsConfigs = new HashMap<>();
+        bfsConfigs.put(BreadthFirstSearch.SRC_VERTEX_ID, 0L);
+
+        try (LocalPregelComputation<Long, Tuple2<Double, Double>, Double, Double> pageRank =
+                 new LocalPregelComputation<>(graph, (id, value) -> new Tuple2<>(0.0, 0.0), pageRankConfigs,
+                     Optional.of(resetProb / (1.0 - resetProb)), new PageRank<>());
+             LocalPregelComputation<Long, Long, Double, Long> components =
+                 new LocalPregelComputation<>(graph, (id, value) -> value, new HashMap<>(),
+                     Optional.empty(), new ConnectedComponents<>());
+             LocalPregelComputation<Long, Long, Double, Long> bfs =
+                 new LocalPregelComputation<>(graph, (id, value) -> BreadthFirstSearch.UNVISITED, bfsConfigs,
+                     Optional.empty(), new BreadthFirstSearch<>())) {
+
+            // Run side by side; PageRank changes its edge values, which the others must not see
+            Thread pageRankThread = new Thread(() -> pageRank.run(11));
+            pageRankThread.start();
+            components.run(Integer.MAX_VALUE);
+            pageRankThread.join();
+            bfs.run(Integer.MAX_VALUE);
+
+            List<Double> ranks = pageRank.result().values().stream()
+                .map(Tuple2::_1).sorted().collect(Collectors.toList());
+            assertEquals(0.15, ranks.get(0), 0.0);
+            assertEquals(0.8031255956592774, ranks.get(9), 0.0);
+            for (long vertex = 0; vertex < 10; vertex++) {
+                assertEquals(0L, (long) components.result().get(vertex));
+                assertEquals(vertex, (long) bfs.result().get(vertex));
+                if (vertex < 9) {
+                    assertEquals(1.0, graph.edges(graph.vertexToPartition(vertex)).get(vertex).get(vertex + 1), 0.0);
+                }
+            }
+
+            // A change to the graph is seen by each computation; removing 2 -> 3 recomputes the search
+            graph.addEdges(2L, Collections.singletonMap(7L, 1.0));
+            components.runIncremental(Integer.MAX_VALUE);
+            bfs.runIncremental(Integer.MAX_VALUE);
+            assertEquals(3L, (long) bfs.result().get(7L));
+            assertEquals(BreadthFirstSearch.UNVISITED, (long) bfs.result().get(3L));
+        }
+    }
+}
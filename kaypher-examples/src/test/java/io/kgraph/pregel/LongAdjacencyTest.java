@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.junit.Test;
+
+import io.kgraph.GraphSerialized;
+
+public class LongAdjacencyTest {
+
+    private final Serde<Map<Long, Double>> serde =
+        PregelSerdes.edgesGroupedBySource(GraphSerialized.with(Serdes.Long(), Serdes.Long(), Serdes.Double()));
+
+    @Test
+    public void testSortedLazyIteration() {
+        Map<Long, Double> edges = new HashMap<>();
+        edges.put(Long.MAX_VALUE, 1.0);
+        edges.put(5L, 2.0);
+        edges.put(Long.MIN_VALUE, 3.0);
+        edges.put(-1L, 4.0);
+        Map<Long, Double> adjacency = serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", edges));
+
+        assertTrue(adjacency instanceof LongAdjacency);
+        assertEquals(edges, adjacency);
+        List<Long> targets = new ArrayList<>(adjacency.keySet());
+        List<Long> expected = new ArrayList<>();
+        expected.add(Long.MIN_VALUE);
+        expected.add(-1L);
+        expected.add(5L);
+        expected.add(Long.MAX_VALUE);
+        assertEquals(expected, targets);
+        assertEquals(4.0, adjacency.get(-1L), 0.0);
+        assertTrue(adjacency.containsKey(Long.MAX_VALUE));
+        assertFalse(adjacency.containsKey(6L));
+        assertNull(adjacency.get(6L));
+    }
+
+    @Test
+    public void testMutation() {
+        Map<Long, Double> edges = new HashMap<>();
+        for (long target = 0; target < 100; target += 3) {
+            edges.put(target, (double) target);
+        }
+        byte[] data = serde.serializer().serialize("topic", edges);
+        Map<Long, Double> adjacency = serde.deserializer().deserialize("topic", data);
+        // Unchanged edges are written back as they were read
+        assertArrayEquals(data, serde.serializer().serialize("topic", adjacency));
+
+        adjacency.put(1L, -1.0);
+        adjacency.remove(0L);
+        edges.put(1L, -1.0);
+        edges.remove(0L);
+        assertEquals(edges, adjacency);
+        assertEquals(edges, serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", adjacency)));
+    }
+}
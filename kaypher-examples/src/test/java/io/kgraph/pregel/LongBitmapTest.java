@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class LongBitmapTest {
+
+    @Test
+    public void testDenseAndSparseValues() {
+        LongBitmap bitmap = new LongBitmap();
+        Set<Long> expected = new HashSet<>();
+        // Dense enough to switch the first container to a bitmap, plus sparse and negative values
+        for (long value = 0; value < 10000; value++) {
+            assertTrue(bitmap.add(value));
+            expected.add(value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextLong();
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+        assertFalse(bitmap.add(5L));
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(expected, values(bitmap));
+
+        // Shrink the first container back to an array
+        for (long value = 0; value < 9000; value++) {
+            assertTrue(bitmap.remove(value));
+            expected.remove(value);
+        }
+        assertFalse(bitmap.remove(0L));
+        assertFalse(bitmap.contains(0L));
+        assertTrue(bitmap.contains(9999L));
+        assertEquals(expected.size(), bitmap.cardinality());
+        assertEquals(expected, values(bitmap));
+
+        for (Long value : expected) {
+            assertTrue(bitmap.remove(value));
+        }
+        assertTrue(bitmap.isEmpty());
+        assertFalse(bitmap.iterator().hasNext());
+    }
+
+    private static Set<Long> values(LongBitmap bitmap) {
+        Set<Long> values = new HashSet<>();
+        for (Long value : bitmap) {
+            values.add(value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+
+import org.apache.kafka.streams.KeyValue;
+import org.junit.Test;
+
+import io.kgraph.Edge;
+import io.kgraph.GraphAlgorithmState;
+import io.kgraph.TestGraphUtils;
+import io.kgraph.library.LongPageRank;
+import io.kgraph.library.LongSingleSourceShortestPaths;
+
+public class LongCsrPregelComputationTest {
+
+    @Test
+    public void testChainLongerPageRank() {
+        double resetProb = 0.15;
+        double tol = 0.0001;
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(LongPageRank.RESET_PROBABILITY, resetProb);
+        configs.put(LongPageRank.TOLERANCE, tol);
+        configs.put(LocalPregelComputation.PARALLELISM, 4);
+        OptionalDouble initMsg = OptionalDouble.of(resetProb / (1.0 - resetProb));
+
+        LongCsrGraph.Builder builder = LongCsrGraph.builder();
+        for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getChain()) {
+            builder.addEdge(edge.key.source(), edge.key.target(), edge.value);
+        }
+        LongCsrGraph graph = builder.build();
+
+        try (LongCsrPregelComputation computation =
+                 new LongCsrPregelComputation(graph, 3, configs, initMsg, new LongPageRank())) {
+            PregelState state = computation.run(11);
+            assertEquals(GraphAlgorithmState.State.COMPLETED, state.state());
+
+            List<Double> list = new ArrayList<>();
+            for (int v = 0; v < graph.numVertices(); v++) {
+                list.add(graph.value(v));
+            }
+            Collections.sort(list);
+
+            List<Double> expectedResult = new ArrayList<>();
+            expectedResult.add(0.15);
+            expectedResult.add(0.27749999999999997);
+            expectedResult.add(0.38587499999999997);
+            expectedResult.add(0.47799375);
+            expectedResult.add(0.5562946875);
+            expectedResult.add(0.622850484375);
+            expectedResult.add(0.67942291171875);
+            expectedResult.add(0.7275094749609375);
+            expectedResult.add(0.7683830537167969);
+            expectedResult.add(0.8031255956592774);
+            assertEquals(expectedResult, list);
+        }
+    }
+
+    @Test
+    public void testSingleSourceShortestPaths() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(LongSingleSourceShortestPaths.SRC_VERTEX_ID, 1L);
+
+        LongCsrGraph.Builder builder = LongCsrGraph.builder().defaultValue(Double.POSITIVE_INFINITY);
+        for (KeyValue<Edge<Long>, Double> edge : TestGraphUtils.getLongDoubleEdges()) {
+            builder.addEdge(edge.key.source(), edge.key.target(), edge.value);
+        }
+        LongCsrGraph graph = builder.build();
+
+        try (LongCsrPregelComputation computation =
+                 new LongCsrPregelComputation(graph, 2, configs, OptionalDouble.empty(),
+                     new LongSingleSourceShortestPaths())) {
+            PregelState state = computation.run(Integer.MAX_VALUE);
+            assertEquals(GraphAlgorithmState.State.COMPLETED, state.state());
+
+            Map<Long, Double> result = new HashMap<>();
+            for (int v = 0; v < graph.numVertices(); v++) {
+                result.put(graph.id(v), graph.value(v));
+            }
+
+            Map<Long, Double> expectedResult = new HashMap<>();
+            expectedResult.put(1L, 0.0);
+            expectedResult.put(2L, 12.0);
+            expectedResult.put(3L, 13.0);
+            expectedResult.put(4L, 47.0);
+            expectedResult.put(5L, 48.0);
+            assertEquals(expectedResult, result);
+        }
+    }
+}
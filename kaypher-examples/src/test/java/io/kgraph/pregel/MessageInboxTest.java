@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.Test;
+
+public class MessageInboxTest {
+
+    @Test
+    public void testCombineReplayedRecord() {
+        MessageInbox<Long, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.Long());
+        inbox.put(1, 5L, 1L, Collections.singletonList(1.0));
+        inbox.put(1, 5L, 2L, Collections.singletonList(2.0));
+        // The record of sender 1 is received again, as after a failure before the offsets were committed
+        inbox.put(1, 5L, 1L, Collections.singletonList(1.0));
+
+        assertEquals(Collections.singletonMap(5L, Collections.singletonList(3.0)),
+            inbox.messages(1, 5L, Double::sum));
+    }
+
+    @Test
+    public void testRestoreCheckpoint() {
+        MessageInbox<Long, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.Long());
+        // The inbox of the checkpoint at superstep 2, and messages received after it
+        inbox.put(2, 5L, 1L, Collections.singletonList(1.0));
+        inbox.put(2, 6L, 1L, Collections.singletonList(1.0));
+        inbox.putIfAbsent(2, 7L, 7L);
+        inbox.put(3, 5L, 6L, Collections.singletonList(2.0));
+        inbox.put(4, 8L, 5L, Collections.singletonList(3.0));
+        inbox.put(256, 9L, 8L, Collections.singletonList(4.0));
+
+        inbox.deleteFrom(3);
+
+        assertEquals(new HashSet<>(Arrays.asList(5L, 6L, 7L)), inbox.targets(2));
+        assertEquals(Collections.emptySet(), inbox.targets(3));
+        assertEquals(Collections.emptySet(), inbox.targets(4));
+        assertEquals(Collections.emptySet(), inbox.targets(256));
+        assertEquals(Collections.singletonMap(7L, Collections.emptyList()), inbox.messages(2, 7L));
+    }
+
+    @Test
+    public void testSupersteps() {
+        MessageInbox<Long, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.Long());
+        assertEquals(Collections.emptyList(), inbox.supersteps());
+        inbox.put(2, 5L, 1L, Collections.singletonList(1.0));
+        inbox.put(2, 6L, 1L, Collections.singletonList(1.0));
+        inbox.putIfAbsent(3, 5L, 5L);
+        inbox.put(256, 9L, 8L, Collections.singletonList(4.0));
+
+        assertEquals(Arrays.asList(2, 3, 256), inbox.supersteps());
+    }
+
+    @Test
+    public void testKeyLayout() {
+        byte[] target = {1, 2};
+        byte[] sender = {3};
+        // Superstep, length of the target, target and sender
+        assertArrayEquals(new byte[] {0, 0, 1, 2, 0, 0, 0, 2, 1, 2, 3}, MessageInbox.key(258, target, sender).get());
+        assertArrayEquals(new byte[] {0, 0, 1, 2, 0, 0, 0, 2, 1, 2}, MessageInbox.prefix(258, target));
+        assertArrayEquals(new byte[] {0, 0, 1, 2}, MessageInbox.prefix(258));
+    }
+
+    @Test
+    public void testPrefixScanBounds() {
+        MessageInbox<byte[], Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.ByteArray());
+        byte[] target = {1, (byte) 0xFF};
+        // Keys right after the prefix of the target, whose upper bound is carried into the previous byte
+        inbox.put(255, target, new byte[] {(byte) 0xFF}, Collections.singletonList(1.0));
+        inbox.put(255, new byte[] {2, 0}, new byte[] {0}, Collections.singletonList(2.0));
+        inbox.put(256, target, new byte[] {0}, Collections.singletonList(3.0));
+
+        Map<byte[], List<Double>> messages = inbox.messages(255, target);
+        assertEquals(1, messages.size());
+        assertEquals(Collections.singletonList(1.0), messages.values().iterator().next());
+        assertEquals(2, inbox.targets(255).size());
+        assertEquals(1, inbox.targets(256).size());
+
+        inbox.delete(255);
+        assertEquals(Collections.emptySet(), inbox.targets(255));
+        assertEquals(1, inbox.targets(256).size());
+    }
+
+    @Test
+    public void testPutIfAbsent() {
+        MessageInbox<Long, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.Long());
+        inbox.put(1, 5L, 1L, Collections.singletonList(1.0));
+        // An empty record does not replace the messages of the sender
+        inbox.putIfAbsent(1, 5L, 1L);
+        inbox.putIfAbsent(1, 5L, 2L);
+
+        Map<Long, List<Double>> expected = new HashMap<>();
+        expected.put(1L, Collections.singletonList(1.0));
+        expected.put(2L, Collections.emptyList());
+        assertEquals(expected, inbox.messages(1, 5L));
+    }
+
+    @Test
+    public void testCombinedMessages() {
+        MessageInbox<Long, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.Long());
+        inbox.put(1, 5L, 1L, Arrays.asList(1.0, 2.0));
+        inbox.put(1, 5L, 2L, Collections.singletonList(4.0));
+        inbox.putIfAbsent(1, 5L, 3L);
+        inbox.putIfAbsent(1, 6L, 1L);
+        inbox.put(2, 5L, 1L, Collections.singletonList(8.0));
+
+        assertEquals(Collections.singletonMap(5L, Collections.singletonList(7.0)),
+            inbox.messages(1, 5L, Double::sum));
+        // A vertex that was only activated has no message to combine
+        assertEquals(Collections.singletonMap(6L, Collections.emptyList()), inbox.messages(1, 6L, Double::sum));
+        assertEquals(Collections.singletonMap(7L, Collections.emptyList()), inbox.messages(1, 7L, Double::sum));
+    }
+
+    @Test
+    public void testVariableLengthKeys() {
+        MessageInbox<String, Double> inbox = new MessageInbox<>(new ByteOrderedStore<>(), Serdes.String());
+        // Without the length of the target, both keys would serialize to the bytes of "abc"
+        inbox.put(1, "a", "bc", Collections.singletonList(1.0));
+        inbox.put(1, "ab", "c", Collections.singletonList(2.0));
+
+        assertEquals(Collections.singletonMap("bc", Collections.singletonList(1.0)), inbox.messages(1, "a"));
+        assertEquals(Collections.singletonMap("c", Collections.singletonList(2.0)), inbox.messages(1, "ab"));
+        assertEquals(Collections.emptyMap(), inbox.messages(1, "abc"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "ab")), inbox.targets(1));
+    }
+
+    /**
+     * A store ordered by the bytes of the keys, as a RocksDB store is.
+     */
+    static class ByteOrderedStore<V> implements KeyValueStore<Bytes, V> {
+
+        private final NavigableMap<Bytes, V> entries = new TreeMap<>();
+
+        @Override
+        public void put(Bytes key, V value) {
+            entries.put(key, value);
+        }
+
+        @Override
+        public V putIfAbsent(Bytes key, V value) {
+            return entries.putIfAbsent(key, value);
+        }
+
+        @Override
+        public void putAll(List<KeyValue<Bytes, V>> list) {
+            list.forEach(entry -> put(entry.key, entry.value));
+        }
+
+        @Override
+        public V delete(Bytes key) {
+            return entries.remove(key);
+        }
+
+        @Override
+        public V get(Bytes key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public KeyValueIterator<Bytes, V> range(Bytes from, Bytes to) {
+            return iterator(entries.subMap(from, true, to, true));
+        }
+
+        @Override
+        public KeyValueIterator<Bytes, V> all() {
+            return iterator(entries);
+        }
+
+        @Override
+        public long approximateNumEntries() {
+            return entries.size();
+        }
+
+        @Override
+        public String name() {
+            return "store";
+        }
+
+        @Override
+        public void init(ProcessorContext context, StateStore root) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean persistent() {
+            return false;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        private KeyValueIterator<Bytes, V> iterator(Map<Bytes, V> map) {
+            // Copied, so that the store can be modified while iterating
+            Iterator<Map.Entry<Bytes, V>> iterator = new TreeMap<>(map).entrySet().iterator();
+            return new KeyValueIterator<Bytes, V>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public KeyValue<Bytes, V> next() {
+                    Map.Entry<Bytes, V> entry = iterator.next();
+                    return new KeyValue<>(entry.getKey(), entry.getValue());
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public Bytes peekNextKey() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.Test;
+
+public class PregelMetricsTest {
+
+    @Test
+    public void testPartitioningPublished() {
+        try (PregelMetrics metrics = new PregelMetrics("partitioning")) {
+            // Two timed mappings, each standing for 4 mappings
+            metrics.partitioned(TimeUnit.MILLISECONDS.toNanos(3), 4);
+            metrics.partitioned(TimeUnit.MILLISECONDS.toNanos(2), 4);
+            metrics.stats(0, 1).activeVertices.increment();
+            metrics.publish(0, 1, "worker");
+
+            assertEquals(20.0, value(metrics, "partition-time-ms"), 0.0);
+            assertEquals(8.0, value(metrics, "partition-count"), 0.0);
+        }
+    }
+
+    private static double value(PregelMetrics metrics, String name) {
+        for (Map.Entry<MetricName, ? extends Metric> entry : metrics.metrics().entrySet()) {
+            if (entry.getKey().name().equals(name)) {
+                return (Double) entry.getValue().metricValue();
+            }
+        }
+        throw new AssertionError("No metric " + name);
+    }
+}
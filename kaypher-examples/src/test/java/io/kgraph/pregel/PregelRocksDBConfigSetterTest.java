@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.Options;
+import org.rocksdb.RocksDB;
+
+import io.kgraph.pregel.PregelRocksDBConfigSetter.StoreRole;
+
+public class PregelRocksDBConfigSetterTest {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    @Test
+    public void testStoreRoles() {
+        assertEquals(StoreRole.WORKSET, StoreRole.of("localworkSetStore-app"));
+        assertEquals(StoreRole.SOLUTIONSET, StoreRole.of("localSolutionSetStore-app"));
+        assertEquals(StoreRole.VERTICES, StoreRole.of("verticesStore-app"));
+        assertEquals(StoreRole.EDGES, StoreRole.of("edgesStore-app"));
+        assertEquals(StoreRole.CHECKPOINT, StoreRole.of("localCheckpointStore-app"));
+        assertEquals(StoreRole.SOLUTIONSET, StoreRole.of("solutionSetStore-app"));
+        assertEquals(StoreRole.DEFAULT, StoreRole.of("KSTREAM-AGGREGATE-STATE-STORE-0000000003"));
+    }
+
+    @Test
+    public void testPresetsAndOverrides() {
+        PregelRocksDBConfigSetter setter = new PregelRocksDBConfigSetter();
+        Map<String, Object> configs = new HashMap<>();
+        configs.put("pregel.rocksdb.edges.write.buffer.bytes", 1024 * 1024);
+        configs.put("pregel.rocksdb.edges.compaction.style", "universal");
+
+        try (Options workSet = new Options().setTableFormatConfig(new BlockBasedTableConfig());
+             Options edges = new Options().setTableFormatConfig(new BlockBasedTableConfig())) {
+            setter.setConfig("localworkSetStore-app", workSet, configs);
+            setter.setConfig("edgesStore-app", edges, configs);
+
+            assertEquals(CompactionStyle.UNIVERSAL, workSet.compactionStyle());
+            assertEquals(32 * 1024 * 1024L, workSet.writeBufferSize());
+            assertTrue(((BlockBasedTableConfig) workSet.tableFormatConfig()).cacheIndexAndFilterBlocks());
+
+            assertEquals(CompactionStyle.UNIVERSAL, edges.compactionStyle());
+            assertEquals(1024 * 1024L, edges.writeBufferSize());
+
+            // The memtables of all stores are charged to the shared cache
+            assertNotNull(workSet.writeBufferManager());
+            assertSame(workSet.writeBufferManager(), edges.writeBufferManager());
+
+            setter.close("localworkSetStore-app", workSet);
+            setter.close("edgesStore-app", edges);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.kgraph.GraphSerialized;
+import io.kgraph.utils.KryoSerde;
+import io.vavr.Tuple3;
+import io.vavr.Tuple4;
+
+public class PregelSerdesTest {
+    private static final Logger log = LoggerFactory.getLogger(PregelSerdesTest.class);
+
+    private static final GraphSerialized<Long, Double, Long> SERIALIZED =
+        GraphSerialized.with(Serdes.Long(), Serdes.Double(), Serdes.Long());
+
+    @Test
+    public void testWorkSet() {
+        Serde<Tuple3<Integer, Long, List<Object>>> serde = PregelSerdes.workSet(SERIALIZED);
+        assertRoundTrip(serde, new Tuple3<>(0, -7L, Collections.emptyList()));
+        assertRoundTrip(serde, new Tuple3<>(3, Long.MAX_VALUE, Arrays.asList(1L, -1L, Long.MIN_VALUE)));
+        assertRoundTrip(serde, new Tuple3<>(4, 1L, Arrays.asList(0.5, Double.NaN)));
+        // Mixed and other messages fall back to Kryo
+        assertRoundTrip(serde, new Tuple3<>(5, 2L, new ArrayList<>(Arrays.asList("a", 1L))));
+        assertRoundTrip(serde, new Tuple3<>(6, 3L, null));
+        assertNull(serde.deserializer().deserialize("topic", serde.serializer().serialize("topic", null)));
+    }
+
+    @Test
+    public void testSolutionSet() {
+        Serde<Tuple4<Integer, Double, Integer, Double>> serde = PregelSerdes.solutionSet(SERIALIZED);
+        assertRoundTrip(serde, new Tuple4<>(-1, 1.5, 0, 1.5));
+        assertRoundTrip(serde, new Tuple4<>(7, null, 8, -2.0));
+        assertRoundTrip(serde, new Tuple4<>(7, 3.0, 8, null));
+    }
+
+    @Test
+    public void testEdges() {
+        Serde<Map<Long, Long>> serde = PregelSerdes.edgesGroupedBySource(SERIALIZED);
+        Map<Long, Long> edges = new HashMap<>();
+        edges.put(1L, 10L);
+        edges.put(-2L, Long.MIN_VALUE);
+        assertRoundTrip(serde, edges);
+        edges.put(3L, null);
+        assertRoundTrip(serde, edges);
+        assertRoundTrip(serde, new HashMap<>());
+    }
+
+    @Test
+    public void testOtherTypesUseKryo() {
+        GraphSerialized<String, String, Long> serialized = GraphSerialized.with(Serdes.String(), Serdes.String(), Serdes.Long());
+        assertTrue(PregelSerdes.workSet(serialized) instanceof KryoSerde);
+        assertTrue(PregelSerdes.solutionSet(serialized) instanceof KryoSerde);
+        assertTrue(PregelSerdes.edgesGroupedBySource(serialized) instanceof KryoSerde);
+    }
+
+    /**
+     * Compares the size and speed of the compact serdes with Kryo; the timings are only logged.
+     */
+    @Test
+    public void testCompareWithKryo() {
+        List<Tuple3<Integer, Long, List<Object>>> workSet = new ArrayList<>();
+        List<Map<Long, Long>> edges = new ArrayList<>();
+        for (long i = 0; i < 10000; i++) {
+            workSet.add(new Tuple3<>((int) (i % 30), i, Collections.singletonList(i * 31)));
+            Map<Long, Long> vertexEdges = new HashMap<>();
+            for (long j = 1; j <= 8; j++) {
+                vertexEdges.put(i + j, j);
+            }
+            edges.add(vertexEdges);
+        }
+        long compactWorkSet = benchmark("work set", PregelSerdes.workSet(SERIALIZED), workSet);
+        long kryoWorkSet = benchmark("work set (kryo)", new KryoSerde<>(), workSet);
+        long compactEdges = benchmark("edges", PregelSerdes.edgesGroupedBySource(SERIALIZED), edges);
+        long kryoEdges = benchmark("edges (kryo)", new KryoSerde<>(), edges);
+        assertTrue(compactWorkSet < kryoWorkSet);
+        assertTrue(compactEdges < kryoEdges);
+    }
+
+    private static <T> long benchmark(String name, Serde<T> serde, List<T> values) {
+        long bytes = 0;
+        long nanos = 0;
+        for (int round = 0; round < 5; round++) {
+            bytes = 0;
+            long start = System.nanoTime();
+            for (T value : values) {
+                byte[] data = serde.serializer().serialize("topic", value);
+                bytes += data.length;
+                serde.deserializer().deserialize("topic", data);
+            }
+            nanos = System.nanoTime() - start;
+        }
+        log.info("{}: {} bytes, {} ns per record", name, bytes, nanos / values.size());
+        return bytes;
+    }
+
+    private static <T> void assertRoundTrip(Serde<T> serde, T value) {
+        byte[] data = serde.serializer().serialize("topic", value);
+        assertEquals(value, serde.deserializer().deserialize("topic", data));
+    }
+}
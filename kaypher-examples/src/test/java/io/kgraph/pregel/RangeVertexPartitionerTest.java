@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.pregel;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.Test;
+
+public class RangeVertexPartitionerTest {
+
+    @Test
+    public void testRanges() {
+        Map<String, Object> configs = new HashMap<>();
+        configs.put(RangeVertexPartitioner.RANGE_MIN, 0L);
+        configs.put(RangeVertexPartitioner.RANGE_MAX, 99L);
+        RangeVertexPartitioner<Long> partitioner = new RangeVertexPartitioner<>();
+        partitioner.configure(configs, new LongSerializer());
+
+        assertEquals(0, partitioner.partition(0L, 4));
+        assertEquals(0, partitioner.partition(24L, 4));
+        assertEquals(1, partitioner.partition(25L, 4));
+        assertEquals(3, partitioner.partition(99L, 4));
+        // Out of range
+        assertEquals(0, partitioner.partition(-5L, 4));
+        assertEquals(3, partitioner.partition(Long.MAX_VALUE, 4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingRange() {
+        new RangeVertexPartitioner<Long>().configure(new HashMap<>(), new LongSerializer());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.kgraph.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.kgraph.EdgeWithValue;
+import io.kgraph.pregel.LongCsrGraph;
+
+public class GraphFilesTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("graph-files");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    private Path write(String name, String contents) throws IOException {
+        return Files.write(dir.resolve(name), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testParseEdges() throws IOException {
+        Path file = write("edges.txt", "# Directed graph\n"
+            + "% comment\n"
+            + "1\t2\n"
+            + "  2 3 0.5\r\n"
+            + "\n"
+            + "3,4,-1.25e2\n"
+            + "-9223372036854775808 9223372036854775807 7 1490000000\n"
+            + "5 6 0.1234567890123456789");
+        Map<Long, EdgeWithValue<Long, Double>> edges = new ConcurrentHashMap<>();
+        GraphFiles.forEachEdge(file, 1.0, 2,
+            (source, target, value) -> edges.put(source, new EdgeWithValue<>(source, target, value)));
+
+        assertEquals(5, edges.size());
+        assertEquals(new EdgeWithValue<>(1L, 2L, 1.0), edges.get(1L));
+        assertEquals(new EdgeWithValue<>(2L, 3L, 0.5), edges.get(2L));
+        assertEquals(new EdgeWithValue<>(3L, 4L, -125.0), edges.get(3L));
+        assertEquals(new EdgeWithValue<>(Long.MIN_VALUE, Long.MAX_VALUE, 7.0), edges.get(Long.MIN_VALUE));
+        assertEquals(new EdgeWithValue<>(5L, 6L, 0.1234567890123456789), edges.get(5L));
+    }
+
+    @Test
+    public void testParseAcrossChunks() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String line = i + " " + (i * 31 % 10000) + " " + (i % 100) / 8.0;
+            lines.add(line);
+            sb.append(line).append('\n');
+        }
+        Path file = write("edges.txt", sb.toString());
+
+        Parsers.EdgeParser<Long, Double> parser =
+            new Parsers.EdgeParser<>(Long::parseLong, Long::parseLong, Double::parseDouble);
+        Map<Long, EdgeWithValue<Long, Double>> edges = new ConcurrentHashMap<>();
+        GraphFiles.forEachEdge(file, 0.0, 4,
+            (source, target, value) -> edges.put(source, new EdgeWithValue<>(source, target, value)));
+
+        assertEquals(lines.size(), edges.size());
+        for (String line : lines) {
+            EdgeWithValue<Long, Double> expected = parser.parse(line);
+            assertEquals(expected, edges.get(expected.source()));
+        }
+    }
+
+    @Test
+    public void testInvalidNumber() throws IOException {
+        Path file = write("edges.txt", "1 2\n3 x4\n");
+        try {
+            GraphFiles.forEachEdge(file, 0.0, 1, (source, target, value) -> { });
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Invalid number at offset 6: x4", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCsrGraph() throws IOException {
+        Path vertices = write("vertices.txt", "1 10\n2\n");
+        Path edges = write("edges.txt", "1 2 0.5\n2 3\n1 3 2\n");
+        LongCsrGraph graph = GraphFiles.toCsrGraph(vertices, edges, -1.0, 1.0, 2);
+
+        assertEquals(3, graph.numVertices());
+        assertEquals(3, graph.numEdges());
+        int v1 = graph.vertex(1L);
+        assertEquals(10.0, graph.value(v1), 0.0);
+        assertEquals(-1.0, graph.value(graph.vertex(2L)), 0.0);
+        assertEquals(-1.0, graph.value(graph.vertex(3L)), 0.0);
+        assertEquals(2, graph.degree(v1));
+        List<Long> targets = new ArrayList<>();
+        double sum = 0;
+        for (int e = graph.firstEdge(v1); e < graph.firstEdge(v1) + graph.degree(v1); e++) {
+            targets.add(graph.id(graph.target(e)));
+            sum += graph.edgeValue(e);
+        }
+        Collections.sort(targets);
+        assertEquals(2L, (long) targets.get(0));
+        assertEquals(3L, (long) targets.get(1));
+        assertEquals(2.5, sum, 0.0);
+    }
+}